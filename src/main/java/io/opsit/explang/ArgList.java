@@ -174,7 +174,7 @@ public class ArgList {
       }
       ICompiled parValue = params.get(st.lsrc + 1);
       // System.out.println(pName+"="+pValue);
-      int parIdx = spec.nameToIdx(((Keyword) parName).getName().substring(1));
+      int parIdx = spec.keywordToIdx((Keyword) parName);
       if (parIdx >= 0 && parIdx != this.restIdx) {
         paramsArray[parIdx] = copyParam(spec.getArg(idx), parValue);
         setFlags[parIdx] = true;
@@ -2,6 +2,8 @@ package io.opsit.explang;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -215,7 +217,13 @@ public class ArgSpec {
   private Arg []args;
   private Object[] argSpecs;
   private boolean hasRest = false;
+  private boolean hasKeys = false;
   private boolean pipeRest = false;
+  private Map<String, Integer> nameIdx;
+  private Map<String, Integer> svarIdx;
+  // argument indices by canonical keyword of argument name
+  private Map<Keyword, Integer> keywordIdx;
+  private volatile Compiler.Scope scope;
 
   /* &required               &opt
    *+---+                         +----+
@@ -264,6 +272,10 @@ public class ArgSpec {
     return hasRest;
   }
 
+  public boolean isHasKeys() {
+    return hasKeys;
+  }
+
   public boolean isPipeRest() {
     return pipeRest;
   }
@@ -286,7 +298,7 @@ public class ArgSpec {
   private static Object[] stringsToArray(String[] strArgs) throws InvalidParametersException {
     Object []args = new Object[strArgs.length];
     for (int i = 0; i < strArgs.length; i++) {
-      args[i] = new Symbol(strArgs[i]);
+      args[i] = Symbol.intern(strArgs[i]);
     }
     return args;
   }
@@ -435,24 +447,60 @@ public class ArgSpec {
         hadPipe = true;
       }
       this.hasRest |= (AF.REST == flag);
+      this.hasKeys |= (AF.KEY == flag || AF.REST_KEY == flag);
       this.pipeRest |= pipeRest;
       args[argsIdx] = arg;
       argsIdx++;
     }
     this.args = Arrays.copyOf(args, argsIdx);
+    this.nameIdx = new HashMap<String, Integer>(argsIdx << 1);
+    this.svarIdx = new HashMap<String, Integer>(4);
+    for (int i = 0; i < argsIdx; i++) {
+      // the first one wins, like in linear search
+      if (!nameIdx.containsKey(this.args[i].name)) {
+        nameIdx.put(this.args[i].name, i);
+      }
+      if (null != this.args[i].svar && !svarIdx.containsKey(this.args[i].svar)) {
+        svarIdx.put(this.args[i].svar, i);
+      }
+    }
+    this.keywordIdx = new IdentityHashMap<Keyword, Integer>();
+    if (hasKeys) {
+      for (Map.Entry<String, Integer> entry : nameIdx.entrySet()) {
+        keywordIdx.put(Keyword.intern(":" + entry.getKey()), entry.getValue());
+      }
+    }
+    if (null != comp) {
+      markLocals(comp);
+    }
+  }
+
+  /** Mark names of the argument variables as local in variable cells of the compiler. */
+  void markLocals(Compiler comp) {
+    for (String name : nameIdx.keySet()) {
+      comp.markLocal(name);
+    }
+    for (String name : svarIdx.keySet()) {
+      comp.markLocal(name);
+    }
   }
 
   /**
    * Find argument index by name.
    */
   public int nameToIdx(String name) {
-    // FIXME: use map!
-    for (int i = 0; i < this.args.length; i++) {
-      if (name.equals(args[i].name)) {
-        return i;
-      }
-    }
-    return -1;
+    final Integer idx = nameIdx.get(name);
+    return null == idx ? -1 : idx;
+  }
+
+  /**
+   * Find index of keyword argument.
+   *
+   * <p>Canonical keywords are found by reference, other ones by name.
+   */
+  public int keywordToIdx(Keyword keyword) {
+    final Integer idx = keywordIdx.get(keyword);
+    return null != idx ? idx : nameToIdx(keyword.getName().substring(1));
   }
 
   public ICompiled getInitForm(int idx) {
@@ -468,12 +516,27 @@ public class ArgSpec {
    * Convert svar variable name to argument index.
    */
   public int svarNameToIdx(String name) {
-    for (int i = 0; i < this.args.length; i++) {
-      if (name.equals(args[i].svar)) {
-        return i;
+    final Integer idx = svarIdx.get(name);
+    return null == idx ? -1 : idx;
+  }
+
+  /**
+   * Return lexical scope of the arguments context.
+   *
+   * <p>Argument i has slot i, status variable of argument i has slot size() + i.
+   */
+  public Compiler.Scope getScope() {
+    Compiler.Scope result = this.scope;
+    if (null == result) {
+      final String[] names = new String[args.length << 1];
+      for (int i = 0; i < args.length; i++) {
+        names[i] = args[i].name;
+        names[args.length + i] = args[i].svar;
       }
+      result = new Compiler.Scope(names, null);
+      this.scope = result;
     }
-    return -1;
+    return result;
   }
 
   /**
@@ -0,0 +1,184 @@
+package io.opsit.explang;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map for small number of variable bindings.
+ *
+ * <p>Up to MAX_FLAT entries are kept in arrays and looked up by linear search, which is faster
+ * and takes less memory than hashing for a few keys. When the map grows larger the entries are
+ * moved to a HashMap.
+ */
+public class ArrayMap<V> extends AbstractMap<String, V> {
+  public static final int MAX_FLAT = 8;
+  private String[] keys = null;
+  private Object[] vals = null;
+  private int size = 0;
+  private Map<String, V> map = null;
+
+  private int indexOf(Object key) {
+    for (int i = 0; i < size; i++) {
+      final String k = keys[i];
+      if (k == key || (null != key && key.equals(k))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @SuppressWarnings("unchecked")
+  private V valAt(int idx) {
+    return (V) vals[idx];
+  }
+
+  private void removeAt(int idx) {
+    final int tail = size - idx - 1;
+    if (tail > 0) {
+      System.arraycopy(keys, idx + 1, keys, idx, tail);
+      System.arraycopy(vals, idx + 1, vals, idx, tail);
+    }
+    size--;
+    keys[size] = null;
+    vals[size] = null;
+  }
+
+  @Override
+  public int size() {
+    return null == map ? size : map.size();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return null == map ? indexOf(key) >= 0 : map.containsKey(key);
+  }
+
+  @Override
+  public V get(Object key) {
+    if (null != map) {
+      return map.get(key);
+    }
+    final int idx = indexOf(key);
+    return idx < 0 ? null : valAt(idx);
+  }
+
+  @Override
+  public V put(String key, V value) {
+    if (null != map) {
+      return map.put(key, value);
+    }
+    final int idx = indexOf(key);
+    if (idx >= 0) {
+      final V prev = valAt(idx);
+      vals[idx] = value;
+      return prev;
+    }
+    if (size == MAX_FLAT) {
+      map = new HashMap<String, V>();
+      for (int i = 0; i < size; i++) {
+        map.put(keys[i], valAt(i));
+      }
+      keys = null;
+      vals = null;
+      size = 0;
+      return map.put(key, value);
+    }
+    if (null == keys) {
+      keys = new String[MAX_FLAT];
+      vals = new Object[MAX_FLAT];
+    }
+    keys[size] = key;
+    vals[size] = value;
+    size++;
+    return null;
+  }
+
+  @Override
+  public V remove(Object key) {
+    if (null != map) {
+      return map.remove(key);
+    }
+    final int idx = indexOf(key);
+    if (idx < 0) {
+      return null;
+    }
+    final V prev = valAt(idx);
+    removeAt(idx);
+    return prev;
+  }
+
+  @Override
+  public void clear() {
+    map = null;
+    for (int i = 0; i < size; i++) {
+      keys[i] = null;
+      vals[i] = null;
+    }
+    size = 0;
+  }
+
+  @Override
+  public Set<Entry<String, V>> entrySet() {
+    return new AbstractSet<Entry<String, V>>() {
+      @Override
+      public Iterator<Entry<String, V>> iterator() {
+        return null == map ? new FlatIterator() : map.entrySet().iterator();
+      }
+
+      @Override
+      public int size() {
+        return ArrayMap.this.size();
+      }
+    };
+  }
+
+  private class FlatIterator implements Iterator<Entry<String, V>> {
+    private int next = 0;
+    private int last = -1;
+
+    @Override
+    public boolean hasNext() {
+      return next < size;
+    }
+
+    @Override
+    public Entry<String, V> next() {
+      if (next >= size) {
+        throw new NoSuchElementException();
+      }
+      last = next++;
+      return new FlatEntry(last);
+    }
+
+    @Override
+    public void remove() {
+      if (last < 0) {
+        throw new IllegalStateException();
+      }
+      removeAt(last);
+      next = last;
+      last = -1;
+    }
+  }
+
+  private class FlatEntry extends SimpleEntry<String, V> {
+    private static final long serialVersionUID = 1L;
+    private final int idx;
+
+    FlatEntry(int idx) {
+      super(keys[idx], valAt(idx));
+      this.idx = idx;
+    }
+
+    @Override
+    public V setValue(V value) {
+      vals[idx] = value;
+      return super.setValue(value);
+    }
+  }
+}
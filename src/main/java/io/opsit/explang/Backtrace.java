@@ -1,49 +1,133 @@
 package io.opsit.explang;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 
 public class Backtrace implements Serializable {
   public static final long serialVersionUID = 1L;
-  // protected int size = 1024;
-  protected ArrayList<Frame> frames;
+  // shadow stack: evaluated nodes or materialized frames and their contexts
+  protected Object[] nodes;
+  protected transient Compiler.ICtx[] ctxs;
+  protected int size = 0;
+  // record only function calls and forms, skip constants and variable references
+  protected final boolean callsOnly;
 
   public Backtrace() {
-    frames = new ArrayList<Frame>(1024);
+    this(false);
+  }
+
+  /** Create backtrace, optionally recording only calls of functions and forms. */
+  public Backtrace(boolean callsOnly) {
+    this.callsOnly = callsOnly;
+    this.nodes = new Object[64];
+    this.ctxs = new Compiler.ICtx[64];
+  }
+
+  public boolean isCallsOnly() {
+    return callsOnly;
   }
 
   /** Make copy of backtrace.
    *
-   * <p>Make copy of the backtrace. Individual frames will be shared between the objects.
+   * <p>Only the recorded nodes and contexts are copied, the frames are materialized when they are
+   * requested or when the copy is serialized.
    */
   public Backtrace copy() {
-    Backtrace newCallChain = new Backtrace();
-    newCallChain.frames.addAll(frames);
+    Backtrace newCallChain = new Backtrace(callsOnly);
+    newCallChain.ensureCapacity(size);
+    System.arraycopy(nodes, 0, newCallChain.nodes, 0, size);
+    System.arraycopy(ctxs, 0, newCallChain.ctxs, 0, size);
+    newCallChain.size = size;
     return newCallChain;
   }
 
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    for (int i = 0; i < size; i++) {
+      nodes[i] = frameAt(i);
+    }
+    out.defaultWriteObject();
+  }
+
+  /** Return list of frames, the frames are created on demand. */
   public List<Frame> getFrames() {
+    final List<Frame> frames = new ArrayList<Frame>(size);
+    for (int i = 0; i < size; i++) {
+      frames.add(frameAt(i));
+    }
     return frames;
   }
 
   public Frame last() {
-    return frames.size() > 0 ? frames.get(frames.size() - 1) : null;
+    return size > 0 ? frameAt(size - 1) : null;
   }
 
+  /** Remove the last frame and return it. */
   public Frame pop() {
-    return frames.remove(frames.size() - 1);
-    // return null;
+    final Frame frame = frameAt(size - 1);
+    drop();
+    return frame;
+  }
+
+  /** Remove the last frame without creating the Frame object. */
+  void drop() {
+    size--;
+    nodes[size] = null;
+    ctxs[size] = null;
   }
 
-  private void push(Frame f) {
-    frames.add(f);
+  private void push(Object node, Compiler.ICtx ctx) {
+    if (size == nodes.length) {
+      ensureCapacity(size << 1);
+    }
+    nodes[size] = node;
+    ctxs[size] = ctx;
+    size++;
   }
 
   public void push(String frameName, ParseCtx pctx, Compiler.ICtx ctx) {
-    push(new Frame(frameName, pctx, ctx));
-    // push(null);
+    push(new Frame(frameName, pctx, ctx), ctx);
+  }
+
+  /**
+   * Record evaluation of a compiled expression.
+   *
+   * @return false if the expression has not been recorded and pop() must not be called.
+   */
+  public boolean push(ICompiled node, Compiler.ICtx ctx) {
+    if (callsOnly && (node instanceof Funcs.ValueExpr || node instanceof Funcs.VarExp)) {
+      return false;
+    }
+    push((Object) node, ctx);
+    return true;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > nodes.length) {
+      nodes = Arrays.copyOf(nodes, capacity);
+      ctxs = Arrays.copyOf(ctxs, capacity);
+    }
+  }
+
+  private Frame frameAt(int idx) {
+    final Object node = nodes[idx];
+    if (node instanceof Frame) {
+      return (Frame) node;
+    }
+    final ICompiled compiled = (ICompiled) node;
+    final String frameName;
+    if (compiled instanceof Funcs.AbstractExpr) {
+      frameName = ((Funcs.AbstractExpr) compiled).getTraceName();
+    } else if (compiled instanceof Compiler.AbstractForm) {
+      frameName = "(" + ((Compiler.AbstractForm) compiled).getName() + ")";
+    } else {
+      frameName = String.valueOf(compiled);
+    }
+    return new Frame(frameName, compiled.getDebugInfo(), ctxs[idx]);
   }
 
   @Override
@@ -0,0 +1,141 @@
+package io.opsit.explang;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+
+/**
+ * Metadata of builtin function or form class.
+ *
+ * <p>Annotations of the class are read and the argument specification is parsed once per class,
+ * the result is shared by all the Compiler instances.
+ */
+public final class BuiltinMeta {
+  private static final ClassValue<BuiltinMeta> META =
+      new ClassValue<BuiltinMeta>() {
+        @Override
+        protected BuiltinMeta computeValue(Class<?> cls) {
+          return new BuiltinMeta(cls);
+        }
+      };
+
+  private final Class<?> cls;
+  private final String docstring;
+  private final String argDescr;
+  private final String packageName;
+  private final ArgSpec argSpec;
+  private final InvalidParametersException argSpecError;
+  private final boolean pure;
+  private volatile MethodHandle factory;
+
+  /** Get metadata of given builtin class. */
+  public static BuiltinMeta of(Class<?> cls) {
+    return META.get(cls);
+  }
+
+  private BuiltinMeta(Class<?> cls) {
+    this.cls = cls;
+    final Docstring docAnn = cls.getAnnotation(Docstring.class);
+    this.docstring = (null == docAnn)
+        ? "Not provided."
+        : ((null == docAnn.lines() || docAnn.lines().length == 0)
+            ? docAnn.text()
+            : String.join("\n", docAnn.lines()));
+    final Arguments argsAnn = cls.getAnnotation(Arguments.class);
+    this.argDescr = null == argsAnn
+        ? "args ..."
+        : Utils.asStringOrEmpty(
+            null == argsAnn.text() || argsAnn.text().trim().isEmpty()
+                ? Utils.arrayContentsAsString(argsAnn.spec())
+                : argsAnn.text());
+    final Package pkgAnn = cls.getAnnotation(Package.class);
+    this.packageName = null == pkgAnn ? null : pkgAnn.name();
+    ArgSpec spec = null;
+    InvalidParametersException specError = null;
+    if (null != argsAnn && null != argsAnn.spec()) {
+      try {
+        spec = new ArgSpec(argsAnn.spec());
+      } catch (InvalidParametersException ex) {
+        specError = ex;
+      }
+    }
+    this.argSpec = spec;
+    this.argSpecError = specError;
+    this.pure = cls.isAnnotationPresent(Pure.class);
+  }
+
+  /** Check if the builtin is marked as pure function. */
+  public boolean isPure() {
+    return pure;
+  }
+
+  public String getDocstring() {
+    return docstring;
+  }
+
+  public String getArgDescr() {
+    return argDescr;
+  }
+
+  /** Return package name or null if the class does not declare it. */
+  public String getPackageName() {
+    return packageName;
+  }
+
+  /**
+   * Return parsed argument specification.
+   *
+   * @return argument spec or null if the class has no Arguments annotation
+   * @throws InvalidParametersException if the annotation contains invalid specification
+   */
+  public ArgSpec getArgSpec() throws InvalidParametersException {
+    if (null != argSpecError) {
+      throw argSpecError;
+    }
+    return argSpec;
+  }
+
+  /**
+   * Create new instance of the builtin.
+   *
+   * <p>Forms are inner classes of the Compiler, so their constructor takes the compiler instance,
+   * functions have no-argument constructors.
+   */
+  public ICompiled newInstance(Compiler compiler) {
+    MethodHandle handle = this.factory;
+    if (null == handle) {
+      handle = mkFactory();
+      this.factory = handle;
+    }
+    try {
+      return (ICompiled) handle.invokeExact(compiler);
+    } catch (RuntimeException ex) {
+      throw ex;
+    } catch (Throwable ex) {
+      throw new RuntimeException(ex.getMessage());
+    }
+  }
+
+  private MethodHandle mkFactory() {
+    final MethodType type = MethodType.methodType(ICompiled.class, Compiler.class);
+    try {
+      final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      if (IForm.class.isAssignableFrom(cls)) {
+        for (Constructor<?> constructor : cls.getConstructors()) {
+          final Class<?>[] params = constructor.getParameterTypes();
+          if (params.length == 1 && Compiler.class.isAssignableFrom(params[0])) {
+            return lookup.unreflectConstructor(constructor).asType(type);
+          }
+        }
+        throw new RuntimeException("No public constructor that takes Compiler found in " + cls);
+      }
+      final MethodHandle ctor = lookup.unreflectConstructor(cls.getConstructor());
+      return MethodHandles.dropArguments(ctor, 0, Compiler.class).asType(type);
+    } catch (NoSuchMethodException ex) {
+      throw new RuntimeException(ex.getMessage());
+    } catch (IllegalAccessException ex) {
+      throw new RuntimeException(ex.getMessage());
+    }
+  }
+}
@@ -0,0 +1,637 @@
+package io.opsit.explang;
+
+import io.opsit.explang.Compiler.ICtx;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Backend that compiles bodies of user functions to JVM classes.
+ *
+ * <p>The body of a function is translated to the method of a generated class. Constants are
+ * loaded from an array, calls of builtin functions with fixed arity entry points (see {@link
+ * Funcs.Invoke1}) are direct calls of these entry points, IF, WHEN, COND and PROGN become
+ * branches of the method and the function arguments are kept in JVM local variables between the
+ * points where they may change. Variables of LET forms whose initial values and bodies contain
+ * only such expressions and calls of pure builtins cannot be seen by any other code, so they are
+ * JVM local variables too and no context level is created for them. Arguments of calls of user
+ * functions that take only mandatory arguments are evaluated by the generated code and passed to
+ * the function as an array of values. Other expressions are
+ * evaluated by the tree interpreter, which also serves as reference semantics: the generated code
+ * records the same backtrace frames as the interpreter.
+ *
+ * <p>The classes are defined as hidden classes when the JVM supports them and by a class loader
+ * of their own otherwise, so in either case they are unloaded when the function is no longer
+ * used.
+ */
+public class ClassBackend {
+  private static final String BODY = "io/opsit/explang/ClassBackend$Body";
+  private static final String ICOMPILED = "io/opsit/explang/ICompiled";
+  private static final String OBJ = "Ljava/lang/Object;";
+  private static final String BT = "Lio/opsit/explang/Backtrace;";
+  private static final String CTX = "Lio/opsit/explang/Compiler$ICtx;";
+  private static final String PROXY = "io/opsit/explang/Compiler$InstanceProxy";
+  private static final String FUNC = "Lio/opsit/explang/Compiler$FunctionExpr;";
+  private static final String RUN_DESC = "(" + BT + CTX + ")" + OBJ;
+  private static final String INIT_DESC = "([" + OBJ + "[L" + ICOMPILED + ";)V";
+  private static final String[] INVOKE_ITFS = {
+    "io/opsit/explang/Funcs$Invoke0",
+    "io/opsit/explang/Funcs$Invoke1",
+    "io/opsit/explang/Funcs$Invoke2",
+    "io/opsit/explang/Funcs$Invoke3"
+  };
+  // Lookup.defineHiddenClass, null before Java 15
+  private static final Method DEFINE_HIDDEN = findDefineHidden();
+  private static final Object NO_CLASS_OPTIONS = null == DEFINE_HIDDEN
+      ? null
+      : Array.newInstance(DEFINE_HIDDEN.getParameterTypes()[2].getComponentType(), 0);
+
+  /**
+   * Base class of generated function bodies.
+   *
+   * <p>Frames pushed to the backtrace by the generated code are removed here when evaluation
+   * ends abruptly, exceptions other than ExecutionException and ReturnException are wrapped as
+   * the interpreter does it.
+   */
+  public abstract static class Body implements ICompiled {
+    protected final Object[] constants;
+    protected final ICompiled[] nodes;
+    private ParseCtx debugInfo = null;
+    private String name = null;
+
+    protected Body(Object[] constants, ICompiled[] nodes) {
+      this.constants = constants;
+      this.nodes = nodes;
+    }
+
+    protected abstract Object run(Backtrace backtrace, ICtx ctx);
+
+    @Override
+    public Object evaluate(Backtrace backtrace, ICtx ctx) {
+      final int depth = backtrace.size;
+      try {
+        return run(backtrace, ctx);
+      } catch (ReturnException ex) {
+        unwind(backtrace, depth);
+        throw ex;
+      } catch (ExecutionException ex) {
+        unwind(backtrace, depth);
+        throw ex;
+      } catch (Throwable t) {
+        final ExecutionException ex = ExecutionException.wrap(backtrace, t);
+        unwind(backtrace, depth);
+        throw ex;
+      }
+    }
+
+    private static void unwind(Backtrace backtrace, int depth) {
+      while (backtrace.size > depth) {
+        backtrace.drop();
+      }
+    }
+
+    protected static void push(Backtrace backtrace, ICompiled node, ICtx ctx) {
+      backtrace.push(node, ctx);
+    }
+
+    protected static void drop(Backtrace backtrace) {
+      backtrace.drop();
+    }
+
+    protected static Object value(Object val, Backtrace backtrace) {
+      return val instanceof LazyEval ? ((LazyEval) val).getValue(backtrace) : val;
+    }
+
+    protected static boolean isTrue(Object val) {
+      return Utils.asBoolean(val);
+    }
+
+    @Override
+    public void setDebugInfo(ParseCtx pctx) {
+      this.debugInfo = pctx;
+    }
+
+    @Override
+    public ParseCtx getDebugInfo() {
+      return debugInfo;
+    }
+
+    @Override
+    public void setName(String str) {
+      this.name = str;
+    }
+
+    @Override
+    public String toString() {
+      return "#<compiled body " + name + ">";
+    }
+  }
+
+  /**
+   * Compile function body to JVM class.
+   *
+   * <p>Returns the body unchanged if it has nothing to compile or if the class cannot be
+   * generated.
+   *
+   * @param name name of the function
+   * @param scope lexical scope of the function arguments
+   * @param blocks expressions of the function body
+   */
+  public static ICompiled[] compile(String name, Compiler.Scope scope, ICompiled[] blocks) {
+    if (blocks.length == 0 || null == scope) {
+      return blocks;
+    }
+    try {
+      final Gen gen = new Gen(className(name), scope);
+      gen.genBody(blocks);
+      if (gen.compiled == 0) {
+        return blocks;
+      }
+      final Body body = define(gen);
+      body.setName(name);
+      body.setDebugInfo(blocks[0].getDebugInfo());
+      return new ICompiled[] {body};
+    } catch (IllegalStateException ex) {
+      // limits of the class file format
+      return blocks;
+    } catch (ReflectiveOperationException ex) {
+      return blocks;
+    } catch (LinkageError ex) {
+      return blocks;
+    }
+  }
+
+  private static String className(String name) {
+    final StringBuilder buf = new StringBuilder("io/opsit/explang/ClassBackend$Fn_");
+    for (int i = 0; i < name.length() && i < 64; i++) {
+      final char chr = name.charAt(i);
+      buf.append(Character.isJavaIdentifierPart(chr) ? chr : '_');
+    }
+    return buf.toString();
+  }
+
+  private static Body define(Gen gen) throws ReflectiveOperationException {
+    final byte[] bytes = gen.writer.toByteArray();
+    Class<?> cls = null;
+    if (null != DEFINE_HIDDEN) {
+      final Object lookup =
+          DEFINE_HIDDEN.invoke(MethodHandles.lookup(), bytes, false, NO_CLASS_OPTIONS);
+      cls = ((MethodHandles.Lookup) lookup).lookupClass();
+    } else {
+      cls = new Loader().define(gen.className.replace('/', '.'), bytes);
+    }
+    return (Body) cls.getConstructor(Object[].class, ICompiled[].class)
+        .newInstance(gen.constants.toArray(), gen.nodes.toArray(new ICompiled[gen.nodes.size()]));
+  }
+
+  private static Method findDefineHidden() {
+    try {
+      final Class<?> options = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+      return MethodHandles.Lookup.class.getMethod(
+          "defineHiddenClass",
+          byte[].class,
+          boolean.class,
+          Array.newInstance(options, 0).getClass());
+    } catch (ClassNotFoundException ex) {
+      return null;
+    } catch (NoSuchMethodException ex) {
+      return null;
+    }
+  }
+
+  /** Check if generated code may refer to the class by name. */
+  private static boolean isAccessible(Class<?> cls) {
+    for (Class<?> c = cls; null != c; c = c.getDeclaringClass()) {
+      if (!Modifier.isPublic(c.getModifiers())) {
+        return false;
+      }
+    }
+    try {
+      // names in the generated classes are resolved by the loader of this class
+      return Class.forName(cls.getName(), false, ClassBackend.class.getClassLoader()) == cls;
+    } catch (ClassNotFoundException ex) {
+      return false;
+    }
+  }
+
+  /** Class loader of one generated class, used when hidden classes are not supported. */
+  private static final class Loader extends ClassLoader {
+    private Loader() {
+      super(ClassBackend.class.getClassLoader());
+    }
+
+    private Class<?> define(String name, byte[] bytes) {
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+
+  /** Level of lexical scope whose variables are in JVM local variables. */
+  private static final class Frame {
+    private final Compiler.Scope scope;
+    // JVM local variable of each slot, -1 until the variable is bound
+    private final int[] locals;
+
+    private Frame(Compiler.Scope scope) {
+      this.scope = scope;
+      this.locals = new int[scope.size()];
+      Arrays.fill(locals, -1);
+    }
+  }
+
+  /** Code generator of one function body. */
+  private static final class Gen {
+    private static final int THIS = 0;
+    private static final int BACKTRACE = 1;
+    private static final int CONTEXT = 2;
+
+    private final String className;
+    private final ClassFileWriter writer;
+    private final Compiler.Scope scope;
+    private final List<Object> constants = new ArrayList<Object>();
+    private final List<ICompiled> nodes = new ArrayList<ICompiled>();
+    private final List<Frame> frames = new ArrayList<Frame>();
+    // JVM local variables of function arguments and their validity at the current point
+    private final int[] argLocals;
+    private boolean[] valid;
+    private ClassFileWriter.Code code;
+    private int compiled = 0;
+
+    private Gen(String className, Compiler.Scope scope) {
+      this.className = className;
+      this.writer = new ClassFileWriter(className, BODY);
+      this.scope = scope;
+      this.argLocals = new int[scope.size()];
+      this.valid = new boolean[scope.size()];
+      Arrays.fill(argLocals, -1);
+    }
+
+    private void genBody(ICompiled[] blocks) {
+      final ClassFileWriter.Code init =
+          writer.method(ClassFileWriter.ACC_PUBLIC, "<init>", INIT_DESC);
+      init.aload(THIS);
+      init.aload(1);
+      init.aload(2);
+      init.invoke(ClassFileWriter.INVOKESPECIAL, BODY, "<init>", INIT_DESC);
+      init.op(ClassFileWriter.RETURN, 0);
+      init.end();
+      code = writer.method(ClassFileWriter.ACC_PROTECTED, "run", RUN_DESC);
+      genBlocks(Arrays.asList(blocks));
+      code.op(ClassFileWriter.ARETURN, -1);
+      code.end();
+    }
+
+    private void genBlocks(List<ICompiled> blocks) {
+      if (blocks.isEmpty()) {
+        code.op(ClassFileWriter.ACONST_NULL, 1);
+        return;
+      }
+      for (int i = 0; i < blocks.size(); i++) {
+        if (i > 0) {
+          code.op(ClassFileWriter.POP, -1);
+        }
+        gen(blocks.get(i));
+      }
+    }
+
+    /** Generate code that leaves value of the expression on the stack. */
+    private void gen(ICompiled node) {
+      final Class<?> cls = node.getClass();
+      if (node instanceof Funcs.ValueExpr) {
+        genConstant(((Funcs.ValueExpr) node).getValue());
+      } else if (node instanceof Funcs.SlotVarExp) {
+        genSlotVar((Funcs.SlotVarExp) node);
+      } else if (node instanceof Funcs.VarExp) {
+        genNode(node);
+      } else if (isCallable(node)) {
+        genCall((Funcs.FuncExp) node);
+      } else if (cls == Compiler.InstanceProxy.class) {
+        genUserCall((Compiler.InstanceProxy) node);
+        Arrays.fill(valid, false);
+      } else if (cls == Compiler.IF.class) {
+        genIf((Compiler.IF) node);
+      } else if (cls == Compiler.WHEN.class) {
+        genWhen((Compiler.WHEN) node);
+      } else if (cls == Compiler.COND.class) {
+        genCond((Compiler.COND) node);
+      } else if (cls == Compiler.PROGN.class) {
+        pushFrame(node);
+        genBlocks(((Compiler.PROGN) node).blocks);
+        dropFrame();
+      } else if (cls == Compiler.LET.class && isTransparent(node)) {
+        genLet((Compiler.LET) node);
+      } else {
+        // may run any code, which may change bindings of the arguments
+        genNode(node);
+        Arrays.fill(valid, false);
+        return;
+      }
+      compiled++;
+    }
+
+    private void genConstant(Object value) {
+      code.aload(THIS);
+      code.getfield(BODY, "constants", "[" + OBJ);
+      code.iconst(constants.size());
+      code.op(ClassFileWriter.AALOAD, -1);
+      constants.add(value);
+    }
+
+    private void loadNode(ICompiled node) {
+      code.aload(THIS);
+      code.getfield(BODY, "nodes", "[L" + ICOMPILED + ";");
+      code.iconst(nodes.size());
+      code.op(ClassFileWriter.AALOAD, -1);
+      nodes.add(node);
+    }
+
+    /** Evaluate expression using the tree interpreter. */
+    private void genNode(ICompiled node) {
+      loadNode(node);
+      code.aload(BACKTRACE);
+      code.aload(CONTEXT);
+      code.invoke(ClassFileWriter.INVOKEINTERFACE, ICOMPILED, "evaluate", RUN_DESC);
+    }
+
+    private void pushFrame(ICompiled node) {
+      code.aload(BACKTRACE);
+      loadNode(node);
+      code.aload(CONTEXT);
+      code.invoke(ClassFileWriter.INVOKESTATIC, BODY, "push",
+                  "(" + BT + "L" + ICOMPILED + ";" + CTX + ")V");
+    }
+
+    private void dropFrame() {
+      code.aload(BACKTRACE);
+      code.invoke(ClassFileWriter.INVOKESTATIC, BODY, "drop", "(" + BT + ")V");
+    }
+
+    private void genTest() {
+      code.invoke(ClassFileWriter.INVOKESTATIC, BODY, "isTrue", "(" + OBJ + ")Z");
+    }
+
+    /**
+     * Return index of the frame that binds the variable, frames.size() for the function arguments
+     * or -1 if the variable is not bound lexically.
+     */
+    private int resolve(Funcs.SlotVarExp var) {
+      Compiler.Scope target = var.getScope();
+      final int top = frames.size();
+      if (target != (top == 0 ? scope : frames.get(top - 1).scope)) {
+        return -1;
+      }
+      for (int i = 0; i < var.getDepth(); i++) {
+        target = target.getParent();
+      }
+      final int idx = top - 1 - var.getDepth();
+      if (idx == -1 && target == scope) {
+        return top;
+      }
+      return idx >= 0 && frames.get(idx).scope == target ? idx : -1;
+    }
+
+    private void genSlotVar(Funcs.SlotVarExp var) {
+      final int idx = resolve(var);
+      final int slot = var.getSlot();
+      if (idx == frames.size()) {
+        if (!valid[slot]) {
+          // read with the interpreter: the binding may be shadowed or not yet evaluated
+          final Funcs.SlotVarExp arg = var.getDepth() == 0
+              ? var
+              : new Funcs.SlotVarExp(var.getName(), scope, 0, slot);
+          arg.setDebugInfo(var.getDebugInfo());
+          genNode(arg);
+          if (argLocals[slot] < 0) {
+            argLocals[slot] = code.newLocal();
+          }
+          code.op(ClassFileWriter.DUP, 1);
+          code.astore(argLocals[slot]);
+          valid[slot] = true;
+        } else {
+          code.aload(argLocals[slot]);
+        }
+      } else if (idx >= 0 && frames.get(idx).locals[slot] >= 0) {
+        code.aload(frames.get(idx).locals[slot]);
+      } else {
+        // variable of LET that has not been bound yet refers to the enclosing binding
+        genNode(var);
+      }
+    }
+
+    private boolean isCallable(ICompiled node) {
+      if (!(node instanceof Funcs.FuncExp)) {
+        return false;
+      }
+      final ICompiled[] params = ((Funcs.FuncExp) node).getFixedParams();
+      return null != params && params.length < INVOKE_ITFS.length;
+    }
+
+    private void genCall(Funcs.FuncExp call) {
+      final ICompiled[] params = call.getFixedParams();
+      final Class<?> cls = call.getClass();
+      final boolean direct = isAccessible(cls);
+      final String owner = direct ? cls.getName().replace('.', '/') : INVOKE_ITFS[params.length];
+      pushFrame(call);
+      loadNode(call);
+      code.checkcast(owner);
+      code.aload(BACKTRACE);
+      final StringBuilder desc = new StringBuilder("(").append(BT);
+      for (ICompiled param : params) {
+        gen(param);
+        code.aload(BACKTRACE);
+        code.invoke(ClassFileWriter.INVOKESTATIC, BODY, "value", "(" + OBJ + BT + ")" + OBJ);
+        desc.append(OBJ);
+      }
+      desc.append(")").append(OBJ);
+      code.invoke(direct ? ClassFileWriter.INVOKEVIRTUAL : ClassFileWriter.INVOKEINTERFACE,
+                  owner, "invoke" + params.length, desc.toString());
+      dropFrame();
+      if (!BuiltinMeta.of(cls).isPure()) {
+        Arrays.fill(valid, false);
+      }
+    }
+
+    /**
+     * Generate call of user function. When the function takes only mandatory arguments they are
+     * evaluated by the generated code, otherwise the interpreter evaluates the call.
+     */
+    private void genUserCall(Compiler.InstanceProxy call) {
+      final ClassFileWriter.Label positional = new ClassFileWriter.Label();
+      final ClassFileWriter.Label end = new ClassFileWriter.Label();
+      final int proxy = code.newLocal();
+      final int callee = code.newLocal();
+      loadNode(call);
+      code.checkcast(PROXY);
+      code.op(ClassFileWriter.DUP, 1);
+      code.astore(proxy);
+      code.aload(BACKTRACE);
+      code.aload(CONTEXT);
+      code.invoke(ClassFileWriter.INVOKEVIRTUAL, PROXY, "begin", "(" + BT + CTX + ")" + FUNC);
+      code.op(ClassFileWriter.DUP, 1);
+      code.astore(callee);
+      code.jump(ClassFileWriter.IFNONNULL, positional);
+      code.aload(proxy);
+      code.aload(BACKTRACE);
+      code.aload(CONTEXT);
+      code.invoke(ClassFileWriter.INVOKEVIRTUAL, PROXY, "evaluate", RUN_DESC);
+      code.jump(ClassFileWriter.GOTO, end);
+      code.mark(positional);
+      code.aload(proxy);
+      code.aload(BACKTRACE);
+      code.aload(CONTEXT);
+      code.aload(callee);
+      final List<ICompiled> params = call.params;
+      code.iconst(params.size());
+      code.anewarray("java/lang/Object");
+      for (int i = 0; i < params.size(); i++) {
+        code.op(ClassFileWriter.DUP, 1);
+        code.iconst(i);
+        gen(params.get(i));
+        code.op(ClassFileWriter.AASTORE, -3);
+      }
+      code.invoke(ClassFileWriter.INVOKEVIRTUAL, PROXY, "finish",
+                  "(" + BT + CTX + FUNC + "[" + OBJ + ")" + OBJ);
+      code.mark(end);
+    }
+
+    private boolean[] and(boolean[] state1, boolean[] state2) {
+      final boolean[] result = new boolean[state1.length];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = state1[i] && state2[i];
+      }
+      return result;
+    }
+
+    private void genIf(Compiler.IF form) {
+      final ClassFileWriter.Label elseLabel = new ClassFileWriter.Label();
+      final ClassFileWriter.Label end = new ClassFileWriter.Label();
+      pushFrame(form);
+      gen(form.condition);
+      genTest();
+      code.jump(ClassFileWriter.IFEQ, elseLabel);
+      final boolean[] saved = valid.clone();
+      gen(form.thenBlock);
+      final boolean[] thenState = valid;
+      code.jump(ClassFileWriter.GOTO, end);
+      code.mark(elseLabel);
+      valid = saved;
+      genBlocks(form.elseBlocks);
+      valid = and(valid, thenState);
+      code.mark(end);
+      dropFrame();
+    }
+
+    private void genWhen(Compiler.WHEN form) {
+      final ClassFileWriter.Label falseLabel = new ClassFileWriter.Label();
+      final ClassFileWriter.Label end = new ClassFileWriter.Label();
+      pushFrame(form);
+      gen(form.condition);
+      genTest();
+      code.jump(ClassFileWriter.IFEQ, falseLabel);
+      final boolean[] saved = valid.clone();
+      genBlocks(form.blocks);
+      final boolean[] thenState = valid;
+      code.jump(ClassFileWriter.GOTO, end);
+      code.mark(falseLabel);
+      code.op(ClassFileWriter.ACONST_NULL, 1);
+      valid = and(saved, thenState);
+      code.mark(end);
+      dropFrame();
+    }
+
+    private void genCond(Compiler.COND form) {
+      final ClassFileWriter.Label end = new ClassFileWriter.Label();
+      pushFrame(form);
+      boolean[] exitState = null;
+      for (int i = 0; i < form.testForms.size(); i++) {
+        final ClassFileWriter.Label next = new ClassFileWriter.Label();
+        final List<ICompiled> blocks = form.forms.get(i);
+        gen(form.testForms.get(i));
+        final int testVal = code.newLocal();
+        code.astore(testVal);
+        code.aload(testVal);
+        genTest();
+        code.jump(ClassFileWriter.IFEQ, next);
+        final boolean[] saved = valid.clone();
+        if (blocks.isEmpty()) {
+          code.aload(testVal);
+        } else {
+          genBlocks(blocks);
+        }
+        exitState = null == exitState ? valid : and(exitState, valid);
+        code.jump(ClassFileWriter.GOTO, end);
+        code.mark(next);
+        valid = saved;
+      }
+      code.op(ClassFileWriter.ACONST_NULL, 1);
+      valid = null == exitState ? valid : and(exitState, valid);
+      code.mark(end);
+      dropFrame();
+    }
+
+    private void genLet(Compiler.LET form) {
+      final Frame frame = new Frame(form.scope);
+      pushFrame(form);
+      frames.add(frame);
+      for (int i = 0; i < form.varExprs.size(); i++) {
+        gen(form.varExprs.get(i));
+        final int local = code.newLocal();
+        code.astore(local);
+        frame.locals[i] = local;
+      }
+      genBlocks(form.blocks);
+      frames.remove(frames.size() - 1);
+      dropFrame();
+    }
+
+    /**
+     * Check if the expression evaluates only constants, variable references and calls of pure
+     * builtins, so no other code may see bindings created by it.
+     */
+    private boolean isTransparent(ICompiled node) {
+      final Class<?> cls = node.getClass();
+      if (node instanceof Funcs.ValueExpr || node instanceof Funcs.VarExp) {
+        return true;
+      } else if (isCallable(node)) {
+        return BuiltinMeta.of(cls).isPure()
+            && isTransparent(Arrays.asList(((Funcs.FuncExp) node).getFixedParams()));
+      } else if (cls == Compiler.IF.class) {
+        final Compiler.IF form = (Compiler.IF) node;
+        return isTransparent(form.condition)
+            && isTransparent(form.thenBlock)
+            && isTransparent(form.elseBlocks);
+      } else if (cls == Compiler.WHEN.class) {
+        final Compiler.WHEN form = (Compiler.WHEN) node;
+        return isTransparent(form.condition) && isTransparent(form.blocks);
+      } else if (cls == Compiler.COND.class) {
+        final Compiler.COND form = (Compiler.COND) node;
+        for (int i = 0; i < form.testForms.size(); i++) {
+          if (!isTransparent(form.testForms.get(i)) || !isTransparent(form.forms.get(i))) {
+            return false;
+          }
+        }
+        return true;
+      } else if (cls == Compiler.PROGN.class) {
+        return isTransparent(((Compiler.PROGN) node).blocks);
+      } else if (cls == Compiler.LET.class) {
+        final Compiler.LET form = (Compiler.LET) node;
+        return null != form.scope
+            && isTransparent(form.varExprs)
+            && isTransparent(form.blocks);
+      }
+      return false;
+    }
+
+    private boolean isTransparent(List<ICompiled> blocks) {
+      for (ICompiled block : blocks) {
+        if (!isTransparent(block)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
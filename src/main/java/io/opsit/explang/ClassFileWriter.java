@@ -0,0 +1,351 @@
+package io.opsit.explang;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal writer of JVM class files.
+ *
+ * <p>Writes classes of version 49 (Java 5), which are verified by type inference and need no
+ * stack map frames, so the writer does not have to compute them. Only the instructions used by
+ * the bytecode backend are supported.
+ */
+final class ClassFileWriter {
+  static final int ACC_PUBLIC = 0x0001;
+  static final int ACC_FINAL = 0x0010;
+  static final int ACC_SUPER = 0x0020;
+  static final int ACC_PROTECTED = 0x0004;
+
+  static final int ACONST_NULL = 0x01;
+  static final int AALOAD = 0x32;
+  static final int AASTORE = 0x53;
+  static final int POP = 0x57;
+  static final int DUP = 0x59;
+  static final int IFEQ = 0x99;
+  static final int IFNE = 0x9a;
+  static final int GOTO = 0xa7;
+  static final int ARETURN = 0xb0;
+  static final int RETURN = 0xb1;
+  static final int GETFIELD = 0xb4;
+  static final int INVOKEVIRTUAL = 0xb6;
+  static final int INVOKESPECIAL = 0xb7;
+  static final int INVOKESTATIC = 0xb8;
+  static final int INVOKEINTERFACE = 0xb9;
+  static final int ANEWARRAY = 0xbd;
+  static final int CHECKCAST = 0xc0;
+  static final int IFNULL = 0xc6;
+  static final int IFNONNULL = 0xc7;
+
+  private static final int MAJOR_VERSION = 49;
+  private static final int MAX_CODE_LENGTH = 0x7fff;
+  private static final int MAX_LOCALS = 0xff;
+
+  private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+  private final DataOutputStream poolOut = new DataOutputStream(pool);
+  private final Map<String, Integer> poolIndex = new HashMap<String, Integer>();
+  private int poolSize = 1;
+  private final int thisClass;
+  private final int superClass;
+  private final List<byte[]> methods = new ArrayList<byte[]>();
+
+  /** Create writer of public final class with given internal names of the class and superclass. */
+  ClassFileWriter(String name, String superName) {
+    this.thisClass = classRef(name);
+    this.superClass = classRef(superName);
+  }
+
+  private int utf8(String str) {
+    final String key = "U" + str;
+    Integer idx = poolIndex.get(key);
+    if (null == idx) {
+      try {
+        poolOut.writeByte(1);
+        poolOut.writeUTF(str);
+      } catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+      idx = poolSize++;
+      poolIndex.put(key, idx);
+    }
+    return idx;
+  }
+
+  private int entry(int tag, String key, int ref1, int ref2) {
+    Integer idx = poolIndex.get(key);
+    if (null == idx) {
+      try {
+        poolOut.writeByte(tag);
+        poolOut.writeShort(ref1);
+        if (ref2 >= 0) {
+          poolOut.writeShort(ref2);
+        }
+      } catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+      idx = poolSize++;
+      poolIndex.put(key, idx);
+    }
+    return idx;
+  }
+
+  int classRef(String name) {
+    return entry(7, "C" + name, utf8(name), -1);
+  }
+
+  private int nameAndType(String name, String desc) {
+    return entry(12, "N" + name + " " + desc, utf8(name), utf8(desc));
+  }
+
+  private int memberRef(int tag, String owner, String name, String desc) {
+    return entry(tag, tag + owner + " " + name + " " + desc,
+                 classRef(owner), nameAndType(name, desc));
+  }
+
+  /** Start new method with given access flags, name and descriptor. */
+  Code method(int access, String name, String desc) {
+    return new Code(access, name, desc);
+  }
+
+  /** Return contents of the class file. */
+  byte[] toByteArray() {
+    try {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(0xcafebabe);
+      out.writeShort(0);
+      out.writeShort(MAJOR_VERSION);
+      poolOut.flush();
+      out.writeShort(poolSize);
+      pool.writeTo(out);
+      out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+      out.writeShort(thisClass);
+      out.writeShort(superClass);
+      out.writeShort(0);
+      out.writeShort(0);
+      out.writeShort(methods.size());
+      for (byte[] method : methods) {
+        out.write(method);
+      }
+      out.writeShort(0);
+      out.flush();
+      return bytes.toByteArray();
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /** Return number of stack slots used by values of type descriptors in given string. */
+  private static int slots(String desc, int from, int to) {
+    int result = 0;
+    for (int i = from; i < to; i++) {
+      final char chr = desc.charAt(i);
+      if (chr == 'L') {
+        i = desc.indexOf(';', i);
+      } else if (chr == '[') {
+        while (desc.charAt(i) == '[') {
+          i++;
+        }
+        if (desc.charAt(i) == 'L') {
+          i = desc.indexOf(';', i);
+        }
+      } else if (chr == 'J' || chr == 'D') {
+        result++;
+      } else if (chr == 'V') {
+        continue;
+      }
+      result++;
+    }
+    return result;
+  }
+
+  /** Jump target in the method code. */
+  static final class Label {
+    private int pos = -1;
+    private int stack = -1;
+    private final List<int[]> fixups = new ArrayList<int[]>();
+  }
+
+  /** Code of a method. The maximal stack depth and number of locals are computed. */
+  final class Code {
+    private final int access;
+    private final String name;
+    private final String desc;
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private final List<int[]> patches = new ArrayList<int[]>();
+    private int stack = 0;
+    private int maxStack = 0;
+    private int maxLocals;
+    private boolean reachable = true;
+
+    private Code(int access, String name, String desc) {
+      this.access = access;
+      this.name = name;
+      this.desc = desc;
+      this.maxLocals = 1 + slots(desc, 1, desc.indexOf(')'));
+    }
+
+    private void adjust(int delta) {
+      stack += delta;
+      if (stack > maxStack) {
+        maxStack = stack;
+      }
+    }
+
+    private void u1(int val) {
+      code.write(val);
+    }
+
+    private void u2(int val) {
+      code.write(val >> 8);
+      code.write(val);
+    }
+
+    /** Allocate new local variable. */
+    int newLocal() {
+      if (maxLocals >= MAX_LOCALS) {
+        throw new IllegalStateException("too many local variables");
+      }
+      return maxLocals++;
+    }
+
+    /** Emit instruction without operands that changes stack depth by given delta. */
+    void op(int opcode, int delta) {
+      u1(opcode);
+      adjust(delta);
+      if (opcode == ARETURN || opcode == RETURN || opcode == GOTO) {
+        reachable = false;
+      }
+    }
+
+    void aload(int idx) {
+      if (idx <= 3) {
+        u1(0x2a + idx);
+      } else {
+        u1(0x19);
+        u1(idx);
+      }
+      adjust(1);
+    }
+
+    void astore(int idx) {
+      if (idx <= 3) {
+        u1(0x4b + idx);
+      } else {
+        u1(0x3a);
+        u1(idx);
+      }
+      adjust(-1);
+    }
+
+    void iconst(int val) {
+      if (val >= -1 && val <= 5) {
+        u1(0x03 + val);
+      } else if (val >= Byte.MIN_VALUE && val <= Byte.MAX_VALUE) {
+        u1(0x10);
+        u1(val);
+      } else {
+        u1(0x11);
+        u2(val);
+      }
+      adjust(1);
+    }
+
+    void getfield(String owner, String fieldName, String fieldDesc) {
+      u1(GETFIELD);
+      u2(memberRef(9, owner, fieldName, fieldDesc));
+      adjust(slots(fieldDesc, 0, fieldDesc.length()) - 1);
+    }
+
+    void checkcast(String type) {
+      u1(CHECKCAST);
+      u2(classRef(type));
+    }
+
+    /** Emit creation of array of references with element type of given internal name. */
+    void anewarray(String type) {
+      u1(ANEWARRAY);
+      u2(classRef(type));
+    }
+
+    /** Emit method invocation instruction, the stack depth is computed from the descriptor. */
+    void invoke(int opcode, String owner, String methodName, String methodDesc) {
+      final int close = methodDesc.indexOf(')');
+      final int args = slots(methodDesc, 1, close);
+      final int result = slots(methodDesc, close + 1, methodDesc.length());
+      u1(opcode);
+      if (opcode == INVOKEINTERFACE) {
+        u2(memberRef(11, owner, methodName, methodDesc));
+        u1(args + 1);
+        u1(0);
+      } else {
+        u2(memberRef(10, owner, methodName, methodDesc));
+      }
+      adjust(result - args - (opcode == INVOKESTATIC ? 0 : 1));
+    }
+
+    /** Emit jump instruction to the label. */
+    void jump(int opcode, Label label) {
+      final int pc = code.size();
+      u1(opcode);
+      u2(0);
+      adjust(opcode == GOTO ? 0 : -1);
+      label.fixups.add(new int[] {pc, pc + 1});
+      label.stack = stack;
+      if (opcode == GOTO) {
+        reachable = false;
+      }
+    }
+
+    /** Bind the label to the current position. */
+    void mark(Label label) {
+      label.pos = code.size();
+      if (!reachable) {
+        stack = label.stack;
+        reachable = true;
+      } else if (label.stack >= 0 && label.stack != stack) {
+        throw new IllegalStateException("inconsistent stack depth at label");
+      }
+      for (int[] fixup : label.fixups) {
+        patches.add(new int[] {fixup[1], label.pos - fixup[0]});
+      }
+      label.fixups.clear();
+    }
+
+    /** Finish the method and add it to the class. */
+    void end() {
+      final byte[] bytes = code.toByteArray();
+      if (bytes.length > MAX_CODE_LENGTH) {
+        throw new IllegalStateException("method code is too large");
+      }
+      for (int[] patch : patches) {
+        bytes[patch[0]] = (byte) (patch[1] >> 8);
+        bytes[patch[0] + 1] = (byte) patch[1];
+      }
+      final ByteArrayOutputStream method = new ByteArrayOutputStream();
+      final DataOutputStream out = new DataOutputStream(method);
+      try {
+        out.writeShort(access);
+        out.writeShort(utf8(name));
+        out.writeShort(utf8(desc));
+        out.writeShort(1);
+        out.writeShort(utf8("Code"));
+        out.writeInt(12 + bytes.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.flush();
+      } catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+      methods.add(method.toByteArray());
+    }
+  }
+}
@@ -8,18 +8,21 @@ import io.opsit.explang.Funcs.ObjectExp;
 import io.opsit.explang.Funcs.READ_FROM_STRING;
 import io.opsit.explang.parser.sexp.SexpParser;
 import io.opsit.explang.strconv.nop.NopConverter;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 public class Compiler {
   protected static Threads threads = new Threads();
@@ -30,6 +33,14 @@ public class Compiler {
       Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
   protected boolean enforcePackages = true;
   protected List<String> argv = Utils.list();
+  protected boolean backtraceCallsOnly = false;
+  protected boolean stacklessThrow = false;
+  protected int optimizeThreshold = 100;
+  protected boolean bytecodeBackend = false;
+  // lexical scope of the form being compiled
+  private final ThreadLocal<Scope> compileScope = new ThreadLocal<Scope>();
+  // optimized tier of the function whose body is being compiled
+  private final ThreadLocal<LAMBDA.Tier> optimizing = new ThreadLocal<LAMBDA.Tier>();
 
   /** Return default list of enabled packages for a Compiler instance. */
   public static Set<String> getDefaultPackages() {
@@ -111,7 +122,6 @@ public class Compiler {
     super();
     this.setFnameConverter(fnameConverter);
     this.usePackages(packages);
-    initBuiltins(this.getPackages());
   }
 
   /** Configure function name converter. */
@@ -125,6 +135,65 @@ public class Compiler {
     this.failOnMissingVariables = val;
   }
 
+  /** Check if backtraces record only calls of functions and forms. */
+  public boolean isBacktraceCallsOnly() {
+    return backtraceCallsOnly;
+  }
+
+  /**
+   * Configure backtraces created by newBacktrace() to record only calls of functions and forms.
+   *
+   * <p>Evaluation of constants and variable references will not be recorded.
+   */
+  public void setBacktraceCallsOnly(boolean val) {
+    this.backtraceCallsOnly = val;
+  }
+
+  /** Check if exceptions thrown by scripts are created without Java stack trace. */
+  public boolean isStacklessThrow() {
+    return stacklessThrow;
+  }
+
+  /**
+   * Configure THROW and EXCEPTION to create exceptions without Java stack trace.
+   *
+   * <p>Filling in of stack trace is the most expensive part of exception creation, it is not
+   * needed when scripts use TRY and THROW for error handling. The backtrace of the script is
+   * recorded in any case.
+   */
+  public void setStacklessThrow(boolean val) {
+    this.stacklessThrow = val;
+  }
+
+  /** Check if bodies of user functions are compiled to JVM classes. */
+  public boolean isBytecodeBackend() {
+    return bytecodeBackend;
+  }
+
+  /**
+   * Configure compilation of bodies of user functions to JVM classes.
+   *
+   * <p>Applies to functions compiled after the call, see {@link ClassBackend}. Generation of the
+   * classes takes time, so it pays off for scripts that spend their time in user functions.
+   */
+  public void setBytecodeBackend(boolean val) {
+    this.bytecodeBackend = val;
+  }
+
+  /** Get number of invocations after which user functions are recompiled in optimized tier. */
+  public int getOptimizeThreshold() {
+    return optimizeThreshold;
+  }
+
+  /**
+   * Configure number of invocations after which user functions are recompiled in optimized tier.
+   *
+   * <p>Zero or negative value disables the optimized tier.
+   */
+  public void setOptimizeThreshold(int val) {
+    this.optimizeThreshold = val;
+  }
+
   /** Get configured parser. */
   public IParser getParser() {
     return parser;
@@ -192,12 +261,7 @@ public class Compiler {
 
   /** Get Builtin's package. */
   public String getBuiltinPackage(Class<?> cls) {
-    final Package pkg =  cls.getAnnotation(Package.class);
-    if (null != pkg) {
-      return pkg.name();
-    } else {
-      return null;
-    }
+    return BuiltinMeta.of(cls).getPackageName();
   }
 
   /**
@@ -225,9 +289,7 @@ public class Compiler {
    */
   public void addBuiltIn(String name, Class<?> cls) {
     if ((!isEnforcePackages()) || checkBuiltinPackage(cls, this.getPackages())) {
-      final Builtin builtin =
-          IForm.class.isAssignableFrom(cls) ? new BuiltinForm(cls) : new BuiltinFunc(cls);
-      functab.put(this.funcNameConverter.convert(name), builtin);
+      registerBuiltin(name, cls);
     } else {
       throw new RuntimeException(
           "Won't add builtin with "
@@ -239,14 +301,41 @@ public class Compiler {
     }
   }
 
+  // add builtin mapping without the package check
+  private void registerBuiltin(String name, Class<?> cls) {
+    final Builtin builtin =
+        IForm.class.isAssignableFrom(cls) ? new BuiltinForm(cls) : new BuiltinFunc(cls);
+    functab.put(this.funcNameConverter.convert(name), builtin);
+  }
+
   /** Abstract class for Builtins. */
   public abstract class Builtin implements ICode {
     protected Class<?> cls;
+    protected volatile Invoker invoker;
+    // argument names have been marked in the variable cells of this compiler
+    private volatile boolean argsMarked = false;
 
     public Builtin(Class<?> cls) {
       this.cls = cls;
     }
 
+    /** Create new instance of the builtin. */
+    protected ICompiled newInstance() {
+      final BuiltinMeta meta = BuiltinMeta.of(cls);
+      if (!argsMarked) {
+        try {
+          final ArgSpec spec = meta.getArgSpec();
+          if (null != spec) {
+            spec.markLocals(Compiler.this);
+          }
+        } catch (InvalidParametersException ex) {
+          // reported when parameters are set
+        }
+        argsMarked = true;
+      }
+      return meta.newInstance(Compiler.this);
+    }
+
     @Override
     public boolean isBuiltIn() {
       return true;
@@ -254,24 +343,12 @@ public class Compiler {
 
     @Override
     public String getDocstring() {
-      final Docstring ann = cls.getAnnotation(Docstring.class);
-      final String result = (null == ann)
-          ? "Not provided." 
-          : ((null == ann.lines() || ann.lines().length == 0)
-              ? ann.text()
-              : String.join("\n",ann.lines()));
-      return result;
+      return BuiltinMeta.of(cls).getDocstring();
     }
 
     @Override
     public String getArgDescr() {
-      Arguments ann = cls.getAnnotation(Arguments.class);
-      return null == ann
-          ? "args ..."
-          : Utils.asStringOrEmpty(
-              null == ann.text() || ann.text().trim().isEmpty()
-                  ? Utils.arrayContentsAsString(ann.spec())
-                  : ann.text());
+      return BuiltinMeta.of(cls).getArgDescr();
     }
 
     @Override
@@ -281,31 +358,187 @@ public class Compiler {
 
     @Override
     public String getPackageName() {
-      Package ann = cls.getAnnotation(Package.class);
-      return null == ann
-        ? ""
-        : Utils.asStringOrEmpty(ann.name());
+      return Utils.asStringOrEmpty(BuiltinMeta.of(cls).getPackageName());
     }
 
     @Override
     public ArgSpec getArgSpec() {
-      final Arguments ann = cls.getAnnotation(Arguments.class);
-      String[] spec = null;
-      if (null != ann) {
-        spec = ann.spec();
+      try {
+        return BuiltinMeta.of(cls).getArgSpec();
+      } catch (InvalidParametersException ex) {
+        throw new CompilationException("Invalid argument specification for " + this);
       }
-      if (null != spec) {
-        try {
-          final ArgSpec argSpec = new ArgSpec(spec);
-          return argSpec;
-        } catch (InvalidParametersException ex) {
-          throw new CompilationException("Invalid argument specification for " + this);
+    }
+
+    @Override
+    public Object invoke(Backtrace backtrace, ICtx ctx, Object[] args) {
+      Invoker inv = this.invoker;
+      if (null == inv) {
+        inv = new Invoker(this);
+        this.invoker = inv;
+      }
+      return inv.invoke(backtrace, ctx, args);
+    }
+  }
+
+  /**
+   * Calls of a function with evaluated positional arguments.
+   *
+   * <p>Function instances are prepared once per number of arguments, their parameters refer to
+   * the slots of a context level that holds the argument values. For functions with keyword
+   * parameters the instances are prepared once per call shape: number of arguments and the
+   * keywords at their positions, so that the keyword parameters are resolved only once.
+   */
+  protected class Invoker {
+    private static final int MAX_CACHED_ARGS = 16;
+    private static final int MAX_CACHED_SHAPES = 8;
+    private final ICode code;
+    private final ArgSpec spec;
+    private volatile IExpr[] instances = new IExpr[0];
+    private volatile KeyCall[] keyCalls = new KeyCall[0];
+
+    public Invoker(ICode code) {
+      this.code = code;
+      this.spec = code.getArgSpec();
+    }
+
+    /** Call the function with given arguments. */
+    public Object invoke(Backtrace backtrace, ICtx ctx, Object[] args) {
+      final IExpr instance =
+          null != spec && spec.isHasKeys()
+              ? getKeyInstance(backtrace, args)
+              : getInstance(backtrace, args.length);
+      final LocalCtx callCtx = new LocalCtx(ctx, posArgsScope(args.length));
+      System.arraycopy(args, 0, callCtx.slots, 0, args.length);
+      return instance.evaluate(backtrace, callCtx);
+    }
+
+    private IExpr getInstance(Backtrace backtrace, int argsNum) {
+      IExpr[] cache = this.instances;
+      if (argsNum < cache.length && null != cache[argsNum]) {
+        return cache[argsNum];
+      }
+      final IExpr instance = (IExpr) code.getInstance();
+      setCallParams(backtrace, instance, slotParams(argsNum, null));
+      if (argsNum < MAX_CACHED_ARGS) {
+        cache = Arrays.copyOf(cache, Math.max(cache.length, argsNum + 1));
+        cache[argsNum] = instance;
+        this.instances = cache;
+      }
+      return instance;
+    }
+
+    private IExpr getKeyInstance(Backtrace backtrace, Object[] args) {
+      KeyCall[] cache = this.keyCalls;
+      for (int i = 0; i < cache.length; i++) {
+        if (cache[i].matches(args)) {
+          return cache[i].instance;
         }
       }
-      return null;
+      final Object[] keys = new Object[args.length];
+      for (int i = 0; i < args.length; i++) {
+        keys[i] = args[i] instanceof Keyword ? args[i] : null;
+      }
+      final IExpr instance = (IExpr) code.getInstance();
+      try {
+        instance.setParams(slotParams(args.length, keys));
+      } catch (InvalidParametersException ex) {
+        // report the error for the argument values as they are
+        final List<ICompiled> params = new ArrayList<ICompiled>(args.length);
+        for (int i = 0; i < args.length; i++) {
+          params.add(new ObjectExp(args[i]));
+        }
+        setCallParams(backtrace, (IExpr) code.getInstance(), params);
+        throw callError(backtrace, ex);
+      }
+      if (cache.length < MAX_CACHED_SHAPES) {
+        cache = Arrays.copyOf(cache, cache.length + 1);
+        cache[cache.length - 1] = new KeyCall(keys, instance);
+        this.keyCalls = cache;
+      }
+      return instance;
+    }
+
+    // parameters that read argument slots, keywords (if given) are passed as constants
+    private List<ICompiled> slotParams(int argsNum, Object[] keys) {
+      final Scope scope = posArgsScope(argsNum);
+      final List<ICompiled> params = new ArrayList<ICompiled>(argsNum);
+      for (int i = 0; i < argsNum; i++) {
+        params.add(
+            null != keys && null != keys[i]
+                ? new ObjectExp(keys[i])
+                : new SlotVarExp(scope.getName(i), scope, 0, i));
+      }
+      return params;
+    }
+
+    private void setCallParams(Backtrace backtrace, IExpr instance, List<ICompiled> params) {
+      try {
+        instance.setParams(params);
+      } catch (InvalidParametersException ex) {
+        throw callError(backtrace, ex);
+      }
+    }
+
+    private RuntimeException callError(Backtrace backtrace, InvalidParametersException ex) {
+      // the calling function is the last frame of the backtrace
+      final Backtrace.Frame frame = null == backtrace ? null : backtrace.last();
+      return new RuntimeException(
+          String.format(
+              "%s: called function at %s: does not take provided parameters: %s",
+              null == frame ? (code.isBuiltIn() ? "function" : "lambda") : frame.frameName,
+              null == frame || null == frame.pctx ? "?" : frame.pctx.toString(),
+              ex.getMessage()));
+    }
+  }
+
+  // instance of function for calls with given keywords at argument positions
+  private static final class KeyCall {
+    private final Object[] keys;
+    private final IExpr instance;
+
+    private KeyCall(Object[] keys, IExpr instance) {
+      this.keys = keys;
+      this.instance = instance;
+    }
+
+    private boolean matches(Object[] args) {
+      if (args.length != keys.length) {
+        return false;
+      }
+      for (int i = 0; i < args.length; i++) {
+        final Object key = args[i] instanceof Keyword ? args[i] : null;
+        if (null == key ? null != keys[i] : !key.equals(keys[i])) {
+          return false;
+        }
+      }
+      return true;
     }
   }
 
+  private volatile Scope[] posArgsScopes = new Scope[0];
+
+  /** Return scope of positional arguments %1, %2, ... of given number. */
+  protected Scope posArgsScope(int argsNum) {
+    Scope[] scopes = posArgsScopes;
+    if (argsNum < scopes.length) {
+      return scopes[argsNum];
+    }
+    scopes = Arrays.copyOf(scopes, argsNum + 1);
+    for (int n = 0; n <= argsNum; n++) {
+      if (null == scopes[n]) {
+        final String[] names = new String[n];
+        for (int i = 0; i < n; i++) {
+          names[i] = "%" + (i + 1);
+        }
+        scopes[n] = new Scope(names, null);
+        markLocals(names);
+      }
+    }
+    posArgsScopes = scopes;
+    return scopes[argsNum];
+  }
+
   public class BuiltinForm extends Builtin {
     public BuiltinForm(Class<?> cls) {
       super(cls);
@@ -313,19 +546,7 @@ public class Compiler {
 
     @Override
     public ICompiled getInstance() {
-      try {
-        Constructor<?> constructor = cls.getConstructor(Compiler.this.getClass());
-        ICompiled compiled = (ICompiled) constructor.newInstance(Compiler.this);
-        return compiled;
-      } catch (InstantiationException ex) {
-        throw new RuntimeException(ex.getMessage());
-      } catch (InvocationTargetException ex) {
-        throw new RuntimeException(ex.getMessage());
-      } catch (NoSuchMethodException ex) {
-        throw new RuntimeException(ex.getMessage());
-      } catch (IllegalAccessException ex) {
-        throw new RuntimeException(ex.getMessage());
-      }
+      return newInstance();
     }
 
     @Override
@@ -341,19 +562,7 @@ public class Compiler {
 
     @Override
     public ICompiled getInstance() {
-      try {
-        Constructor<?> constructor = cls.getConstructor();
-        ICompiled compiled = (ICompiled) constructor.newInstance();
-        return compiled;
-      } catch (InstantiationException ex) {
-        throw new RuntimeException(ex.getMessage());
-      } catch (InvocationTargetException ex) {
-        throw new RuntimeException(ex.getMessage());
-      } catch (NoSuchMethodException ex) {
-        throw new RuntimeException(ex.getMessage());
-      } catch (IllegalAccessException ex) {
-        throw new RuntimeException(ex.getMessage());
-      }
+      return newInstance();
     }
 
     @Override
@@ -364,9 +573,19 @@ public class Compiler {
 
   /**
    * Put function definition into function table.
+   *
+   * <p>If calls to the function have already been compiled the definition is put into the
+   * existing function stub, so that these calls use the new definition.
    */
   public ICode putFun(String name, ICode code) {
     final String key = funcNameConverter.convert(name);
+    final ICode current = functab.get(key);
+    if (current instanceof CodeProxy) {
+      final CodeProxy proxy = (CodeProxy) current;
+      final ICode prev = proxy.code;
+      proxy.setCode(code);
+      return prev;
+    }
     if (null != code) {
       return functab.put(key, code);
     } else {
@@ -378,13 +597,17 @@ public class Compiler {
    * Return named function or function stub if not defined.
    */
   public ICode getFunOrStub(String name) {
-    final String key = funcNameConverter.convert(name);
-    ICode f = functab.get(key);
-    if (null == f) {
-      f = new CodeProxy(key);
-      functab.put(key, f);
+    return getFunOrStubByKey(funcNameConverter.convert(name));
+  }
+
+  private ICode getFunOrStubByKey(String key) {
+    final ICode f = functab.get(key);
+    if (null != f) {
+      return f;
     }
-    return f;
+    final ICode stub = new CodeProxy(key);
+    final ICode existing = functab.putIfAbsent(key, stub);
+    return null == existing ? stub : existing;
   }
 
   /**
@@ -404,210 +627,235 @@ public class Compiler {
 
   private final Map<String, ICode> functab = new ConcurrentHashMap<String, ICode>();
 
-  private void initBuiltins(Set<String> fromPackages) {
-    // FIXME: make list of builtins configurable before initBuiltins.
-    // arithmetics
-    final List<Object> builtinsInit =
-        Utils.list(
-            "+", ADDOP.class,
-            "-", SUBOP.class,
-            "*", MULOP.class,
-            "/", DIVOP.class,
-            "%", REMOP.class,
-            "MOD", MODOP.class,
-            "REM", REMOP.class,
-            // boolean algrebra
-            "NOT", NOT.class,
-            "AND", AND.class,
-            "OR", OR.class,
-
-            // numeric comparisons
-            "=", NUMEQ.class,
-            ">", NUMGT.class,
-            ">=", NUMGE.class,
-            "<=", NUMLE.class,
-            "<", NUMLT.class,
-            "MAX", MAXOP.class,
-            "MIN", MINOP.class,
-            // coercion
-            "INT", INT.class,
-            "SHORT", SHORT.class,
-            "BYTE", BYTE.class,
-            "LONG", LONG.class,
-            "DOUBLE", DOUBLE.class,
-            "FLOAT", FLOAT.class,
-            "CHAR", CHAR.class,
-            "BOOL", BOOL.class,
-            "STRING", STRING.class,
-            // math
-            "SIGNUM", SIGNUM.class,
-            "RANDOM", RANDOM.class,
-            "SQRT", SQRT.class,
-            "LOG", LOG.class,
-            "EXP", EXP.class,
-            // object comparisons
-            // java .equals()
-            "NILP", NILP.class,
-            "NOTNILP", NOTNILP.class,
-            "EQUAL", EQUAL.class,
-            "===", EQ.class,
-            "==", SEQUAL.class,
-            // variables
-            "SETQ", SETQ.class,
-            "SETF", SETF.class,
-            "SETV", SETV.class,
-            "SETL", SETL.class,
-            "SET", SET.class,
-            "LET", LET.class,
-            "DLET", DLET.class,
-            "MAKUNBOUND", MAKUNBOUND.class,
-            "BOUNDP", BOUNDP.class,
-            "NEW-CTX", NEW_CTX.class,
-            "WITH-CTX", WITH_CTX.class,
-            "GETPROPS", GETPROPS.class,
-            "SETPROPS", SETPROPS.class,
-            "GETPROP", GETPROP.class,
-            "SETPROP", SETPROP.class,
-
-            // execution control
-            "IF", IF.class,
-            "WHEN", WHEN.class,            
-            "COND", COND.class,
-            "WHILE", WHILE.class,
-            "FOREACH", FOREACH.class,
-            "PROGN", PROGN.class,
-            "TRY", TRY.class,
-            "AS->", TH_AS.class,
-            "->", TH_1ST.class,
-            "->>", TH_LAST.class,
-            "@->", TH_PIPE.class,
-
-            // functional programming
-            "LAMBDA", LAMBDA.class,
-            "RETURN", RETURN.class,
-            "FUNCALL", FUNCALL.class,
-            "DEFUN", DEFUN.class,
-            "FUNCTION", FUNCTION.class,
-            "FSET", FSET.class,
-            "SYMBOL-FUNCTION", SYMBOL_FUNCTION.class,
-            "APPLY", APPLY.class,
-            "EVAL", EVAL.class,
-            "READ-FROM-STRING", READ_FROM_STRING.class,
-            "FUNCTIONP", FUNCTIONP.class,
-            "FUNCTIONS-NAMES", FUNCTIONS_NAMES.class,
-            // compilation and evaluation
-            "LOAD", LOAD.class,
-            "LOADR", LOADR.class,
-            "QUOTE", QUOTE.class,
-            // threads
-            "NEW-THREAD", NEW_THREAD.class,
-            // I/O
-            "PRINT", PRINT.class,
-            "PRINTLN", PRINTLN.class,
-            // RUNTIME
-            "ARGV", ARGV.class,
-            // sequences operations
-            "LIST", LIST.class,
-            "HASHSET", HASHSET.class,
-            "NTH", NTH.class,
-            "CONS", CONS.class,
-            "APPEND", APPEND.class,
-            "APPEND!", NAPPEND.class,
-            "FIRST", FIRST.class,
-            "REST", REST.class,
-            "LENGTH", LENGTH.class,
-            "SORT", SORT.class,
-            "SORT!", NSORT.class,
-            "REVERSE", REVERSE.class,
-            "REVERSE!", NREVERSE.class,
-            "COLLP", COLLP.class,
-            "SEQP", SEQP.class,
-            "MAPP", MAPP.class,
-            "INDEXEDP", INDEXEDP.class,
-            "ASSOCIATIVEP", ASSOCIATIVEP.class,
-            "SETP", SETP.class,
-            "RANGE", RANGE.class,
-            "SUBSEQ", SUBSEQ.class,
-            "TAKE", TAKE.class,
-            "IN", IN.class,
-            "NOT-IN", NOTIN.class,
-            "GET-IN", GET_IN.class,
-            "GET", GET.class,
-            "HASKEY", HASKEY.class,
-            "PUSH", PUSH.class,
-            "PUSH!", NPUSH.class,
-            "POP", POP.class,
-            "POP!", NPOP.class,
-            "PUT", PUT.class,
-            "PUT!", NPUT.class,
-            "PUT-IN!", NPUT_IN.class,
-            "PUT-IN", PUT_IN.class,
-            "INSERT", INSERT.class,
-            "INSERT!", NINSERT.class,
-            "DELETE",  DELETE.class,
-            "DELETE!", NDELETE.class,
-            "ASSOC", ASSOC.class,
-            "ASSOC!", NASSOC.class,
-            "REPLACE", REPLACE.class,
-            "INTERPOSE", INTERPOSE.class,
-            "JOIN", JOIN.class,
-            // java FFI
-            ".", DOT.class,
-            ".S", DOTS.class,
-            ".N", DOTN.class,
-            "CLASS", CLASS.class,
-            "TYPE-OF", TYPE_OF.class,
-            "BEAN", BEAN.class,
-            "SELECT-KEYS", SELECT_KEYS.class,
-            "DWIM_FIELDS", DWIM_FIELDS.class,
-            //"FIELDS2", FIELDS2.class,
-            "TYPEP", TYPEP.class,
-            "COPY", COPY.class,
-            "DEEP-COPY", DEEP_COPY.class,
-            // mapping functions
-            "MAP", MAP.class,
-            "MAPPROD", MAPPROD.class,
-            "FILTER", FILTER.class,
-            "REDUCE", REDUCE.class,
-            // string handling
-            "RE-PATTERN", RE_PATTERN.class,
-            "RE-GLOB", RE_GLOB.class,
-            "RE-MATCHER", RE_MATCHER.class,
-            "RE-MATCHES", RE_MATCHES.class,
-            "RE-GROUPS", RE_GROUPS.class,
-            "RE-FIND", RE_FIND.class,
-            "RE-SEQ", RE_SEQ.class,
-            "DWIM-MATCHES", DWIM_MATCHES.class,
-            "SEARCH", SEARCH.class,
-            "UPPERCASE", UPPERCASE.class,
-            "LOWERCASE", LOWERCASE.class,
-            "STR", STR.class,
-            "FORMAT", FORMAT.class,
-            "STRING-BUFFER", STRINGBUFFER.class,
-            "STRING-BUILDER", STRINGBUILDER.class,
-            "SYMBOL", SYMBOL.class,
-            // hashtables
-            "WITH-BINDINGS", WITH_BINDINGS.class,
-            "HASHMAP", HASHMAP.class,
-            // exception handling
-            "BACKTRACE", BACKTRACE.class,
-            "THROW", THROW.class,
-            "EXCEPTION", EXCEPTION.class,
-            // arrays
-            "MAKE-ARRAY", MAKE_ARRAY.class,
-            "AREF", AREF.class,
-            "ASET!", NASET.class,
-            "ASET", ASET.class,
-            // help system
-            "DESCRIBE-FUNCTION", Funcs.DESCRIBE_FUNCTION.class,
-            "DOCUMENTATION", Funcs.DOCUMENTATION.class,
-            // versions
-            "VERSION", Funcs.VERSION.class);
-
+  // name/class pairs of all the builtins
+  // FIXME: make list of builtins configurable before initBuiltins.
+  private static final List<Object> builtinsInit =
+      Utils.list(
+          // arithmetics
+          "+", ADDOP.class,
+          "-", SUBOP.class,
+          "*", MULOP.class,
+          "/", DIVOP.class,
+          "%", REMOP.class,
+          "MOD", MODOP.class,
+          "REM", REMOP.class,
+          // boolean algrebra
+          "NOT", NOT.class,
+          "AND", AND.class,
+          "OR", OR.class,
+
+          // numeric comparisons
+          "=", NUMEQ.class,
+          ">", NUMGT.class,
+          ">=", NUMGE.class,
+          "<=", NUMLE.class,
+          "<", NUMLT.class,
+          "MAX", MAXOP.class,
+          "MIN", MINOP.class,
+          // coercion
+          "INT", INT.class,
+          "SHORT", SHORT.class,
+          "BYTE", BYTE.class,
+          "LONG", LONG.class,
+          "DOUBLE", DOUBLE.class,
+          "FLOAT", FLOAT.class,
+          "CHAR", CHAR.class,
+          "BOOL", BOOL.class,
+          "STRING", STRING.class,
+          // math
+          "SIGNUM", SIGNUM.class,
+          "RANDOM", RANDOM.class,
+          "SQRT", SQRT.class,
+          "LOG", LOG.class,
+          "EXP", EXP.class,
+          // object comparisons
+          // java .equals()
+          "NILP", NILP.class,
+          "NOTNILP", NOTNILP.class,
+          "EQUAL", EQUAL.class,
+          "===", EQ.class,
+          "==", SEQUAL.class,
+          // variables
+          "SETQ", SETQ.class,
+          "SETF", SETF.class,
+          "SETV", SETV.class,
+          "SETL", SETL.class,
+          "SET", SET.class,
+          "LET", LET.class,
+          "DLET", DLET.class,
+          "MAKUNBOUND", MAKUNBOUND.class,
+          "BOUNDP", BOUNDP.class,
+          "NEW-CTX", NEW_CTX.class,
+          "WITH-CTX", WITH_CTX.class,
+          "GETPROPS", GETPROPS.class,
+          "SETPROPS", SETPROPS.class,
+          "GETPROP", GETPROP.class,
+          "SETPROP", SETPROP.class,
+
+          // execution control
+          "IF", IF.class,
+          "WHEN", WHEN.class,            
+          "COND", COND.class,
+          "WHILE", WHILE.class,
+          "FOREACH", FOREACH.class,
+          "PROGN", PROGN.class,
+          "TRY", TRY.class,
+          "AS->", TH_AS.class,
+          "->", TH_1ST.class,
+          "->>", TH_LAST.class,
+          "@->", TH_PIPE.class,
+
+          // functional programming
+          "LAMBDA", LAMBDA.class,
+          "RETURN", RETURN.class,
+          "FUNCALL", FUNCALL.class,
+          "DEFUN", DEFUN.class,
+          "FUNCTION", FUNCTION.class,
+          "FSET", FSET.class,
+          "SYMBOL-FUNCTION", SYMBOL_FUNCTION.class,
+          "APPLY", APPLY.class,
+          "EVAL", EVAL.class,
+          "READ-FROM-STRING", READ_FROM_STRING.class,
+          "FUNCTIONP", FUNCTIONP.class,
+          "FUNCTIONS-NAMES", FUNCTIONS_NAMES.class,
+          // compilation and evaluation
+          "LOAD", LOAD.class,
+          "LOADR", LOADR.class,
+          "QUOTE", QUOTE.class,
+          // threads
+          "NEW-THREAD", NEW_THREAD.class,
+          // I/O
+          "PRINT", PRINT.class,
+          "PRINTLN", PRINTLN.class,
+          // RUNTIME
+          "ARGV", ARGV.class,
+          // sequences operations
+          "LIST", LIST.class,
+          "HASHSET", HASHSET.class,
+          "NTH", NTH.class,
+          "CONS", CONS.class,
+          "APPEND", APPEND.class,
+          "APPEND!", NAPPEND.class,
+          "FIRST", FIRST.class,
+          "REST", REST.class,
+          "LENGTH", LENGTH.class,
+          "SORT", SORT.class,
+          "SORT!", NSORT.class,
+          "REVERSE", REVERSE.class,
+          "REVERSE!", NREVERSE.class,
+          "COLLP", COLLP.class,
+          "SEQP", SEQP.class,
+          "MAPP", MAPP.class,
+          "INDEXEDP", INDEXEDP.class,
+          "ASSOCIATIVEP", ASSOCIATIVEP.class,
+          "SETP", SETP.class,
+          "RANGE", RANGE.class,
+          "SUBSEQ", SUBSEQ.class,
+          "TAKE", TAKE.class,
+          "IN", IN.class,
+          "NOT-IN", NOTIN.class,
+          "GET-IN", GET_IN.class,
+          "GET", GET.class,
+          "HASKEY", HASKEY.class,
+          "PUSH", PUSH.class,
+          "PUSH!", NPUSH.class,
+          "POP", POP.class,
+          "POP!", NPOP.class,
+          "PUT", PUT.class,
+          "PUT!", NPUT.class,
+          "PUT-IN!", NPUT_IN.class,
+          "PUT-IN", PUT_IN.class,
+          "INSERT", INSERT.class,
+          "INSERT!", NINSERT.class,
+          "DELETE",  DELETE.class,
+          "DELETE!", NDELETE.class,
+          "ASSOC", ASSOC.class,
+          "ASSOC!", NASSOC.class,
+          "REPLACE", REPLACE.class,
+          "INTERPOSE", INTERPOSE.class,
+          "JOIN", JOIN.class,
+          // java FFI
+          ".", DOT.class,
+          ".S", DOTS.class,
+          ".N", DOTN.class,
+          "CLASS", CLASS.class,
+          "TYPE-OF", TYPE_OF.class,
+          "BEAN", BEAN.class,
+          "SELECT-KEYS", SELECT_KEYS.class,
+          "DWIM_FIELDS", DWIM_FIELDS.class,
+          //"FIELDS2", FIELDS2.class,
+          "TYPEP", TYPEP.class,
+          "COPY", COPY.class,
+          "DEEP-COPY", DEEP_COPY.class,
+          // mapping functions
+          "MAP", MAP.class,
+          "MAPPROD", MAPPROD.class,
+          "FILTER", FILTER.class,
+          "REDUCE", REDUCE.class,
+          // string handling
+          "RE-PATTERN", RE_PATTERN.class,
+          "RE-GLOB", RE_GLOB.class,
+          "RE-MATCHER", RE_MATCHER.class,
+          "RE-MATCHES", RE_MATCHES.class,
+          "RE-GROUPS", RE_GROUPS.class,
+          "RE-FIND", RE_FIND.class,
+          "RE-SEQ", RE_SEQ.class,
+          "DWIM-MATCHES", DWIM_MATCHES.class,
+          "SEARCH", SEARCH.class,
+          "UPPERCASE", UPPERCASE.class,
+          "LOWERCASE", LOWERCASE.class,
+          "STR", STR.class,
+          "FORMAT", FORMAT.class,
+          "STRING-BUFFER", STRINGBUFFER.class,
+          "STRING-BUILDER", STRINGBUILDER.class,
+          "SYMBOL", SYMBOL.class,
+          // hashtables
+          "WITH-BINDINGS", WITH_BINDINGS.class,
+          "HASHMAP", HASHMAP.class,
+          // exception handling
+          "BACKTRACE", BACKTRACE.class,
+          "THROW", THROW.class,
+          "EXCEPTION", EXCEPTION.class,
+          // arrays
+          "MAKE-ARRAY", MAKE_ARRAY.class,
+          "AREF", AREF.class,
+          "ASET!", NASET.class,
+          "ASET", ASET.class,
+          // help system
+          "DESCRIBE-FUNCTION", Funcs.DESCRIBE_FUNCTION.class,
+          "DOCUMENTATION", Funcs.DOCUMENTATION.class,
+          // versions
+          "VERSION", Funcs.VERSION.class);
+
+  // builtins grouped by package: package name -> name/class pairs
+  private static final Map<String, List<Object>> builtinsByPackage = groupBuiltins();
+
+  private static Map<String, List<Object>> groupBuiltins() {
+    final Map<String, List<Object>> result = new HashMap<String, List<Object>>();
     for (int i = 0; i < builtinsInit.size(); i += 2) {
       final Class<?> builtinClass = (Class<?>) builtinsInit.get(i + 1);
-      if (this.checkBuiltinPackage(builtinClass, fromPackages)) {
-        addBuiltIn((String) builtinsInit.get(i), builtinClass);
+      final String pkg = BuiltinMeta.of(builtinClass).getPackageName();
+      if (null != pkg) {
+        List<Object> pkgBuiltins = result.get(pkg);
+        if (null == pkgBuiltins) {
+          pkgBuiltins = new ArrayList<Object>();
+          result.put(pkg, pkgBuiltins);
+        }
+        pkgBuiltins.add(builtinsInit.get(i));
+        pkgBuiltins.add(builtinClass);
+      }
+    }
+    return result;
+  }
+
+  // builtins of the groups already belong to the packages, so they are not checked again
+  private void initBuiltins(Set<String> fromPackages) {
+    for (String pkg : fromPackages) {
+      final List<Object> pkgBuiltins = builtinsByPackage.get(pkg);
+      if (null != pkgBuiltins) {
+        for (int i = 0; i < pkgBuiltins.size(); i += 2) {
+          registerBuiltin((String) pkgBuiltins.get(i), (Class<?>) pkgBuiltins.get(i + 1));
+        }
       }
     }
   }
@@ -624,7 +872,7 @@ public class Compiler {
         return new EmptyListExp();
       }
       ParseCtx pctx = ast.getPctx();
-      ASTNList listfunc = new ASTNList(Utils.list(new ASTNLeaf(new Symbol("LIST"), pctx)), pctx);
+      ASTNList listfunc = new ASTNList(Utils.list(new ASTNLeaf(Symbol.intern("LIST"), pctx)), pctx);
       listfunc.addAll((ASTNList) ast);
       IExpr func = (IExpr) compile(listfunc);
       func.setDebugInfo(pctx);
@@ -666,15 +914,22 @@ public class Compiler {
         ICode codeObj = getFunOrStub(fName);
         try {
           ICompiled compiled = codeObj.getInstance();
+          List<ICompiled> compiledParams = null;
           if (compiled instanceof IForm) {
             ((IForm) compiled).setRawParams(restASTN);
           } else {
-            List<ICompiled> compiledParams = compileExpList(restASTN);
+            compiledParams = compileExpList(restASTN);
             ((IExpr) compiled).setParams(compiledParams);
           }
           compiled.setName(fName);
           compiled.setDebugInfo(firstASTN.getPctx());
-          return compiled;
+          final LAMBDA.Tier tier = optimizing.get();
+          if (null != tier && compiled instanceof InstanceProxy) {
+            return inlineCall(tier, (CodeProxy) codeObj, (InstanceProxy) compiled, compiledParams);
+          }
+          return null == compiledParams
+              ? compiled
+              : foldConstants(codeObj, compiled, compiledParams);
         } catch (InvalidParametersException ipex) {
           throw new CompilationException(pctx, ipex.getMessage());
         } catch (RuntimeException rex) {
@@ -702,7 +957,7 @@ public class Compiler {
       } else if (astObj instanceof Keyword) {
         expr = new ObjectExp(astObj);
       } else if (astObj instanceof Symbol) {
-        expr = new VarExp(((Symbol) astObj).toString());
+        expr = compileVarRef(((Symbol) astObj).toString());
       } else {
         expr = new ObjectExp(astObj);
       }
@@ -711,6 +966,76 @@ public class Compiler {
     }
   }
 
+  /**
+   * Evaluate call of a pure builtin function with constant arguments at compile time.
+   *
+   * <p>Returns the value of the call as a constant expression or the call itself if it cannot
+   * be folded. Errors are left to be reported when the call is evaluated.
+   */
+  protected ICompiled foldConstants(ICode code, ICompiled compiled, List<ICompiled> params) {
+    if (!(code instanceof Builtin) || !BuiltinMeta.of(((Builtin) code).cls).isPure()) {
+      return compiled;
+    }
+    for (ICompiled param : params) {
+      if (!(param instanceof ValueExpr)) {
+        return compiled;
+      }
+    }
+    final Object value;
+    try {
+      value = ((IExpr) compiled).evaluate(newBacktrace(), newCtx());
+    } catch (RuntimeException ex) {
+      return compiled;
+    }
+    final ValueExpr result = new ValueExpr(value);
+    result.setDebugInfo(compiled.getDebugInfo());
+    return result;
+  }
+
+  /**
+   * Compile variable reference.
+   *
+   * <p>If the variable is bound by one of the enclosing forms that create context levels with
+   * statically known variables the result will access the binding by its slot. A free variable of
+   * such forms is looked up dynamically starting from the context in which the outermost of them
+   * has been evaluated, other variables are looked up dynamically.
+   */
+  protected VarExp compileVarRef(String name) {
+    final Scope start = compileScope.get();
+    int depth = 0;
+    for (Scope scope = start; null != scope; scope = scope.getParent()) {
+      final int slot = scope.indexOf(name);
+      if (slot >= 0) {
+        return new SlotVarExp(name, start, depth, slot);
+      }
+      depth++;
+    }
+    return null == start ? new VarExp(name) : new FreeVarExp(name, start, depth - 1);
+  }
+
+  /**
+   * Set lexical scope for the code being compiled.
+   *
+   * <p>Null scope means that nothing is known about variable bindings. Returns previous scope that
+   * must be restored with leaveScope().
+   */
+  protected Scope enterScope(Scope scope) {
+    final Scope prev = compileScope.get();
+    compileScope.set(scope);
+    return prev;
+  }
+
+  /** Restore lexical scope after compilation of a form body. */
+  protected void leaveScope(Scope prev) {
+    compileScope.set(prev);
+  }
+
+  /** Make scope for a new context level that is nested in the current scope. */
+  protected Scope newScope(String... names) {
+    markLocals(names);
+    return new Scope(names, compileScope.get());
+  }
+
   /** Base class for special forms and regular functions. */
   public abstract class AbstractForm implements IForm, Runnable {
     protected ParseCtx debugInfo;
@@ -735,7 +1060,7 @@ public class Compiler {
     /** Evaluate expression in new thread. */
     public void run() {
       final Compiler.ICtx ctx = Threads.contexts.get(Thread.currentThread());
-      final Object result = this.evaluate(new Backtrace(), ctx);
+      final Object result = this.evaluate(newBacktrace(), ctx);
       Threads.results.put(Thread.currentThread(), result);
     }
 
@@ -743,19 +1068,17 @@ public class Compiler {
 
     @Override
     public final Object evaluate(Backtrace backtrace, ICtx ctx) {
+      backtrace.push(this, ctx);
       try {
-        final StringBuilder b = new StringBuilder(16);
-        b.append("(").append(getName()).append(")");
-        backtrace.push(b.toString(), this.debugInfo, ctx);
         return doEvaluate(backtrace, ctx);
       } catch (ReturnException rex) {
         throw rex;
       } catch (ExecutionException ex) {
         throw ex;
       } catch (Throwable t) {
-        throw new ExecutionException(backtrace, t);
+        throw ExecutionException.wrap(backtrace, t);
       } finally {
-        backtrace.pop();
+        backtrace.drop();
       }
     }
   }
@@ -766,6 +1089,7 @@ public class Compiler {
   public class FUNCTION extends AbstractForm {
     // FIXME: checks
     protected Symbol fsym;
+    protected String key;
 
     @Override
     public void setRawParams(ASTNList params) throws InvalidParametersException {
@@ -779,11 +1103,12 @@ public class Compiler {
             debugInfo, "FUNCTION expects Symbol parameter, but got " + sym);
       }
       fsym = (Symbol) params.get(0).getObject();
+      key = funcNameConverter.convert(fsym.toString());
     }
 
     @Override
     public ICode doEvaluate(Backtrace backtrace, ICtx ctx) {
-      ICode code = functab.get(funcNameConverter.convert(fsym.toString()));
+      ICode code = functab.get(key);
       if (null == code) {
         throw new RuntimeException("Symbol " + fsym + " function value is NULL");
       }
@@ -798,7 +1123,7 @@ public class Compiler {
   @Docstring(text = "Evaluate sequence of expressions.")
   @Package(name = Package.BASE_CONTROL)
   public class PROGN extends AbstractForm {
-    private List<ICompiled> blocks = null;
+    List<ICompiled> blocks = null;
 
     public void setRawParams(ASTNList params) {
       this.blocks = compileExpList(params);
@@ -952,20 +1277,26 @@ public class Compiler {
   public class WHILE extends AbstractForm {
     private List<ICompiled> blocks = null;
     private ICompiled condition = null;
+    private Scope scope = null;
 
     @Override
     public void setRawParams(ASTNList params) throws InvalidParametersException {
       if (params.size() < 2) {
         throw new InvalidParametersException(debugInfo, "WHILE expects at least 2 parameters");
       }
-      this.condition = compile(params.get(0));
-      this.blocks = compileExpList(params.subList(1, params.size()));
+      final Scope prevScope = enterScope(this.scope = newScope());
+      try {
+        this.condition = compile(params.get(0));
+        this.blocks = compileExpList(params.subList(1, params.size()));
+      } finally {
+        leaveScope(prevScope);
+      }
     }
 
     @Override
     public Object doEvaluate(Backtrace backtrace, ICtx ctx) {
       Object rc = null;
-      final ICtx loopCtx = ctx.getCompiler().newCtx(ctx);
+      final ICtx loopCtx = new LocalCtx(ctx, scope);
       while (Utils.asBoolean(condition.evaluate(backtrace, loopCtx))) {
         rc = evalBlocks(backtrace, blocks, loopCtx);
       }
@@ -994,6 +1325,7 @@ public class Compiler {
     private List<ICompiled> blocks = null;
     private ICompiled seqexpr = null;
     private ICompiled resultExpr = null;
+    private Scope scope = null;
 
     @Override
     public void setRawParams(ASTNList params) throws InvalidParametersException {
@@ -1015,28 +1347,32 @@ public class Compiler {
       }
       this.loopVar = (Symbol) loopVarObj;
       this.seqexpr = compile(loopPars.get(1));
-      this.resultExpr = (loopPars.size() > 2) ? compile(loopPars.get(2)) : null;
-      this.blocks = compileExpList(params.subList(1, params.size()));
+      final Scope prevScope = enterScope(this.scope = newScope(loopVar.getName()));
+      try {
+        this.resultExpr = (loopPars.size() > 2) ? compile(loopPars.get(2)) : null;
+        this.blocks = compileExpList(params.subList(1, params.size()));
+      } finally {
+        leaveScope(prevScope);
+      }
     }
 
     @Override
     public Object doEvaluate(Backtrace backtrace, ICtx ctx) {
       final Object seq = seqexpr.evaluate(backtrace, ctx);
-      final ICtx loopCtx = ctx.getCompiler().newCtx(ctx);
-      final String loopVarName = loopVar.getName();
-      loopCtx.getMappings().put(loopVarName, null);
+      final LocalCtx loopCtx = new LocalCtx(ctx, scope);
+      loopCtx.setSlot(0, null);
       Seq.forEach(
           seq,
           new Seq.Operation() {
             @Override
             public boolean perform(Object item) {
-              loopCtx.replace(loopVarName, item);
+              loopCtx.setSlot(0, item);
               evalBlocks(backtrace, blocks, loopCtx);
               return false;
             }
           },
           false);
-      loopCtx.replace(loopVarName, null);
+      loopCtx.setSlot(0, null);
       final Object result = null == resultExpr ? null : resultExpr.evaluate(backtrace, loopCtx);
       return result;
     }
@@ -1060,8 +1396,8 @@ public class Compiler {
   @Package(name = Package.BASE_CONTROL)
   @Arguments(text = "{test-form form*}*")
   public class COND extends AbstractForm {
-    private List<List<ICompiled>> forms = null;
-    private List<ICompiled> testForms = null;
+    List<List<ICompiled>> forms = null;
+    List<ICompiled> testForms = null;
 
     @Override
     public void setRawParams(ASTNList params) throws InvalidParametersException {
@@ -1137,14 +1473,14 @@ public class Compiler {
       }
       final List<ASTN> lst = Utils.list();
       if (pipeRest) {
-        lst.add(new ASTNLeaf(new Symbol("APPLY"), expr.getPctx()));
-        lst.add(new ASTNList(Utils.list(new ASTNLeaf(new Symbol("FUNCTION"), expr.getPctx()),
+        lst.add(new ASTNLeaf(Symbol.intern("APPLY"), expr.getPctx()));
+        lst.add(new ASTNList(Utils.list(new ASTNLeaf(Symbol.intern("FUNCTION"), expr.getPctx()),
                                         objASTN), expr.getPctx()));
         lst.addAll(expr.subList(1,expr.size()).getList());
-        lst.add(new ASTNLeaf(new Symbol(getVarName()), expr.getPctx()));
+        lst.add(new ASTNLeaf(Symbol.intern(getVarName()), expr.getPctx()));
       } else {
         lst.addAll(expr.getList());
-        lst.add(idx, new ASTNLeaf(new Symbol(getVarName()), expr.getPctx()));
+        lst.add(idx, new ASTNLeaf(Symbol.intern(getVarName()), expr.getPctx()));
       }
       final ASTNList result = new ASTNList(lst, expr.getPctx());
       return result;
@@ -1153,6 +1489,15 @@ public class Compiler {
 
     @Override
     public void setRawParams(ASTNList params) throws InvalidParametersException {
+      final Scope prevScope = enterScope(this.scope = newScope(getVarName()));
+      try {
+        compileParams(params);
+      } finally {
+        leaveScope(prevScope);
+      }
+    }
+
+    private void compileParams(ASTNList params) throws InvalidParametersException {
       this.startExpr = compile(params.get(0));
       for (int i = 1; i < params.size(); i++) {
         ASTN expr = params.get(i);
@@ -1180,7 +1525,7 @@ public class Compiler {
     protected ASTNList insertVar(ASTNList expr) {
       List<ASTN> lst = Utils.list();
       lst.addAll(expr.getList());
-      lst.add(new ASTNLeaf(new Symbol(getVarName()), expr.getPctx()));
+      lst.add(new ASTNLeaf(Symbol.intern(getVarName()), expr.getPctx()));
       ASTNList result = new ASTNList(lst, expr.getPctx());
       return result;
     }
@@ -1192,7 +1537,7 @@ public class Compiler {
     protected ASTNList insertVar(ASTNList expr) {
       List<ASTN> lst = Utils.list();
       lst.addAll(expr.getList());
-      lst.add(1, new ASTNLeaf(new Symbol(getVarName()), expr.getPctx()));
+      lst.add(1, new ASTNLeaf(Symbol.intern(getVarName()), expr.getPctx()));
       ASTNList result = new ASTNList(lst, expr.getPctx());
       return result;
     }
@@ -1201,15 +1546,16 @@ public class Compiler {
   public abstract class TH_BASE extends AbstractForm {
     protected List<ICompiled> blocks = new ArrayList<ICompiled>();
     protected ICompiled startExpr = null;
+    protected Scope scope = null;
 
     protected abstract String getVarName();
 
     @Override
     public Object doEvaluate(Backtrace backtrace, ICtx ctx) {
-      ICtx localCtx = new Ctx(ctx);
+      final LocalCtx localCtx = new LocalCtx(ctx, scope);
       Object result = startExpr.evaluate(backtrace, localCtx);
       for (ICompiled block : blocks) {
-        localCtx.getMappings().put(getVarName(), result);
+        localCtx.setSlot(0, result);
         result = block.evaluate(backtrace, localCtx);
       }
       return result;
@@ -1229,16 +1575,21 @@ public class Compiler {
         throw new InvalidParametersException(
             debugInfo, "Threading Form:  expects at least 1 parameters");
       }
-      this.startExpr = compile(params.get(0));
-      for (int i = 1; i < params.size(); i++) {
-        ASTN expr = params.get(i);
-        if (expr instanceof ASTNList) {
-          ASTNList blockExpr = insertVar((ASTNList) expr);
-          blocks.add(compile(blockExpr));
-        } else {
-          throw new InvalidParametersException(
-              "Threading form: argument " + i + " must be a function call, but got " + expr);
+      final Scope prevScope = enterScope(this.scope = newScope(getVarName()));
+      try {
+        this.startExpr = compile(params.get(0));
+        for (int i = 1; i < params.size(); i++) {
+          ASTN expr = params.get(i);
+          if (expr instanceof ASTNList) {
+            ASTNList blockExpr = insertVar((ASTNList) expr);
+            blocks.add(compile(blockExpr));
+          } else {
+            throw new InvalidParametersException(
+                "Threading form: argument " + i + " must be a function call, but got " + expr);
+          }
         }
+      } finally {
+        leaveScope(prevScope);
       }
     }
 
@@ -1262,16 +1613,20 @@ public class Compiler {
         throw new InvalidParametersException(
             debugInfo, "Threading Form: expect at least 2 parameters");
       }
-      this.startExpr = compile(params.get(0));
-
       final ICompiled varExp = compile(params.get(1));
       if (!(varExp instanceof VarExp)) {
         throw new InvalidParametersException(
             debugInfo, "Threading Form: Invalid 2nd parameter, must be a variable name");
       }
       this.varName = ((VarExp) varExp).getName();
-      for (int i = 2; i < params.size(); i++) {
-        blocks.add(compile(params.get(i)));
+      final Scope prevScope = enterScope(this.scope = newScope(varName));
+      try {
+        this.startExpr = compile(params.get(0));
+        for (int i = 2; i < params.size(); i++) {
+          blocks.add(compile(params.get(i)));
+        }
+      } finally {
+        leaveScope(prevScope);
       }
     }
   }
@@ -1280,9 +1635,9 @@ public class Compiler {
   @Docstring(text = "If-else conditional construct.")
   @Arguments(spec = {"condition", "then-expr", ArgSpec.ARG_REST, "else-exprs"})
   public class IF extends AbstractForm {
-    private List<ICompiled> elseBlocks = null;
-    private ICompiled condition = null;
-    private ICompiled thenBlock = null;
+    List<ICompiled> elseBlocks = null;
+    ICompiled condition = null;
+    ICompiled thenBlock = null;
 
     @Override
     public void setRawParams(ASTNList params) throws InvalidParametersException {
@@ -1318,8 +1673,8 @@ public class Compiler {
   @Package(name = Package.BASE_CONTROL)
   @Docstring(text = "When conditional construct.")
   public class WHEN extends AbstractForm {
-    private List<ICompiled> blocks = null;
-    private ICompiled condition = null;
+    List<ICompiled> blocks = null;
+    ICompiled condition = null;
 
     @Override
     public void setRawParams(ASTNList params) throws InvalidParametersException {
@@ -1351,9 +1706,17 @@ public class Compiler {
     }
   }
 
+  /**
+   * Call site of user defined function.
+   *
+   * <p>The call site is bound to an instance of the current function definition. The definition
+   * in the function stub serves as invalidation token: when the function is redefined the call
+   * site is rebound on its next evaluation.
+   */
   public static class InstanceProxy implements ICompiled, IExpr {
-    protected IExpr realInstance;
+    private volatile Binding binding;
     protected CodeProxy codeProxy;
+    protected boolean tailCall = false;
     protected ParseCtx pctx;
     protected String name;
     protected List<ICompiled> params;
@@ -1363,26 +1726,83 @@ public class Compiler {
       this.name = codeProxy.name;
     }
     
+    private static final class Binding {
+      private final ICode code;
+      private final IExpr instance;
+
+      private Binding(ICode code, IExpr instance) {
+        this.code = code;
+        this.instance = instance;
+      }
+    }
+
+    private IExpr bind(Backtrace backtrace, ICode code) {
+      if (null == code) {
+        throw new ExecutionException(backtrace, "Call to undefined function " + name);
+      }
+      final IExpr instance = (IExpr) code.getInstance();
+      try {
+        instance.setParams(params);
+      } catch (InvalidParametersException ex) {
+        throw new RuntimeException(ex);
+      }
+      ((ICompiled) instance).setDebugInfo(pctx);
+      this.binding = new Binding(code, instance);
+      return instance;
+    }
+
     @Override
     public Object evaluate(Backtrace backtrace, ICtx ctx) {
-      if (null == realInstance) {
-        if (null == codeProxy.code) {
-          throw new ExecutionException(backtrace, "Call to undefined function " + name);
-        }
-        realInstance = (IExpr)codeProxy.code.getInstance();
-        try {
-          realInstance.setParams(params);
-        } catch (InvalidParametersException ex) {
-          throw new RuntimeException(ex);
-        }
-        //if (null != name) {
-        //this.name = codeProxy.name;
-        //} 
-        ((ICompiled)realInstance).setDebugInfo(pctx);
+      final ICode code = codeProxy.code;
+      final Binding bound = this.binding;
+      // function may have been redefined since the instance was created
+      final IExpr realInstance = (null != bound && bound.code == code)
+          ? bound.instance
+          : bind(backtrace, code);
+      codeProxy.invocations++;
+      if (tailCall && realInstance instanceof FunctionExpr) {
+        // the call will be completed by the calling function
+        final FunctionExpr callee = (FunctionExpr) realInstance;
+        return new TailCall(callee, callee.evaluateArguments(backtrace, ctx));
       }
       return realInstance.evaluate(backtrace, ctx);
     }
 
+    /**
+     * Start call whose arguments are evaluated by the caller.
+     *
+     * <p>Returns null if the function does not take positional arguments, then the call must be
+     * evaluated as usual. Otherwise the frame of the call is recorded in the backtrace, as it is
+     * before evaluation of the arguments of a normal call, and the call must be completed by
+     * finish() with the argument values.
+     */
+    public FunctionExpr begin(Backtrace backtrace, ICtx ctx) {
+      final ICode code = codeProxy.code;
+      final Binding bound = this.binding;
+      final IExpr realInstance = (null != bound && bound.code == code)
+          ? bound.instance
+          : bind(backtrace, code);
+      if (!(realInstance instanceof FunctionExpr) || !((FunctionExpr) realInstance).isPositional()) {
+        return null;
+      }
+      codeProxy.invocations++;
+      if (!tailCall) {
+        backtrace.push(realInstance, ctx);
+      }
+      return (FunctionExpr) realInstance;
+    }
+
+    /** Complete call started by begin() with given values of the arguments. */
+    public Object finish(Backtrace backtrace, ICtx ctx, FunctionExpr callee, Object[] args) {
+      final Eargs eargs = callee.valueArguments(ctx, args);
+      if (tailCall) {
+        return new TailCall(callee, eargs);
+      }
+      final Object result = callee.call(backtrace, eargs);
+      backtrace.drop();
+      return result;
+    }
+
     @Override
     public ParseCtx getDebugInfo() {
       return pctx;
@@ -1404,9 +1824,72 @@ public class Compiler {
   }
 
   
+  /**
+   * Instance of user defined function.
+   *
+   * <p>Calls from tail positions of function bodies return TailCall objects instead of evaluating
+   * the callee, these calls are completed in a loop by the calling function, so they do not
+   * consume the Java stack. The callee arguments are evaluated in the context of the caller, so
+   * the dynamic bindings visible to the callee are the same as with the normal call. When the
+   * caller's levels only bind variables that the callee binds as well the callee context is linked
+   * past them, so self recursion and similar chains of tail calls run in constant space.
+   */
+  public abstract static class FunctionExpr extends Funcs.AbstractExpr {
+    protected abstract Eargs evaluateArguments(Backtrace backtrace, ICtx ctx);
+
+    protected abstract Object evalBody(Backtrace backtrace, Eargs eargs);
+
+    /** Check if the call passes values of all the arguments, see valueArguments(). */
+    protected boolean isPositional() {
+      return false;
+    }
+
+    /** Make arguments of positional call from values evaluated by the caller. */
+    protected Eargs valueArguments(ICtx ctx, Object[] values) {
+      throw new UnsupportedOperationException("arguments of " + getName() + " are not positional");
+    }
+
+    @Override
+    protected Object doEvaluate(Backtrace backtrace, ICtx ctx) {
+      return call(backtrace, evaluateArguments(backtrace, ctx));
+    }
+
+    /** Evaluate the function body with given arguments and complete calls from tail position. */
+    protected Object call(Backtrace backtrace, Eargs eargs) {
+      Object result = evalBody(backtrace, eargs);
+      while (result instanceof TailCall) {
+        final TailCall call = (TailCall) result;
+        call.eargs.skipShadowed(eargs);
+        eargs = call.eargs;
+        result = call.callee.evalBody(backtrace, eargs);
+      }
+      return result;
+    }
+  }
+
+  /** Call from tail position that is pending completion. */
+  protected static final class TailCall {
+    private final FunctionExpr callee;
+    private final Eargs eargs;
+
+    private TailCall(FunctionExpr callee, Eargs eargs) {
+      this.callee = callee;
+      this.eargs = eargs;
+    }
+  }
+
+  /**
+   * Function table entry of user defined function.
+   *
+   * <p>Compiled calls refer to the entry rather than to the function definition, so the function
+   * may be called before it is defined and may be redefined later.
+   */
   public static class CodeProxy implements ICode {
-    protected ICode code;
+    private static final AtomicReferenceFieldUpdater<CodeProxy, ICode> CODE =
+        AtomicReferenceFieldUpdater.newUpdater(CodeProxy.class, ICode.class, "code");
+    protected volatile ICode code;
     protected String name;
+    protected int invocations;
     //protected InstanceProxy instanceProxy;
 
     protected CodeProxy(String name) {
@@ -1415,10 +1898,38 @@ public class Compiler {
     }
     
     protected void setCode(ICode code) {
+      if (code instanceof LAMBDA.FunctionCode) {
+        ((LAMBDA.FunctionCode) code).setOwner(this);
+      }
       this.code = code;
+      this.invocations = 0;
       //instanceProxy.setCode(code); 
     }
 
+    /**
+     * Replace function definition by its other tier.
+     *
+     * <p>Fails if the function has been redefined since the expected definition was read.
+     */
+    protected boolean swapCode(ICode expected, ICode code) {
+      return CODE.compareAndSet(this, expected, code);
+    }
+
+    /** Return number of calls to the current function definition (approximate). */
+    public int getInvocations() {
+      return invocations;
+    }
+
+    @Override
+    public Object invoke(Backtrace backtrace, ICtx ctx, Object[] args) {
+      final ICode code = this.code;
+      if (null == code) {
+        throw new ExecutionException(backtrace, "Call to undefined function " + name);
+      }
+      invocations++;
+      return code.invoke(backtrace, ctx, args);
+    }
+
     @Override
     public String toString() {
       return "#<func:" + name + ":" + code + ">";
@@ -1474,6 +1985,7 @@ public class Compiler {
   public class DEFUN extends LAMBDA {
     // FIXME: why do we need this?
     private String name;
+    private String key;
 
     @Override
     protected String getSymName() {
@@ -1482,9 +1994,8 @@ public class Compiler {
 
     @Override
     public ICode doEvaluate(Backtrace backtrace, ICtx ctx) {
-      ICode code = Compiler.this.getFunOrStub(name);
+      ICode code = Compiler.this.getFunOrStubByKey(key);
       if (code instanceof CodeProxy) {
-        //final String functabKey = Compiler.this.funcNameConverter.convert(name);
         CodeProxy proxy = (CodeProxy) code;
         final ICode obj = super.doEvaluate(backtrace, ctx);
         proxy.setCode(obj);
@@ -1509,9 +2020,9 @@ public class Compiler {
             debugInfo, "DEFUN expects Symbol as first parameter, but got " + sym);
       }
       this.name = sym.toString();
+      this.key = funcNameConverter.convert(this.name);
       final ASTNList second = (ASTNList) params.get(1);
-      this.argSpec = new ArgSpec(second, Compiler.this);
-      this.blocks = compileExpList(params.subList(2, params.size()));
+      compileFunction(second, params.subList(2, params.size()));
     }
   }
 
@@ -1519,8 +2030,16 @@ public class Compiler {
   @Arguments(spec = {"(", "arglist", ")", "body"})
   @Package(name = Package.BASE_CONTROL)
   public class LAMBDA extends AbstractForm {
+    // functions with larger bodies are not inlined in the optimized tier
+    private static final int MAX_INLINE_NODES = 32;
+    // optimized tier is not compiled again after this many deoptimizations
+    private static final int MAX_DEOPTS = 3;
     protected ArgSpec argSpec;
     protected List<ICompiled> blocks;
+    protected ICompiled[] body;
+    protected ASTNList bodyAst;
+    private Tier tier = null;
+    private int deopts = 0;
 
     @Override
     public void setRawParams(ASTNList params) throws InvalidParametersException {
@@ -1533,97 +2052,519 @@ public class Compiler {
         throw new InvalidParametersException(
             debugInfo, "LAMBDA expects first parameter to be a list");
       }
-      this.argSpec = new ArgSpec((ASTNList) first, Compiler.this);
-      this.blocks = compileExpList(params.subList(1, params.size()));
-    }
-
-    @Override
-    public ICode doEvaluate(Backtrace backtrace, ICtx ctx) {
-      return getICode();
+      compileFunction((ASTNList) first, params.subList(1, params.size()));
     }
 
-    protected String getSymName() {
-      return "<lambda>";
+    /**
+     * Compile argument list and body of the function.
+     *
+     * <p>The body is evaluated in the context of the caller, so the only variables that are
+     * statically known in it are the function arguments.
+     */
+    protected void compileFunction(ASTNList argsSpec, ASTNList body)
+        throws InvalidParametersException {
+      // nested functions are compiled in the base tier
+      final Tier prevTier = optimizing.get();
+      optimizing.set(null);
+      Scope prevScope = enterScope(null);
+      try {
+        this.argSpec = new ArgSpec(argsSpec, Compiler.this);
+        enterScope(argSpec.getScope());
+        this.blocks = compileExpList(body);
+        markTailCalls(blocks);
+        this.body = lowerBody(getSymName(), blocks);
+        this.bodyAst = body;
+      } finally {
+        leaveScope(prevScope);
+        optimizing.set(prevTier);
+      }
     }
 
-    protected ICode getICode() {
-      final String symName = this.getSymName();
-      return new ICode() {
-        @Override
-        public Funcs.AbstractExpr getInstance() {
-          return new Funcs.AbstractExpr() {
-            protected ArgList argList;
+    /**
+     * Return optimized tier of the function, compile it if needed.
+     *
+     * <p>The body is compiled again with calls of small user functions inlined. Returns null if
+     * nothing could be inlined, since the result would be the same as the base tier.
+     */
+    protected synchronized Tier optimize() {
+      if (null != tier || deopts > MAX_DEOPTS || null == bodyAst) {
+        return tier;
+      }
+      final Tier newTier = new Tier();
+      final Tier prevTier = optimizing.get();
+      optimizing.set(newTier);
+      final Scope prevScope = enterScope(argSpec.getScope());
+      try {
+        final List<ICompiled> optBlocks = compileExpList(bodyAst);
+        markTailCalls(optBlocks);
+        newTier.body = lowerBody(getSymName(), optBlocks);
+      } catch (RuntimeException ex) {
+        // the environment has changed so that the body does not compile
+        deopts = MAX_DEOPTS + 1;
+        return null;
+      } finally {
+        leaveScope(prevScope);
+        optimizing.set(prevTier);
+      }
+      if (newTier.inlined == 0) {
+        deopts = MAX_DEOPTS + 1;
+        return null;
+      }
+      this.tier = newTier;
+      return newTier;
+    }
 
-            @Override
-            public String getName() {
-              return symName;
-            }
+    private synchronized void invalidate(Tier oldTier) {
+      if (tier == oldTier) {
+        tier = null;
+        deopts++;
+      }
+    }
 
-            @Override
-            public Object doEvaluate(Backtrace backtrace, ICtx ctx) {
-              Eargs localCtx = argList.evaluateArguments(backtrace, ctx);
-              try {
-                return evalBlocks(backtrace, blocks, localCtx);
-              } catch (ReturnException rex) {
-                return rex.getPayload();
-              }
-            }
+    /** Check if the function takes given number of mandatory arguments and no other ones. */
+    protected boolean hasPositionalArgs(int argsNum) {
+      if (argSpec.size() != argsNum) {
+        return false;
+      }
+      for (int i = 0; i < argsNum; i++) {
+        final ArgSpec.Arg arg = argSpec.getArg(i);
+        if (arg.getFlag() != ArgSpec.AF.MANDATORY || arg.isLazy() || arg.isPipe()) {
+          return false;
+        }
+      }
+      return true;
+    }
 
-            @Override
-            public void setParams(List<ICompiled> params) throws InvalidParametersException {
-              if (null != this.argList) {
-                throw new RuntimeException("internal error: parameters already set");
-              }
-              this.argList = new ArgList(argSpec, params);
-            }
-          };
+    /** Check if calls of the function with given number of arguments may be inlined. */
+    protected boolean isInlinable(int argsNum) {
+      if (null == bodyAst || bodyAst.size() == 0 || !hasPositionalArgs(argsNum)) {
+        return false;
+      }
+      int nodes = 0;
+      for (ASTN astn : bodyAst) {
+        nodes += countNodes(astn);
+      }
+      return nodes <= MAX_INLINE_NODES;
+    }
+
+    private int countNodes(ASTN astn) {
+      if (!astn.isList()) {
+        return 1;
+      }
+      int nodes = 1;
+      for (ASTN elt : (ASTNList) astn) {
+        nodes += countNodes(elt);
+        if (nodes > MAX_INLINE_NODES) {
+          break;
         }
+      }
+      return nodes;
+    }
 
-        @Override
-        public boolean isBuiltIn() {
+    /**
+     * Check if the function body only applies pure builtin functions to the arguments and
+     * constants, so that its value depends on the values of the arguments only.
+     */
+    protected boolean isPure() {
+      for (ASTN astn : bodyAst) {
+        if (!isPure(astn)) {
           return false;
         }
+      }
+      return true;
+    }
 
-        @Override
-        public String getDocstring() {
-          return (null != blocks && blocks.size() > 0 && (blocks.get(0) instanceof Funcs.StringExp))
-              ? (String) ((Funcs.StringExp) blocks.get(0)).getValue()
-              : "N/A";
+    private boolean isPure(ASTN astn) {
+      if (!astn.isList()) {
+        final Object obj = astn.getObject();
+        return obj instanceof Symbol
+            ? argSpec.nameToIdx(obj.toString()) >= 0
+            : obj instanceof Number
+                || obj instanceof String
+                || obj instanceof Boolean
+                || obj instanceof Keyword;
+      }
+      final ASTNList list = (ASTNList) astn;
+      if (list.isLiteralList() || list.size() == 0 || list.get(0).isList()) {
+        return false;
+      }
+      final Object first = list.get(0).getObject();
+      final ICode code = first instanceof Symbol ? getFun(first.toString()) : null;
+      if (!(code instanceof Builtin) || !BuiltinMeta.of(((Builtin) code).cls).isPure()) {
+        return false;
+      }
+      for (int i = 1; i < list.size(); i++) {
+        if (!isPure(list.get(i))) {
+          return false;
         }
+      }
+      return true;
+    }
 
-        @Override
-        public String getArgDescr() {
-          return null == argSpec ? "args" : argSpec.asSpecList().toString();
+    @Override
+    public ICode doEvaluate(Backtrace backtrace, ICtx ctx) {
+      return getICode();
+    }
+
+    protected String getSymName() {
+      return "<lambda>";
+    }
+
+    protected ICode getICode() {
+      return new FunctionCode();
+    }
+
+    /**
+     * Optimized tier of the function.
+     *
+     * <p>The tier stays valid while the functions inlined in it are not redefined.
+     */
+    protected class Tier {
+      private ICompiled[] body;
+      private int inlined = 0;
+      private volatile boolean valid = true;
+
+      /** Return function whose body this tier optimizes. */
+      public LAMBDA getForm() {
+        return LAMBDA.this;
+      }
+
+      /** Drop the tier because one of the inlined functions has been redefined. */
+      protected void invalidate() {
+        if (valid) {
+          valid = false;
+          LAMBDA.this.invalidate(this);
         }
+      }
+    }
 
-        @Override
-        public String getCodeType() {
-          return "compiled function";
+    /**
+     * Function object of the definition.
+     *
+     * <p>Each function object counts its invocations. When the count reaches the optimize
+     * threshold the function object switches to the optimized tier of the definition, if the
+     * function is installed in the function table, the table entry is swapped to the function
+     * object of the optimized tier. When the optimized tier is invalidated the function returns to
+     * the base tier.
+     */
+    protected class FunctionCode implements ICode {
+      private final ICompiled[] code;
+      private final Tier codeTier;
+      private final FunctionCode base;
+      private volatile Tier promoted = null;
+      private volatile FunctionCode promotedCode = null;
+      private volatile CodeProxy owner = null;
+      private volatile Invoker invoker = null;
+      private int invocations = 0;
+
+      private FunctionCode() {
+        this.code = body;
+        this.codeTier = null;
+        this.base = this;
+      }
+
+      private FunctionCode(FunctionCode base, Tier tier) {
+        this.code = tier.body;
+        this.codeTier = tier;
+        this.base = base;
+      }
+
+      /** Return function object of the base tier of this definition. */
+      public FunctionCode getBase() {
+        return base;
+      }
+
+      /** Return function form that created this function object. */
+      public LAMBDA getForm() {
+        return LAMBDA.this;
+      }
+
+      /** Check if this function object executes the optimized tier. */
+      public boolean isOptimized() {
+        final Tier tier = null != codeTier ? codeTier : promoted;
+        return null != tier && tier.valid;
+      }
+
+      /** Return number of invocations of this function object (approximate). */
+      public int getInvocations() {
+        return invocations;
+      }
+
+      private void setOwner(CodeProxy proxy) {
+        if (null == owner) {
+          owner = proxy;
         }
+      }
 
-        @Override
-        public String getDefLocation() {
-          return "" + LAMBDA.this.getDebugInfo();
+      /** Return body to evaluate for a call of the function. */
+      private ICompiled[] enter() {
+        final int count = ++invocations;
+        if (null != codeTier) {
+          if (codeTier.valid) {
+            return code;
+          }
+          base.demote(codeTier);
+          return base.code;
+        }
+        final Tier tier = promoted;
+        if (null != tier) {
+          if (tier.valid) {
+            return tier.body;
+          }
+          demote(tier);
+        } else if (count == optimizeThreshold) {
+          promote();
         }
+        return code;
+      }
 
-        @Override
-        public ArgSpec getArgSpec() {
-          return argSpec;
+      private synchronized void promote() {
+        if (null != promoted) {
+          return;
         }
+        final Tier tier = optimize();
+        if (null == tier) {
+          return;
+        }
+        final FunctionCode optCode = new FunctionCode(this, tier);
+        promotedCode = optCode;
+        promoted = tier;
+        final CodeProxy proxy = owner;
+        if (null != proxy) {
+          proxy.swapCode(this, optCode);
+        }
+      }
 
-        @Override
-        public String getPackageName() {
-          return "user";
+      private synchronized void demote(Tier tier) {
+        if (promoted != tier) {
+          return;
+        }
+        final FunctionCode optCode = promotedCode;
+        promoted = null;
+        promotedCode = null;
+        invocations = 0;
+        final CodeProxy proxy = owner;
+        if (null != proxy) {
+          proxy.swapCode(optCode, this);
         }
-      };
+      }
+
+      @Override
+      public Object invoke(Backtrace backtrace, ICtx ctx, Object[] args) {
+        Invoker inv = this.invoker;
+        if (null == inv) {
+          inv = new Invoker(this);
+          this.invoker = inv;
+        }
+        return inv.invoke(backtrace, ctx, args);
+      }
+
+      @Override
+      public Funcs.AbstractExpr getInstance() {
+        final String symName = getSymName();
+        return new FunctionExpr() {
+          protected ArgList argList;
+          private boolean positional = false;
+
+          @Override
+          public String getName() {
+            return symName;
+          }
+
+          @Override
+          protected boolean isPositional() {
+            return positional;
+          }
+
+          @Override
+          protected Eargs valueArguments(ICtx ctx, Object[] values) {
+            return ctx.getCompiler().newEargs(values, null, argList, ctx);
+          }
+
+          @Override
+          protected Eargs evaluateArguments(Backtrace backtrace, ICtx ctx) {
+            return argList.evaluateArguments(backtrace, ctx);
+          }
+
+          @Override
+          protected Object evalBody(Backtrace backtrace, Eargs eargs) {
+            try {
+              return evalBlocks(backtrace, enter(), eargs);
+            } catch (ReturnException rex) {
+              return rex.getPayload();
+            }
+          }
+
+          @Override
+          public void setParams(List<ICompiled> params) throws InvalidParametersException {
+            if (null != this.argList) {
+              throw new RuntimeException("internal error: parameters already set");
+            }
+            this.argList = new ArgList(argSpec, params);
+            this.positional = hasPositionalArgs(params.size());
+          }
+        };
+      }
+
+      @Override
+      public boolean isBuiltIn() {
+        return false;
+      }
+
+      @Override
+      public String getDocstring() {
+        return (null != blocks && blocks.size() > 0 && (blocks.get(0) instanceof Funcs.StringExp))
+            ? (String) ((Funcs.StringExp) blocks.get(0)).getValue()
+            : "N/A";
+      }
+
+      @Override
+      public String getArgDescr() {
+        return null == argSpec ? "args" : argSpec.asSpecList().toString();
+      }
+
+      @Override
+      public String getCodeType() {
+        return "compiled function";
+      }
+
+      @Override
+      public String getDefLocation() {
+        return "" + LAMBDA.this.getDebugInfo();
+      }
+
+      @Override
+      public ArgSpec getArgSpec() {
+        return argSpec;
+      }
+
+      @Override
+      public String getPackageName() {
+        return "user";
+      }
     }
   }
 
+  /**
+   * Call of user function replaced by the function body in the optimized tier.
+   *
+   * <p>The arguments are bound in slots of a new context level, so the body sees the same dynamic
+   * bindings as in a call. If the function has been redefined the optimized tier that contains
+   * the call is invalidated and the call is made as usual. When the inlined call is in tail
+   * position, tail calls of the body are completed by the enclosing function.
+   */
+  protected class InlineCall extends Funcs.AbstractExpr {
+    private final LAMBDA.Tier tier;
+    private final CodeProxy proxy;
+    private final LAMBDA.FunctionCode callee;
+    private final InstanceProxy call;
+    private final ICompiled[] args;
+    private boolean tailCall = false;
+    private boolean folded = false;
+    private Object value = null;
+
+    protected InlineCall(
+        LAMBDA.Tier tier,
+        CodeProxy proxy,
+        LAMBDA.FunctionCode callee,
+        InstanceProxy call,
+        List<ICompiled> params) {
+      this.tier = tier;
+      this.proxy = proxy;
+      this.callee = callee;
+      this.call = call;
+      this.args = params.toArray(new ICompiled[params.size()]);
+    }
+
+    /** Return the call of the function which this expression replaces. */
+    public InstanceProxy getCall() {
+      return call;
+    }
+
+    @Override
+    public void setParams(List<ICompiled> params) throws InvalidParametersException {
+      throw new RuntimeException("internal error: parameters of inlined call already set");
+    }
+
+    @Override
+    protected Object doEvaluate(Backtrace backtrace, ICtx ctx) {
+      final ICode code = proxy.code;
+      if (!(code instanceof LAMBDA.FunctionCode)
+          || ((LAMBDA.FunctionCode) code).getBase() != callee) {
+        tier.invalidate();
+        return call.evaluate(backtrace, ctx);
+      }
+      proxy.invocations++;
+      return folded ? value : evalInline(backtrace, ctx);
+    }
+
+    private Object evalInline(Backtrace backtrace, ICtx ctx) {
+      final LocalCtx frame = new LocalCtx(ctx, callee.getArgSpec().getScope());
+      for (int i = 0; i < args.length; i++) {
+        frame.setSlot(i, args[i].evaluate(backtrace, ctx));
+      }
+      Object result;
+      try {
+        result = evalBlocks(backtrace, callee.code, frame);
+      } catch (ReturnException rex) {
+        return rex.getPayload();
+      }
+      // in tail position pending call is completed by the enclosing function
+      while (!tailCall && result instanceof TailCall) {
+        final TailCall pending = (TailCall) result;
+        result = pending.callee.evalBody(backtrace, pending.eargs);
+      }
+      return result;
+    }
+
+    /** Evaluate the call at compile time if the function is pure and the arguments are constant. */
+    private void fold() {
+      for (ICompiled arg : args) {
+        if (!(arg instanceof Funcs.ValueExpr)) {
+          return;
+        }
+      }
+      if (callee.getForm().isPure()) {
+        try {
+          value = evalInline(newBacktrace(), newCtx());
+          folded = true;
+        } catch (RuntimeException ex) {
+          // errors are reported when the call is evaluated
+        }
+      }
+    }
+  }
+
+  /**
+   * Replace call of user function by its body when compiling the optimized tier of a function.
+   *
+   * <p>Only functions with small bodies and mandatory arguments are inlined, a function is not
+   * inlined into itself. Calls of functions with pure bodies and constant arguments are folded.
+   */
+  protected ICompiled inlineCall(
+      LAMBDA.Tier tier, CodeProxy proxy, InstanceProxy call, List<ICompiled> params) {
+    final ICode code = proxy.code;
+    if (!(code instanceof LAMBDA.FunctionCode)) {
+      return call;
+    }
+    final LAMBDA.FunctionCode callee = ((LAMBDA.FunctionCode) code).getBase();
+    if (callee.getForm() == tier.getForm() || !callee.getForm().isInlinable(params.size())) {
+      return call;
+    }
+    final InlineCall inline = new InlineCall(tier, proxy, callee, call, params);
+    inline.setName(callee.getForm().getSymName());
+    inline.setDebugInfo(call.getDebugInfo());
+    inline.fold();
+    tier.inlined++;
+    return inline;
+  }
+
   @Docstring(text = "Set value of a variable o location (place in a list , array, etc.) to value.")
   @Package(name = Package.BASE_BINDINGS)
   public class SETF extends AbstractForm {
     protected ICompiled rvalue = null;
     protected ICompiled lvalue = null;
+    protected Scope scope = null;
 
 
     @Override
@@ -1639,12 +2580,17 @@ public class Compiler {
             getName() + ": Invalid first parameter, must be an LValue compatible expression");
       }
       this.lvalue = lvalueExp;
-      this.rvalue = compile(params.get(1));
+      final Scope prevScope = enterScope(this.scope = newScope());
+      try {
+        this.rvalue = compile(params.get(1));
+      } finally {
+        leaveScope(prevScope);
+      }
     }
 
     @Override
     public Object doEvaluate(Backtrace backtrace, ICtx ctx) {
-      final ICtx localCtx = new Ctx(ctx);
+      final ICtx localCtx = new LocalCtx(ctx, scope);
       final Object val = rvalue.evaluate(backtrace, localCtx);
       ((LValue) lvalue).doSet(backtrace, ctx, val);
       return val;
@@ -1686,15 +2632,21 @@ public class Compiler {
         VarExp var = (VarExp) varExp;
         String varName = var.getName();
         varNames.add(varName);
+      }
+      // bindings are resolved dynamically
+      final Scope prevScope = enterScope(null);
+      try {
         listExpr = compile(params.get(1));
+        // handle executable blocks
+        this.blocks = compileExpList(params.subList(2, params.size()));
+      } finally {
+        leaveScope(prevScope);
       }
-      // handle executable blocks
-      this.blocks = compileExpList(params.subList(2, params.size()));
     }
 
     @Override
     public Object doEvaluate(Backtrace backtrace, ICtx ctx) {
-      ICtx localCtx = new Ctx(ctx);
+      ICtx localCtx = new DynCtx(ctx);
       Object listVals = listExpr.evaluate(backtrace, localCtx);
       if (!(listVals instanceof List)) {
         throw new RuntimeException(
@@ -1741,7 +2693,13 @@ public class Compiler {
             debugInfo, getName() + " expects at least 2 parameters");
       }
       this.bindExpr = compile(params.get(0));
-      this.blocks = compileExpList(params.subList(1, params.size()));
+      // bindings are resolved dynamically
+      final Scope prevScope = enterScope(null);
+      try {
+        this.blocks = compileExpList(params.subList(1, params.size()));
+      } finally {
+        leaveScope(prevScope);
+      }
     }
 
     @Override
@@ -1753,7 +2711,7 @@ public class Compiler {
             getName() + " expects a java.lang.Map instance as first parameter, but got " + bindObj);
       }
       @SuppressWarnings("unchecked")
-      final ICtx localCtx = new Ctx(ctx, (Map<String, Object>) bindObj);
+      final ICtx localCtx = new DynCtx(ctx, (Map<String, Object>) bindObj);
       return evalBlocks(backtrace, blocks, localCtx);
     }
   }
@@ -1771,7 +2729,13 @@ public class Compiler {
             debugInfo, getName() + " expects at least 2 parameters");
       }
       this.bindExpr = compile(params.get(0));
-      this.blocks = compileExpList(params.subList(1, params.size()));
+      // bindings are resolved dynamically
+      final Scope prevScope = enterScope(null);
+      try {
+        this.blocks = compileExpList(params.subList(1, params.size()));
+      } finally {
+        leaveScope(prevScope);
+      }
     }
 
     @Override
@@ -1901,6 +2865,7 @@ public class Compiler {
     protected List<ICompiled> blocks = null;
     protected List<ICompiled> varExprs = new ArrayList<ICompiled>();
     protected List<String> varNames = new ArrayList<String>();
+    protected Scope scope = null;
 
     @Override
     public void setRawParams(ASTNList params) throws InvalidParametersException {
@@ -1914,6 +2879,7 @@ public class Compiler {
       // handle variable mappings
       // @SuppressWarnings("unchecked")
       ASTNList varDefs = (ASTNList) params.get(0);
+      final List<ICompiled> varExps = new ArrayList<ICompiled>(varDefs.size());
       for (int i = 0; i < varDefs.size(); i++) {
         if (!(varDefs.get(i).isList())) {
           throw new InvalidParametersException(
@@ -1932,25 +2898,42 @@ public class Compiler {
               debugInfo,
               "LET: Invalid " + (i + 1) + " parameter, first value must be a variable name");
         }
-        // locals = new Ctx();
-        VarExp var = (VarExp) varExp;
-        ICompiled expr;
-        if (pair.size() > 1) {
-          expr = compile(pair.get(1));
-        } else {
-          expr = new ObjectExp(null);
-          expr.setDebugInfo(varExp.getDebugInfo());
+        varNames.add(((VarExp) varExp).getName());
+        varExps.add(varExp);
+      }
+      // repeated names are bound dynamically, as before
+      final boolean lexical = new HashSet<String>(varNames).size() == varNames.size();
+      final Scope prevScope =
+          enterScope(this.scope = lexical ? newScope(varNames.toArray(new String[0])) : null);
+      try {
+        for (int i = 0; i < varDefs.size(); i++) {
+          final ASTNList pair = ((ASTNList) varDefs.get(i));
+          ICompiled expr;
+          if (pair.size() > 1) {
+            expr = compile(pair.get(1));
+          } else {
+            expr = new ObjectExp(null);
+            expr.setDebugInfo(varExps.get(i).getDebugInfo());
+          }
+          varExprs.add(expr);
         }
-        String varName = var.getName();
-        varNames.add(varName);
-        varExprs.add(expr);
+        // handle executable blocks
+        this.blocks = compileExpList(params.subList(1, params.size()));
+      } finally {
+        leaveScope(prevScope);
       }
-      // handle executable blocks
-      this.blocks = compileExpList(params.subList(1, params.size()));
     }
 
     @Override
     public Object doEvaluate(Backtrace backtrace, ICtx ctx) {
+      if (null != scope) {
+        final LocalCtx localCtx = new LocalCtx(ctx, scope);
+        final int numVars = varExprs.size();
+        for (int i = 0; i < numVars; i++) {
+          localCtx.setSlot(i, varExprs.get(i).evaluate(backtrace, localCtx));
+        }
+        return evalBlocks(backtrace, blocks, localCtx);
+      }
       ICtx localCtx = new Ctx(ctx);
       for (int i = 0; i < varNames.size(); i++) {
         String varName = varNames.get(i);
@@ -1983,6 +2966,15 @@ public class Compiler {
         throw new InvalidParametersException(
             debugInfo, "SEARCH expects 2 parameters: sequence, test");
       }
+      final Scope prevScope = enterScope(null);
+      try {
+        compileParams(params);
+      } finally {
+        leaveScope(prevScope);
+      }
+    }
+
+    private void compileParams(ASTNList params) {
       this.input = compile(params.get(0));
       ASTN test = params.get(1);
       //testASTN = test;
@@ -1990,8 +2982,8 @@ public class Compiler {
         Object testObj = test.getObject();
         ParseCtx pctx = test.getPctx();
         test =
-          new ASTNList(Utils.list(new ASTNLeaf(new Symbol("DWIM-MATCHES"), pctx),
-                                  new ASTNLeaf(new Symbol("_"), pctx),
+          new ASTNList(Utils.list(new ASTNLeaf(Symbol.intern("DWIM-MATCHES"), pctx),
+                                  new ASTNLeaf(Symbol.intern("_"), pctx),
                                   test), pctx);
       }
       this.predicate = compile(test);
@@ -2001,6 +2993,10 @@ public class Compiler {
     public Object doEvaluate(Backtrace backtrace, ICtx ctx) {
       final ICtx localCtx = new Ctx(ctx);
       final Object val = input.evaluate(backtrace, localCtx);
+      // context levels are reused for all the elements, as in loops,
+      // the element level makes the chain opaque since its bindings are not known
+      final Ctx objCtx = new Ctx(ctx, new ArrayMap<Object>());
+      final Ctx checkCtx = new Ctx(objCtx);
       // FIXME: same sequence
       List<Object> result = Utils.list();
       // if (!isSequence(val)) {
@@ -2015,7 +3011,8 @@ public class Compiler {
               @SuppressWarnings("unchecked")
               Map<String, Object> objMap =
                   (obj instanceof Map) ? (Map<String, Object>) obj : new Funcs.BeanMap(obj);
-              final ICtx checkCtx = new Ctx(ctx, objMap, true);
+              objCtx.mappings = objMap;
+              checkCtx.getMappings().clear();
               checkCtx.getMappings().put("_", obj);
               Object chkResult = null;
               // try {
@@ -2092,6 +3089,163 @@ public class Compiler {
     public List<ICtx> getParentContexts();
   }
 
+  /** Marker of slots that do not hold a variable binding. */
+  protected static final Object UNBOUND = new Object();
+
+  // binding states of variable at a context level
+  private static final int NOT_BOUND = 0;
+  private static final int BOUND = 1;
+  // not bound yet, but may be bound later without creating new binding
+  private static final int PENDING = 2;
+
+  /**
+   * Lexical scope - compile-time description of a context level.
+   *
+   * <p>Lists names of variables that are bound in slots of a context level which is created at
+   * runtime by LET, FOREACH, threading forms or by evaluation of function arguments. The parent
+   * scope describes the enclosing level, null parent means that the enclosing levels are unknown
+   * at compile time.
+   */
+  public static class Scope {
+    private final String[] names;
+    private final Map<String, Integer> index;
+    private final Scope parent;
+
+    /** Create scope with given slot names, null names are skipped. */
+    public Scope(String[] names, Scope parent) {
+      this.names = names;
+      this.parent = parent;
+      this.index = new HashMap<String, Integer>(names.length << 1);
+      for (int i = 0; i < names.length; i++) {
+        if (null != names[i] && !index.containsKey(names[i])) {
+          index.put(names[i], i);
+        }
+      }
+    }
+
+    /** Return slot index for variable name or -1 if it is not bound in this scope. */
+    public int indexOf(String name) {
+      final Integer idx = index.get(name);
+      return null == idx ? -1 : idx;
+    }
+
+    public String getName(int idx) {
+      return names[idx];
+    }
+
+    public int size() {
+      return names.length;
+    }
+
+    public Scope getParent() {
+      return parent;
+    }
+  }
+
+  /**
+   * Binding status of variable name.
+   *
+   * <p>Cells are kept per compiler. Names are marked as local when they are bound by a scope or an
+   * argument list or when they are bound dynamically in a context level other than level 0. The
+   * mark is never removed. Variables whose names have never been marked live only in level 0
+   * contexts, so they are read directly from the level 0 context without walking the context
+   * chain.
+   *
+   * <p>The binding epoch of the cell validates cached locations of bindings of the variable. It is
+   * incremented when a binding of the variable is created or removed below level 0, but only after
+   * a location of its binding has been cached.
+   */
+  public static final class VarCell {
+    private final Compiler compiler;
+    private volatile boolean local = false;
+    private volatile boolean watched = false;
+    private final AtomicInteger epoch = new AtomicInteger();
+
+    private VarCell(Compiler compiler) {
+      this.compiler = compiler;
+    }
+
+    /** Return compiler that owns this cell. */
+    public Compiler getCompiler() {
+      return compiler;
+    }
+
+    /** Check if variable may be bound in a context other than level 0. */
+    public boolean isLocal() {
+      return local;
+    }
+
+    /** Return binding epoch of the variable and start tracking changes of its bindings. */
+    public int watchEpoch() {
+      if (!watched) {
+        watched = true;
+      }
+      return epoch.get();
+    }
+
+    /** Return binding epoch of the variable. */
+    public int getEpoch() {
+      return epoch.get();
+    }
+
+    private void bindingChanged() {
+      if (watched) {
+        epoch.incrementAndGet();
+      }
+    }
+  }
+
+  private final Map<String, VarCell> varCells = new ConcurrentHashMap<String, VarCell>();
+
+  /** Return binding status cell for given variable name. */
+  public VarCell getVarCell(String name) {
+    VarCell cell = varCells.get(name);
+    if (null == cell) {
+      final VarCell newCell = new VarCell(this);
+      cell = varCells.putIfAbsent(name, newCell);
+      if (null == cell) {
+        cell = newCell;
+      }
+    }
+    return cell;
+  }
+
+  /** Mark variable name as possibly bound below level 0. */
+  public void markLocal(String name) {
+    final VarCell cell = getVarCell(name);
+    if (!cell.local) {
+      cell.local = true;
+    }
+  }
+
+  private void markLocals(String[] names) {
+    for (String name : names) {
+      if (null != name) {
+        markLocal(name);
+      }
+    }
+  }
+
+  /** Record that a binding of the variable has been created or removed below level 0. */
+  protected void bindingChanged(String name) {
+    final VarCell cell = varCells.get(name);
+    if (null != cell) {
+      cell.bindingChanged();
+    }
+  }
+
+  /** Context level that keeps statically known bindings in slots. */
+  public interface ISlotCtx extends ICtx {
+    /** Return scope that describes slots of this context. */
+    public Scope getScope();
+
+    /** Get slot value or UNBOUND. */
+    public Object getSlot(int idx, Backtrace bt);
+
+    /** Check if variable has been bound in this context outside of its slots. */
+    public boolean hasExtraBinding(String name);
+  }
+
   public interface IMissHandler {
     Object handleMiss(ICtx ctx, String key);
   }
@@ -2108,36 +3262,134 @@ public class Compiler {
     }
   }
 
+  private static final IMissHandler NIL_MISS_HANDLER = new NilMissHandler();
+  private static final IMissHandler ERROR_MISS_HANDLER = new ErrorMissHandler();
+
+  /**
+   * Context level with variable bindings in a map.
+   *
+   * <p>The mappings and the properties maps are created when first needed, so context levels
+   * without own bindings are cheap.
+   */
   public class Ctx implements ICtx {
-    final Map<String, Object> mappings;
-    final Map<String, Map<Object, Object>> propsMap = new HashMap<String, Map<Object, Object>>();
+    Map<String, Object> mappings;
+    Map<String, Map<Object, Object>> propsMap = null;
     ICtx prev;
-    IMissHandler missHandler = new NilMissHandler();
+    IMissHandler missHandler;
+    // level 0 context of the chain
+    private ICtx level0;
+    // chain contains levels with bindings that are not tracked by VarCell
+    private boolean opaque;
 
     protected Map<String, Object> mkMappings() {
-      return new HashMap<String, Object>();
+      return null == prev ? new ArrayMap<Object>() : new LocalMappings();
+    }
+
+    private void setPrev(ICtx prev, boolean opaque) {
+      this.prev = prev;
+      if (null == prev) {
+        this.level0 = this;
+        this.opaque = false;
+      } else if (prev instanceof Ctx) {
+        this.level0 = prev.getLevel0();
+        this.opaque = opaque || ((Ctx) prev).opaque;
+      } else {
+        this.level0 = prev.getLevel0();
+        this.opaque = true;
+      }
+    }
+
+    /**
+     * Check if variables that are not marked in VarCell can be bound in this context chain below
+     * the level 0.
+     */
+    public boolean isOpaque() {
+      return opaque;
+    }
+
+    /**
+     * Check if creation and removal of bindings at this level change the binding epochs of the
+     * variables.
+     */
+    protected boolean isTracked() {
+      return null == prev || null == mappings || mappings instanceof LocalMappings;
+    }
+
+    /**
+     * Return this level as context with variable slots or null if it has none.
+     *
+     * <p>Cheaper than instanceof check of the interface when levels of different classes alternate.
+     */
+    protected ISlotCtx getSlotCtx() {
+      return null;
     }
 
     protected void initCtxSettings() {
       setMissHandler(
-          Compiler.this.failOnMissingVariables ? new ErrorMissHandler() : new NilMissHandler());
+          Compiler.this.failOnMissingVariables ? ERROR_MISS_HANDLER : NIL_MISS_HANDLER);
     }
 
     public Map<String, Map<Object, Object>> getPropsMap() {
+      if (null == propsMap) {
+        propsMap = new HashMap<String, Map<Object, Object>>();
+      }
       return propsMap;
     }
 
+    /** Check if variable is bound at this context level. */
+    protected boolean hasLocal(String name) {
+      return null != mappings && mappings.containsKey(name);
+    }
+
+    /** Return binding state of the variable at this context level. */
+    protected int bindingState(String name) {
+      return hasLocal(name) ? BOUND : NOT_BOUND;
+    }
+
+    /**
+     * Find context level that holds binding of the variable.
+     *
+     * <p>Returns the level 0 context if the variable is not bound. Returns null if the location of
+     * the binding can change without change of the binding epoch, in that case it must not be
+     * cached.
+     */
+    public Ctx findBindingLevel(String name) {
+      if (opaque) {
+        return null;
+      }
+      Ctx ctx = this;
+      while (true) {
+        final int state = ctx.bindingState(name);
+        if (BOUND == state) {
+          return ctx;
+        } else if (PENDING == state) {
+          return null;
+        } else if (null == ctx.prev) {
+          return ctx;
+        }
+        ctx = (Ctx) ctx.prev;
+      }
+    }
+
+    private Map<Object, Object> getVarProps(ICtx ctx, String name) {
+      if (ctx instanceof Ctx) {
+        final Map<String, Map<Object, Object>> props = ((Ctx) ctx).propsMap;
+        return null == props ? null : props.get(name);
+      }
+      return ctx.getPropsMap().get(name);
+    }
+
     @Override
     public Map<Object, Object> getProps(String name, Backtrace bt) {
       ICtx ctx = this.findCtxFor(name);
-      return (null == ctx) ? null : ctx.getPropsMap().get(name);
+      return (null == ctx) ? null : getVarProps(ctx, name);
     }
 
     @Override
     public Object getProp(String name, Object prop, Backtrace bt) {
       ICtx ctx = this.findCtxFor(name);
       if (null != ctx) {
-        final Map<Object, Object> pmap = ctx.getPropsMap().get(name);
+        final Map<Object, Object> pmap = getVarProps(ctx, name);
         if (null != pmap) {
           return pmap.get(prop);
         }
@@ -2222,11 +3474,11 @@ public class Compiler {
       super();
       initCtxSettings();
       if (roCtx) {
-        this.mappings = mkMappings();
-        this.prev = new Ctx(prev, vars, false);
+        this.mappings = null;
+        setPrev(new Ctx(prev, vars, false), false);
       } else {
-        this.mappings = (null == vars) ? mkMappings() : vars;
-        this.prev = prev;
+        this.mappings = vars;
+        setPrev(prev, null != vars);
       }
     }
 
@@ -2246,23 +3498,30 @@ public class Compiler {
      */
     public Ctx(ICtx locals, ICtx ctx) {
       this();
-      mappings.putAll(locals.getMappings());
-      prev = ctx;
+      getMappings().putAll(locals.getMappings());
+      setPrev(ctx, true);
     }
 
     /** Return variable value. */
     public Object get(String name, Backtrace bt) {
-      Object val;
-      if (null == (val = mappings.get(name))) {
-        return mappings.containsKey(name) ? null : (null == prev ? null : prev.get(name, bt));
-      } else {
-        return val;
+      final Map<String, Object> mappings = this.mappings;
+      if (null != mappings) {
+        final Object val = mappings.get(name);
+        if (null != val) {
+          return val;
+        } else if (mappings.containsKey(name)) {
+          return null;
+        }
       }
+      return null == prev ? null : prev.get(name, bt);
     }
 
     protected ICtx findCtxFor(String name) {
       ICtx ctx = this;
-      while (null != ctx && (!ctx.getMappings().containsKey(name))) {
+      while (null != ctx
+             && !(ctx instanceof Ctx
+                  ? ((Ctx) ctx).hasLocal(name)
+                  : ctx.getMappings().containsKey(name))) {
         ctx = ctx.getPrev();
       }
       return ctx;
@@ -2288,7 +3547,7 @@ public class Compiler {
 
     /** Check existance of variable mapping with given name. */
     public boolean contains(String name) {
-      if (mappings.containsKey(name)) {
+      if (hasLocal(name)) {
         return true;
       } else if (null == prev) {
         return false;
@@ -2299,7 +3558,7 @@ public class Compiler {
 
     /** Create new variable mapping. */
     public void put(String name, Object expr) {
-      Object prev = mappings.put(name, expr);
+      Object prev = getMappings().put(name, expr);
       // FIXME: bug - if var was spreviously set to null
       if (null != prev) {
         throw new RuntimeException("trying to overwrite variable " + name + " in context " + this);
@@ -2315,9 +3574,10 @@ public class Compiler {
     public String toString() {
       StringBuffer buf = new StringBuffer();
       buf.append("Ctx<").append(this.hashCode()).append("[");
+      final Map<String, Object> mappings = getMappings();
       for (String var : mappings.keySet()) {
         buf.append("\n").append(var).append(" -> ").append(mappings.get(var));
-        if (propsMap.containsKey(var)) {
+        if (null != propsMap && propsMap.containsKey(var)) {
           buf.append(" (").append(propsMap.get(var));
         }
       }
@@ -2341,7 +3601,7 @@ public class Compiler {
     /** Print out context contents. */
     public String toStringShort() {
       StringBuffer buf = new StringBuffer();
-      buf.append(this.toStringSelf()).append("=").append(mappings);
+      buf.append(this.toStringSelf()).append("=").append(getMappings());
       if (null != prev) {
         buf.append("->").append(prev.toStringSelf());
       }
@@ -2354,12 +3614,14 @@ public class Compiler {
     }
 
     public ICtx getLevel0() {
-      final ICtx prev = getPrev();
-      return null == prev ? this : prev.getLevel0();
+      return level0;
     }
 
     @Override
     public Map<String, Object> getMappings() {
+      if (null == mappings) {
+        mappings = mkMappings();
+      }
       return this.mappings;
     }
 
@@ -2410,9 +3672,8 @@ public class Compiler {
 
     @Override
     public void remove(String name) {
-      final Map<String, Object> mappings = getMappings();
-      if (mappings.containsKey(name)) {
-        mappings.remove(name);
+      if (hasLocal(name)) {
+        getMappings().remove(name);
       }
       ICtx ctx = getPrev();
       if (null != ctx) {
@@ -2421,6 +3682,335 @@ public class Compiler {
     }
   }
 
+  /**
+   * Context level for lexically bound variables.
+   *
+   * <p>Variables described by the scope are kept in slots, any other bindings that are created
+   * dynamically are kept in a separate map. The bindings are visible through getMappings() as
+   * for any other context.
+   */
+  public class LocalCtx extends Ctx implements ISlotCtx {
+    protected Scope scope;
+    protected Object[] slots;
+    protected Map<String, Object> extra;
+
+    /** Create context level with unbound slots for variables of given scope. */
+    public LocalCtx(ICtx prev, Scope scope) {
+      super(prev);
+      this.scope = scope;
+      this.slots = new Object[scope.size()];
+      Arrays.fill(this.slots, UNBOUND);
+    }
+
+    @Override
+    protected Map<String, Object> mkMappings() {
+      return new SlotMappings();
+    }
+
+    @Override
+    protected boolean isTracked() {
+      return true;
+    }
+
+    @Override
+    protected ISlotCtx getSlotCtx() {
+      return this;
+    }
+
+    @Override
+    public Scope getScope() {
+      return scope;
+    }
+
+    @Override
+    public Object getSlot(int idx, Backtrace bt) {
+      return slots[idx];
+    }
+
+    /** Bind value in a slot. */
+    public void setSlot(int idx, Object value) {
+      slots[idx] = value;
+    }
+
+    @Override
+    public boolean hasExtraBinding(String name) {
+      return null != extra && extra.containsKey(name);
+    }
+
+    @Override
+    protected boolean hasLocal(String name) {
+      final int idx = scope.indexOf(name);
+      return idx >= 0 ? slots[idx] != UNBOUND : hasExtraBinding(name);
+    }
+
+    @Override
+    protected int bindingState(String name) {
+      final int idx = scope.indexOf(name);
+      if (idx >= 0) {
+        return slots[idx] != UNBOUND ? BOUND : PENDING;
+      }
+      return hasExtraBinding(name) ? BOUND : NOT_BOUND;
+    }
+
+    @Override
+    public Object get(String name, Backtrace bt) {
+      final int idx = scope.indexOf(name);
+      if (idx >= 0) {
+        final Object val = slots[idx];
+        if (val != UNBOUND) {
+          return val;
+        }
+      } else if (null != extra && extra.containsKey(name)) {
+        return extra.get(name);
+      }
+      return null == prev ? null : prev.get(name, bt);
+    }
+
+    private class SlotMappings extends AbstractMap<String, Object> {
+      @Override
+      public boolean containsKey(Object key) {
+        final int idx = scope.indexOf((String) key);
+        return idx >= 0 ? slots[idx] != UNBOUND : (null != extra && extra.containsKey(key));
+      }
+
+      @Override
+      public Object get(Object key) {
+        final int idx = scope.indexOf((String) key);
+        if (idx >= 0) {
+          final Object val = slots[idx];
+          return val == UNBOUND ? null : val;
+        }
+        return null == extra ? null : extra.get(key);
+      }
+
+      @Override
+      public Object put(String key, Object value) {
+        final int idx = scope.indexOf(key);
+        if (idx >= 0) {
+          final Object prevVal = slots[idx];
+          slots[idx] = value;
+          return prevVal == UNBOUND ? null : prevVal;
+        }
+        if (null == extra) {
+          extra = new HashMap<String, Object>();
+        }
+        if (extra.containsKey(key)) {
+          return extra.put(key, value);
+        }
+        markLocal(key);
+        extra.put(key, value);
+        bindingChanged(key);
+        return null;
+      }
+
+      @Override
+      public Object remove(Object key) {
+        final int idx = scope.indexOf((String) key);
+        if (idx >= 0) {
+          final Object prevVal = slots[idx];
+          slots[idx] = UNBOUND;
+          bindingChanged((String) key);
+          return prevVal == UNBOUND ? null : prevVal;
+        }
+        if (null == extra || !extra.containsKey(key)) {
+          return null;
+        }
+        final Object prevVal = extra.remove(key);
+        bindingChanged((String) key);
+        return prevVal;
+      }
+
+      @Override
+      public void clear() {
+        for (int i = 0; i < slots.length; i++) {
+          if (slots[i] != UNBOUND) {
+            slots[i] = UNBOUND;
+            bindingChanged(scope.getName(i));
+          }
+        }
+        if (null != extra) {
+          for (String key : extra.keySet()) {
+            bindingChanged(key);
+          }
+          extra = null;
+        }
+      }
+
+      @Override
+      public Set<Entry<String, Object>> entrySet() {
+        final Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < slots.length; i++) {
+          if (slots[i] != UNBOUND && scope.indexOf(scope.getName(i)) == i) {
+            snapshot.put(scope.getName(i), slots[i]);
+          }
+        }
+        if (null != extra) {
+          snapshot.putAll(extra);
+        }
+        return Collections.unmodifiableMap(snapshot).entrySet();
+      }
+    }
+  }
+
+  /**
+   * Context level of dynamic bindings created by DLET and WITH-BINDINGS.
+   *
+   * <p>The thread that creates the level keeps shallow binding cells for the variables that are
+   * read through it: each cell points to the context level that holds the binding, so a read does
+   * not walk the levels below. Cells are resolved on first read, by walking the levels down to
+   * the next dynamic level of the same thread and taking its cell, so the cost of entering a level
+   * does not depend on nesting depth. A cell is valid while the binding epoch of the variable is
+   * unchanged. Maps bound by WITH-BINDINGS may gain keys without going through the context, so
+   * such maps between the level and the holder of the binding are checked on each read. Other
+   * threads that get the context, e.g. by NEW-THREAD, use deep binding and walk the levels.
+   */
+  public class DynCtx extends Ctx {
+    private final Thread owner = Thread.currentThread();
+    private Map<String, DynamicCell> cells;
+
+    /** Create level for bindings that are kept by the context. */
+    public DynCtx(ICtx prev) {
+      super(prev);
+    }
+
+    /** Create level for bindings that are kept in the map supplied by the user. */
+    public DynCtx(ICtx prev, Map<String, Object> vars) {
+      super(prev, vars);
+    }
+
+    @Override
+    public Object get(String name, Backtrace bt) {
+      if (owner != Thread.currentThread()) {
+        return super.get(name, bt);
+      }
+      final DynamicCell cell = getCell(name);
+      return null == cell ? super.get(name, bt) : cell.read(name, bt);
+    }
+
+    private Object deepGet(String name, Backtrace bt) {
+      return super.get(name, bt);
+    }
+
+    private DynamicCell getCell(String name) {
+      final DynamicCell cached = null == cells ? null : cells.get(name);
+      if (null != cached && cached.epoch == cached.var.getEpoch()) {
+        return cached;
+      }
+      final DynamicCell cell = resolve(name);
+      if (null != cell) {
+        if (null == cells) {
+          cells = new HashMap<String, DynamicCell>();
+        }
+        cells.put(name, cell);
+      }
+      return cell;
+    }
+
+    private DynamicCell resolve(String name) {
+      final VarCell var = getVarCell(name);
+      final int epoch = var.watchEpoch();
+      if (hasLocal(name)) {
+        return new DynamicCell(this, var, epoch, NO_PROBES);
+      }
+      final List<Ctx> probes = new ArrayList<Ctx>();
+      if (!isTracked()) {
+        probes.add(this);
+      }
+      ICtx level = prev;
+      while (level instanceof Ctx) {
+        final Ctx ctx = (Ctx) level;
+        if (ctx instanceof DynCtx && ((DynCtx) ctx).owner == owner) {
+          final DynamicCell outer = ((DynCtx) ctx).getCell(name);
+          if (null == outer) {
+            return null;
+          }
+          probes.addAll(Arrays.asList(outer.probes));
+          return new DynamicCell(outer.holder, var, epoch, probes.toArray(NO_PROBES));
+        }
+        final int state = ctx.bindingState(name);
+        if (BOUND == state || null == ctx.prev) {
+          return new DynamicCell(ctx, var, epoch, probes.toArray(NO_PROBES));
+        } else if (PENDING == state) {
+          return null;
+        }
+        if (!ctx.isTracked()) {
+          probes.add(ctx);
+        }
+        level = ctx.prev;
+      }
+      return null;
+    }
+  }
+
+  private static final Ctx[] NO_PROBES = new Ctx[0];
+
+  /**
+   * Shallow binding cell of a variable in a dynamic context level.
+   *
+   * <p>Holds the level where the variable is bound, the binding epoch the cell is valid for and
+   * the levels with user supplied maps that must be checked before the holder.
+   */
+  private static final class DynamicCell {
+    private final Ctx holder;
+    private final VarCell var;
+    private final int epoch;
+    private final Ctx[] probes;
+
+    private DynamicCell(Ctx holder, VarCell var, int epoch, Ctx[] probes) {
+      this.holder = holder;
+      this.var = var;
+      this.epoch = epoch;
+      this.probes = probes;
+    }
+
+    private Object read(String name, Backtrace bt) {
+      for (Ctx probe : probes) {
+        final Map<String, Object> map = probe.mappings;
+        final Object val = map.get(name);
+        if (null != val || map.containsKey(name)) {
+          return val;
+        }
+      }
+      return holder instanceof DynCtx
+          ? ((DynCtx) holder).deepGet(name, bt)
+          : holder.get(name, bt);
+    }
+  }
+
+  /** Mappings of context level other than level 0. */
+  private class LocalMappings extends ArrayMap<Object> {
+    @Override
+    public Object put(String key, Object value) {
+      if (containsKey(key)) {
+        return super.put(key, value);
+      }
+      markLocal(key);
+      final Object prev = super.put(key, value);
+      bindingChanged(key);
+      return prev;
+    }
+
+    @Override
+    public Object remove(Object key) {
+      if (!containsKey(key)) {
+        return null;
+      }
+      final Object prev = super.remove(key);
+      bindingChanged((String) key);
+      return prev;
+    }
+
+    @Override
+    public void clear() {
+      if (size() > 0) {
+        for (String key : keySet()) {
+          bindingChanged(key);
+        }
+        super.clear();
+      }
+    }
+  }
+
   public ICtx newCtx() {
     final Ctx ctx = new Ctx();
     return ctx;
@@ -2440,7 +4030,7 @@ public class Compiler {
   }
 
   public Backtrace newBacktrace() {
-    return new Backtrace();
+    return new Backtrace(backtraceCallsOnly);
   }
 
   // ***** Utility functions
@@ -2455,6 +4045,77 @@ public class Compiler {
   }
 
 
+  /**
+   * Mark calls of user functions in tail position of the block list.
+   *
+   * <p>Tail positions are followed through IF, COND, PROGN, WHEN and LET, which return the value
+   * of their last subexpression unchanged. Forms that do some work after evaluation of the body
+   * (like DLET or TRY) are not followed. RETURN in tail position is replaced by its argument, since
+   * its value is returned from the function anyway.
+   */
+  protected void markTailCalls(List<ICompiled> blocks) {
+    if (blocks.isEmpty()) {
+      return;
+    }
+    final int last = blocks.size() - 1;
+    blocks.set(last, markTailCall(blocks.get(last)));
+  }
+
+  /** Mark expression in tail position, return expression to be used in its place. */
+  protected ICompiled markTailCall(ICompiled expr) {
+    final Class<?> cls = expr.getClass();
+    if (cls == InstanceProxy.class) {
+      ((InstanceProxy) expr).tailCall = true;
+    } else if (cls == InlineCall.class) {
+      ((InlineCall) expr).tailCall = true;
+      markTailCall(((InlineCall) expr).getCall());
+    } else if (cls == RETURN.class) {
+      return markTailCall(((RETURN) expr).getValueExpr());
+    } else if (cls == IF.class) {
+      ((IF) expr).thenBlock = markTailCall(((IF) expr).thenBlock);
+      markTailCalls(((IF) expr).elseBlocks);
+    } else if (cls == COND.class) {
+      for (List<ICompiled> clauseBlocks : ((COND) expr).forms) {
+        markTailCalls(clauseBlocks);
+      }
+    } else if (cls == PROGN.class) {
+      markTailCalls(((PROGN) expr).blocks);
+    } else if (cls == WHEN.class) {
+      markTailCalls(((WHEN) expr).blocks);
+    } else if (cls == LET.class) {
+      markTailCalls(((LET) expr).blocks);
+    }
+    return expr;
+  }
+
+  /** Evaluate array of compiled expressions, return value of the last one. */
+  public Object evalBlocks(Backtrace backtrace, ICompiled[] blocks, ICtx ctx) {
+    Object result = null;
+    for (int i = 0; i < blocks.length; i++) {
+      result = blocks[i].evaluate(backtrace, ctx);
+    }
+    return result;
+  }
+
+  /**
+   * Prepare compiled function body for execution.
+   *
+   * <p>Self-evaluating expressions that are not in the tail position (like docstrings) have no
+   * effect and are removed from the body. If the bytecode backend is enabled the body is compiled
+   * to JVM class in the current lexical scope, which must be the scope of the function arguments.
+   */
+  protected ICompiled[] lowerBody(String name, List<ICompiled> blocks) {
+    final List<ICompiled> result = new ArrayList<ICompiled>(blocks.size());
+    for (int i = 0; i < blocks.size(); i++) {
+      final ICompiled block = blocks.get(i);
+      if (i == blocks.size() - 1 || !(block instanceof Funcs.ValueExpr)) {
+        result.add(block);
+      }
+    }
+    final ICompiled[] body = result.toArray(new ICompiled[result.size()]);
+    return bytecodeBackend ? ClassBackend.compile(name, compileScope.get(), body) : body;
+  }
+
   /** Evaluate block of compiled expressions, handling return statement if present.  */
   public Object evalBlocksWithReturn(Backtrace backtrace, List<ICompiled> blocks, ICtx ctx) {
     try {
@@ -2483,7 +4144,7 @@ public class Compiler {
 
   // ***** Evaluated Arguments
   /** Context adepted for function arguments. */
-  public class Eargs extends Ctx {
+  public class Eargs extends Ctx implements ISlotCtx {
     private Object[] eargs;
     private ArgList argList;
 
@@ -2498,6 +4159,11 @@ public class Compiler {
       this.argList = argList;
     }
 
+    @Override
+    protected ISlotCtx getSlotCtx() {
+      return this;
+    }
+
     @Override
     public void replace(final String name, final Object val) {
       if (argList.getSpec().isParameterVar(name)) {
@@ -2526,8 +4192,8 @@ public class Compiler {
     @Override
     public Object get(String name, Backtrace bt) {
       // first hash map (function args may be overridden)
-      if (this.getMappings().containsKey(name)) {
-        return this.getMappings().get(name);
+      if (hasLocal(name)) {
+        return this.mappings.get(name);
       }
       // now positionals
       final ArgSpec spec = argList.getSpec();
@@ -2548,6 +4214,71 @@ public class Compiler {
     public int size() {
       return eargs.length;
     }
+
+    @Override
+    public Scope getScope() {
+      return argList.getSpec().getScope();
+    }
+
+    @Override
+    public Object getSlot(int idx, Backtrace bt) {
+      final int argsNum = argList.getSpec().size();
+      return idx < argsNum ? get(idx, bt) : argList.setFlags[idx - argsNum];
+    }
+
+    @Override
+    public boolean hasExtraBinding(String name) {
+      return hasLocal(name);
+    }
+
+    @Override
+    protected int bindingState(String name) {
+      final ArgSpec spec = argList.getSpec();
+      return hasLocal(name) || spec.nameToIdx(name) >= 0 || spec.svarNameToIdx(name) >= 0
+          ? BOUND
+          : NOT_BOUND;
+    }
+
+    /**
+     * Link this context past the levels of the calling function frame.
+     *
+     * <p>The levels up to and including the frame are skipped only if every variable bound in
+     * them is bound in this context as well, so the skipped bindings are not visible anyway.
+     */
+    protected void skipShadowed(Eargs frame) {
+      ICtx level = prev;
+      while (level instanceof Eargs || level instanceof LocalCtx) {
+        if (!shadows((Ctx) level)) {
+          return;
+        }
+        if (level == frame) {
+          ((Ctx) this).setPrev(frame.prev, false);
+          return;
+        }
+        level = ((Ctx) level).prev;
+      }
+    }
+
+    private boolean shadows(Ctx level) {
+      final Scope own = getScope();
+      final Scope scope = ((ISlotCtx) level).getScope();
+      for (int i = 0; i < scope.size(); i++) {
+        final String name = scope.getName(i);
+        if (null != name && own.indexOf(name) < 0) {
+          return false;
+        }
+      }
+      final Map<String, Object> extra =
+          level instanceof LocalCtx ? ((LocalCtx) level).extra : level.mappings;
+      if (null != extra) {
+        for (String name : extra.keySet()) {
+          if (own.indexOf(name) < 0) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
   }
 
   public Eargs newEargs(Object[] result, boolean[] needEval, ArgList argList, ICtx ctx) {
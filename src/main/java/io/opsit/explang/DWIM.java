@@ -28,6 +28,11 @@ public class DWIM {
               + " If there were matches the function returns list of matches. \n"
               + "If there is no match an empty list is returned.")
   public static class DWIM_MATCHES extends NUMEQ {
+    @Override
+    protected boolean hasFixedArity(int arity) {
+      return false;
+    }
+
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
       List<Object> result = list();
@@ -27,6 +27,27 @@ public class ExecutionException extends RuntimeException {
     this.backtrace = null == backtrace ? null : backtrace.copy();
   }
 
+  /**
+   * Create exception, optionally without Java stack trace.
+   *
+   * <p>If message is null and cause is given the message is taken from the cause.
+   */
+  public ExecutionException(
+      Backtrace backtrace, String msg, Throwable cause, boolean writableStackTrace) {
+    super(null == msg && null != cause ? cause.toString() : msg, cause, true, writableStackTrace);
+    this.backtrace = null == backtrace ? null : backtrace.copy();
+  }
+
+  /**
+   * Wrap exception thrown during evaluation.
+   *
+   * <p>The wrapper has no Java stack trace of its own, since it would repeat the stack trace of
+   * the wrapped exception.
+   */
+  public static ExecutionException wrap(Backtrace backtrace, Throwable cause) {
+    return new ExecutionException(backtrace, null, cause, false);
+  }
+
   public Backtrace getBacktrace() {
     return backtrace;
   }
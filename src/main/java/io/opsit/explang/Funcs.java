@@ -11,6 +11,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
@@ -38,7 +41,8 @@ public class Funcs {
     /** Run expression in separate Thread. */
     public void run() {
       final Compiler.ICtx ctx = Threads.contexts.remove(Thread.currentThread());
-      final Object result = this.evaluate(new Backtrace(), ctx);
+      final Backtrace backtrace = null == ctx ? new Backtrace() : ctx.getCompiler().newBacktrace();
+      final Object result = this.evaluate(backtrace, ctx);
       Threads.results.put(Thread.currentThread(), result);
     }
 
@@ -69,23 +73,47 @@ public class Funcs {
 
     @Override
     public final Object evaluate(final Backtrace backtrace, final ICtx ctx) {
+      final boolean traced = backtrace.push(this, ctx);
       try {
-        backtrace.push(getTraceName(), this.debugInfo, ctx);
         return doEvaluate(backtrace, ctx);
       } catch (ReturnException ex) {
         throw ex;
       } catch (ExecutionException ex) {
         throw ex;
       } catch (Throwable t) {
-        throw new ExecutionException(backtrace, t);
+        throw ExecutionException.wrap(backtrace, t);
       } finally {
-        backtrace.pop();
+        if (traced) {
+          backtrace.drop();
+        }
       }
     }
   }
 
+  /** Entry point of function for calls without arguments. */
+  public interface Invoke0 {
+    Object invoke0(Backtrace backtrace);
+  }
+
+  /** Entry point of function for calls with one argument. */
+  public interface Invoke1 {
+    Object invoke1(Backtrace backtrace, Object arg1);
+  }
+
+  /** Entry point of function for calls with two arguments. */
+  public interface Invoke2 {
+    Object invoke2(Backtrace backtrace, Object arg1, Object arg2);
+  }
+
+  /** Entry point of function for calls with three arguments. */
+  public interface Invoke3 {
+    Object invoke3(Backtrace backtrace, Object arg1, Object arg2, Object arg3);
+  }
+
   public abstract static class FuncExp extends AbstractExpr {
     protected ArgList argList;
+    // parameters of call evaluated using fixed arity entry point
+    private ICompiled[] fixedParams = null;
 
     @Override
     protected String getTraceName() {
@@ -96,11 +124,66 @@ public class Funcs {
 
     @Override
     public Object doEvaluate(Backtrace backtrace, ICtx ctx) {
+      final ICompiled[] fixed = this.fixedParams;
+      if (null != fixed) {
+        switch (fixed.length) {
+          case 0:
+            return ((Invoke0) this).invoke0(backtrace);
+          case 1:
+            return ((Invoke1) this).invoke1(backtrace, evalArg(fixed[0], backtrace, ctx));
+          case 2:
+            return ((Invoke2) this).invoke2(backtrace,
+                                            evalArg(fixed[0], backtrace, ctx),
+                                            evalArg(fixed[1], backtrace, ctx));
+          default:
+            return ((Invoke3) this).invoke3(backtrace,
+                                            evalArg(fixed[0], backtrace, ctx),
+                                            evalArg(fixed[1], backtrace, ctx),
+                                            evalArg(fixed[2], backtrace, ctx));
+        }
+      }
       return evalWithArgs(backtrace, this.evaluateParameters(backtrace, ctx));
     }
 
+    /** Return parameters of call that uses fixed arity entry point or null. */
+    ICompiled[] getFixedParams() {
+      return fixedParams;
+    }
+
+    private static Object evalArg(ICompiled param, Backtrace backtrace, ICtx ctx) {
+      final Object val = param.evaluate(backtrace, ctx);
+      return val instanceof LazyEval ? ((LazyEval) val).getValue(backtrace) : val;
+    }
+
     protected abstract Object evalWithArgs(Backtrace backtrace, Eargs eargs);
 
+    /**
+     * Check if calls with given number of arguments may use the fixed arity entry point.
+     *
+     * <p>The entry points are the Invoke0 to Invoke3 interfaces implemented by the function class:
+     * values of arguments of such calls are passed directly to the invoke method instead of
+     * evalWithArgs. Only functions with positional non-lazy parameters may implement them.
+     * Subclasses override this method to disable entry points inherited from the parent class.
+     */
+    protected boolean hasFixedArity(int arity) {
+      return true;
+    }
+
+    private boolean hasEntryPoint(int arity) {
+      switch (arity) {
+        case 0:
+          return this instanceof Invoke0;
+        case 1:
+          return this instanceof Invoke1;
+        case 2:
+          return this instanceof Invoke2;
+        case 3:
+          return this instanceof Invoke3;
+        default:
+          return false;
+      }
+    }
+
     /** Evaluate function parameters in the execution context. */
     public Eargs evaluateParameters(Backtrace backtrace, ICtx ctx) {
       return argList.evaluateArguments(backtrace, ctx);
@@ -119,30 +202,133 @@ public class Funcs {
     @Override
     public void setParams(List<ICompiled> params) throws InvalidParametersException {
 
-      Arguments args = this.getClass().getAnnotation(Arguments.class);
-      if (null == args) {
+      // FIXME: no compiler - no initForm!
+      final ArgSpec spec = BuiltinMeta.of(this.getClass()).getArgSpec();
+      if (null == spec) {
         throw new RuntimeException("argument list not specified for function " + this.getClass());
       }
-      String[] specArray = args.spec();
-      // FIXME: no compiler - no initForm!
-      ArgSpec spec = new ArgSpec(specArray, null);
       this.checkParamsList(params);
       this.argList = new ArgList(spec, params);
+      final int size = params.size();
+      if (hasEntryPoint(size) && hasFixedArity(size)) {
+        this.fixedParams = params.toArray(new ICompiled[size]);
+      }
     }
   }
 
   // **** ARITHMETIC FUNCTIONS
 
+  /**
+   * Abstract class for numeric functions with fast path for short calls.
+   *
+   * <p>Calls with one to three arguments use the fixed arity entry points. When all the argument
+   * values are Integers and Longs or all of them are Doubles the operation is performed on
+   * primitive values without allocation of argument lists, otherwise the numeric promotion is
+   * used.
+   */
+  public abstract static class ABSTRACTNUMOP extends FuncExp
+      implements AbstractOp, Invoke1, Invoke2, Invoke3 {
+    protected static final int KIND_OTHER = 0;
+    protected static final int KIND_INT = 1;
+    protected static final int KIND_LONG = 2;
+    protected static final int KIND_DOUBLE = 3;
+
+    /** Return kind of numeric value for fast path. */
+    protected static int getKind(Object arg) {
+      if (arg instanceof Integer) {
+        return KIND_INT;
+      } else if (arg instanceof Long) {
+        return KIND_LONG;
+      } else if (arg instanceof Double) {
+        return KIND_DOUBLE;
+      }
+      return KIND_OTHER;
+    }
+
+    /** Return kind of numeric values for fast path. */
+    protected static int getKind(Object arg1, Object arg2) {
+      return joinKinds(getKind(arg1), getKind(arg2));
+    }
+
+    /** Return kind of numeric values for fast path. */
+    protected static int getKind(Object arg1, Object arg2, Object arg3) {
+      return joinKinds(joinKinds(getKind(arg1), getKind(arg2)), getKind(arg3));
+    }
+
+    private static int joinKinds(int kind1, int kind2) {
+      if (kind1 == kind2) {
+        return kind1;
+      }
+      if (kind1 == KIND_OTHER
+          || kind2 == KIND_OTHER
+          || kind1 == KIND_DOUBLE
+          || kind2 == KIND_DOUBLE) {
+        return KIND_OTHER;
+      }
+      return KIND_LONG;
+    }
+
+    /** Return result of operation on integer values. */
+    protected static Number intResult(int kind, long result) {
+      return kind == KIND_INT ? (Number) Integer.valueOf((int) result) : Long.valueOf(result);
+    }
+  }
+
   /** Abstract class for addition type arithmetic functions. */
   @Arguments(spec = {ArgSpec.ARG_REST, ArgSpec.ARG_PIPE_REST, "args"})
-  public abstract static class ABSTRACTADDOP extends FuncExp implements AbstractOp {
+  public abstract static class ABSTRACTADDOP extends ABSTRACTNUMOP {
     protected abstract Number getNeutral();
 
+    protected abstract long longOp(long arg1, long arg2);
+
+    protected abstract double doubleOp(double arg1, double arg2);
+
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
+      return evalRest((List<?>) eargs.get(0, backtrace));
+    }
+
+    @Override
+    public Object invoke1(Backtrace backtrace, Object arg1) {
+      final int kind = getKind(arg1);
+      if (kind == KIND_DOUBLE) {
+        return doubleOp(getNeutral().doubleValue(), (Double) arg1);
+      } else if (kind != KIND_OTHER) {
+        return intResult(kind, longOp(getNeutral().longValue(), ((Number) arg1).longValue()));
+      }
+      return evalRest(Collections.singletonList(arg1));
+    }
+
+    @Override
+    public Object invoke2(Backtrace backtrace, Object arg1, Object arg2) {
+      final int kind = getKind(arg1, arg2);
+      if (kind == KIND_DOUBLE) {
+        return doubleOp(doubleOp(getNeutral().doubleValue(), (Double) arg1), (Double) arg2);
+      } else if (kind != KIND_OTHER) {
+        final long result = longOp(getNeutral().longValue(), ((Number) arg1).longValue());
+        return intResult(kind, longOp(result, ((Number) arg2).longValue()));
+      }
+      return evalRest(Arrays.asList(arg1, arg2));
+    }
+
+    @Override
+    public Object invoke3(Backtrace backtrace, Object arg1, Object arg2, Object arg3) {
+      final int kind = getKind(arg1, arg2, arg3);
+      if (kind == KIND_DOUBLE) {
+        final double result =
+            doubleOp(doubleOp(getNeutral().doubleValue(), (Double) arg1), (Double) arg2);
+        return doubleOp(result, (Double) arg3);
+      } else if (kind != KIND_OTHER) {
+        long result = longOp(getNeutral().longValue(), ((Number) arg1).longValue());
+        result = longOp(result, ((Number) arg2).longValue());
+        return intResult(kind, longOp(result, ((Number) arg3).longValue()));
+      }
+      return evalRest(Arrays.asList(arg1, arg2, arg3));
+    }
+
+    protected Object evalRest(List<?> rest) {
       Number result = getNeutral();
       Promotion promo = new Promotion();
-      List<?> rest = (List<?>) eargs.get(0, backtrace);
       if (rest.size() == 0) {
         promo.promote(result);
       } else {
@@ -162,12 +348,23 @@ public class Funcs {
                "Computes sum of function arguments performing any necessary type conversions",
                "in the process. If no numbers are supplied, 0 is returned."})
   @Package(name = Package.BASE_ARITHMENTICS)
+  @Pure
   public static class ADDOP extends ABSTRACTADDOP {
     @Override
     protected Number getNeutral() {
       return Integer.valueOf(0);
     }
 
+    @Override
+    protected long longOp(long arg1, long arg2) {
+      return arg1 + arg2;
+    }
+
+    @Override
+    protected double doubleOp(double arg1, double arg2) {
+      return arg1 + arg2;
+    }
+
     @Override
     public Number doIntOp(Number result, Number arg) {
       return result.longValue() + arg.longValue();
@@ -204,12 +401,23 @@ public class Funcs {
                       "Returns the product of all its arguments performing any necessary type",
                       "conversions in the process. If no numbers are supplied, 1 is returned."})
   @Package(name = Package.BASE_ARITHMENTICS)
+  @Pure
   public static class MULOP extends ABSTRACTADDOP {
     @Override
     protected Number getNeutral() {
       return Integer.valueOf(1);
     }
 
+    @Override
+    protected long longOp(long arg1, long arg2) {
+      return arg1 * arg2;
+    }
+
+    @Override
+    protected double doubleOp(double arg1, double arg2) {
+      return arg1 * arg2;
+    }
+
     @Override
     public Number doIntOp(Number result, Number arg) {
       return result.longValue() * arg.longValue();
@@ -231,12 +439,53 @@ public class Funcs {
   }
 
   @Arguments(spec = {ArgSpec.ARG_REST, ArgSpec.ARG_PIPE_REST, "args"})
-  public abstract static class ABSTRACT_SUB extends FuncExp implements AbstractOp {
+  public abstract static class ABSTRACT_SUB extends ABSTRACTNUMOP {
     protected abstract Number getNeutral();
 
+    protected abstract long longOp(long arg1, long arg2);
+
+    protected abstract double doubleOp(double arg1, double arg2);
+
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
-      List<?> rest = (List<?>) eargs.get(0, backtrace);
+      return evalRest((List<?>) eargs.get(0, backtrace));
+    }
+
+    @Override
+    public Object invoke1(Backtrace backtrace, Object arg1) {
+      final int kind = getKind(arg1);
+      if (kind == KIND_DOUBLE) {
+        return doubleOp(getNeutral().doubleValue(), (Double) arg1);
+      } else if (kind != KIND_OTHER) {
+        return intResult(kind, longOp(getNeutral().longValue(), ((Number) arg1).longValue()));
+      }
+      return evalRest(Collections.singletonList(arg1));
+    }
+
+    @Override
+    public Object invoke2(Backtrace backtrace, Object arg1, Object arg2) {
+      final int kind = getKind(arg1, arg2);
+      if (kind == KIND_DOUBLE) {
+        return doubleOp((Double) arg1, (Double) arg2);
+      } else if (kind != KIND_OTHER) {
+        return intResult(kind, longOp(((Number) arg1).longValue(), ((Number) arg2).longValue()));
+      }
+      return evalRest(Arrays.asList(arg1, arg2));
+    }
+
+    @Override
+    public Object invoke3(Backtrace backtrace, Object arg1, Object arg2, Object arg3) {
+      final int kind = getKind(arg1, arg2, arg3);
+      if (kind == KIND_DOUBLE) {
+        return doubleOp(doubleOp((Double) arg1, (Double) arg2), (Double) arg3);
+      } else if (kind != KIND_OTHER) {
+        final long result = longOp(((Number) arg1).longValue(), ((Number) arg2).longValue());
+        return intResult(kind, longOp(result, ((Number) arg3).longValue()));
+      }
+      return evalRest(Arrays.asList(arg1, arg2, arg3));
+    }
+
+    protected Object evalRest(List<?> rest) {
       Number num = Utils.asNumber(rest.get(0));
       Promotion promo = new Promotion();
       promo.promote(num);
@@ -261,7 +510,18 @@ public class Funcs {
       "and returns the result. The function performs necessary ",
       "type conversions."})
   @Package(name = Package.BASE_ARITHMENTICS)
+  @Pure
   public static class SUBOP extends ABSTRACT_SUB {
+    @Override
+    protected long longOp(long arg1, long arg2) {
+      return arg1 - arg2;
+    }
+
+    @Override
+    protected double doubleOp(double arg1, double arg2) {
+      return arg1 - arg2;
+    }
+
     @Override
     public Number doIntOp(Number arg1, Number arg2) {
       return arg1.longValue() - arg2.longValue();
@@ -307,7 +567,18 @@ public class Funcs {
                "  numerator by all of the denominators and returns the resulting quotient.",
                "The function / performs necessary type conversions. "})
   @Package(name = Package.BASE_ARITHMENTICS)
+  @Pure
   public static class DIVOP extends ABSTRACT_SUB {
+    @Override
+    protected long longOp(long arg1, long arg2) {
+      return arg1 / arg2;
+    }
+
+    @Override
+    protected double doubleOp(double arg1, double arg2) {
+      return arg1 / arg2;
+    }
+
     @Override
     public Number doIntOp(Number arg1, Number arg2) {
       return arg1.longValue() / arg2.longValue();
@@ -340,20 +611,29 @@ public class Funcs {
       "Returns the maximum of numeric values of it's arguments,",
       "performing any necessary type conversions in the process."})
   @Package(name = Package.BASE_ARITHMENTICS)
+  @Pure
   public static class MAXOP extends NUMGE {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
-      Promotion promo = new Promotion();
-      Number result = Utils.asNumber(eargs.get(0, backtrace));
-      List<?> rest = (List<?>) eargs.get(1, backtrace);
-      promo.promote(result);
-      for (int i = 0; i < rest.size(); i++) {
-        Number val = Utils.asNumber(rest.get(i));
-        promo.promote(val);
-        Integer dif = promo.callOP(this, result, val).intValue();
-        result = compareResult(dif) ? result : val;
+      return findExtremum(eargs.get(0, backtrace), (List<?>) eargs.get(1, backtrace));
+    }
+
+    @Override
+    public Object invoke1(Backtrace backtrace, Object arg1) {
+      return getKind(arg1) == KIND_OTHER ? Utils.asNumber(arg1) : arg1;
+    }
+
+    @Override
+    public Object invoke2(Backtrace backtrace, Object arg1, Object arg2) {
+      return extremumOf(arg1, arg2);
+    }
+
+    @Override
+    public Object invoke3(Backtrace backtrace, Object arg1, Object arg2, Object arg3) {
+      if (getKind(arg1, arg2, arg3) == KIND_OTHER) {
+        return findExtremum(arg1, Arrays.asList(arg2, arg3));
       }
-      return result;
+      return extremumOf(extremumOf(arg1, arg2), arg3);
     }
   }
 
@@ -362,20 +642,29 @@ public class Funcs {
                       "Returns the maximum of numeric values of it's arguments,",
                       "performing any necessary type conversions in the process."})
   @Package(name = Package.BASE_ARITHMENTICS)
+  @Pure
   public static class MINOP extends NUMLE {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
-      Promotion promo = new Promotion();
-      Number result = Utils.asNumber(eargs.get(0, backtrace));
-      List<?> rest = (List<?>) eargs.get(1, backtrace);
-      promo.promote(result);
-      for (int i = 0; i < rest.size(); i++) {
-        Number val = Utils.asNumber(rest.get(i));
-        promo.promote(val);
-        Integer dif = promo.callOP(this, result, val).intValue();
-        result = compareResult(dif) ? result : val;
+      return findExtremum(eargs.get(0, backtrace), (List<?>) eargs.get(1, backtrace));
+    }
+
+    @Override
+    public Object invoke1(Backtrace backtrace, Object arg1) {
+      return getKind(arg1) == KIND_OTHER ? Utils.asNumber(arg1) : arg1;
+    }
+
+    @Override
+    public Object invoke2(Backtrace backtrace, Object arg1, Object arg2) {
+      return extremumOf(arg1, arg2);
+    }
+
+    @Override
+    public Object invoke3(Backtrace backtrace, Object arg1, Object arg2, Object arg3) {
+      if (getKind(arg1, arg2, arg3) == KIND_OTHER) {
+        return findExtremum(arg1, Arrays.asList(arg2, arg3));
       }
-      return result;
+      return extremumOf(extremumOf(arg1, arg2), arg3);
     }
   }
 
@@ -388,6 +677,7 @@ public class Funcs {
               + "returns result of \n\t number - truncate_to_zero (number / divisor) * divisor "
               + "(same semantic as for the Java % operator.")
   @Package(name = Package.BASE_ARITHMENTICS)
+  @Pure
   public static class REMOP extends FuncExp implements AbstractOp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -428,6 +718,7 @@ public class Funcs {
               + "returns result of the modulus operation. If one of them is floating point "
               + "returns result of \n\t number - ⌊ (number / divisor) ⌋ * divisor ")
   @Package(name = Package.BASE_ARITHMENTICS)
+  @Pure
   public static class MODOP extends FuncExp implements AbstractOp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -522,10 +813,16 @@ public class Funcs {
               + "the empty String \"\", 0  and FALSE have false logical value. "
               + "All other objects have true logical value")
   @Package(name = Package.BASE_LOGIC)
-  public static class NOT extends FuncExp {
+  @Pure
+  public static class NOT extends FuncExp implements Invoke1 {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
-      Object val = eargs.get(0, backtrace);
+      return invoke1(backtrace, eargs.get(0, backtrace));
+    }
+
+
+    @Override
+    public Object invoke1(Backtrace backtrace, Object val) {
       return !Utils.asBoolean(val).booleanValue();
     }
   }
@@ -538,11 +835,15 @@ public class Funcs {
               + "Returns true if x equal to y according to call to Java method "
               + "x.equals(y) or if both objects are NIL.")
   @Package(name = Package.BASE_LOGIC)
-  public static class EQUAL extends FuncExp {
+  public static class EQUAL extends FuncExp implements Invoke2 {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
-      final Object v1 = eargs.get(0, backtrace);
-      final Object v2 = eargs.get(1, backtrace);
+      return invoke2(backtrace, eargs.get(0, backtrace), eargs.get(1, backtrace));
+    }
+
+
+    @Override
+    public Object invoke2(Backtrace backtrace, Object v1, Object v2) {
       return (v1 == null) ? (v2 == null) : v1.equals(v2);
     }
   }
@@ -573,23 +874,63 @@ public class Funcs {
               + "Objects identity check: returns true if Object x is same as Object y. "
               + "Uses java operator == to check objects identity")
   @Package(name = Package.BASE_LOGIC)
-  public static class EQ extends FuncExp {
+  public static class EQ extends FuncExp implements Invoke2 {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
-      final Object v1 = eargs.get(0, backtrace);
-      final Object v2 = eargs.get(1, backtrace);
+      return invoke2(backtrace, eargs.get(0, backtrace), eargs.get(1, backtrace));
+    }
+
+
+    @Override
+    public Object invoke2(Backtrace backtrace, Object v1, Object v2) {
       return v1 == v2;
     }
   }
 
   @Arguments(spec = {"x", ARG_REST, ArgSpec.ARG_PIPE_REST, "args"})
-  public abstract static class NUMCOMP extends FuncExp implements AbstractOp {
+  public abstract static class NUMCOMP extends ABSTRACTNUMOP {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
+      return compare(eargs.get(0, backtrace), (List<?>) eargs.get(1, backtrace));
+    }
+
+    @Override
+    public Object invoke1(Backtrace backtrace, Object arg1) {
+      if (getKind(arg1) == KIND_OTHER) {
+        return compare(arg1, Collections.emptyList());
+      }
+      return true;
+    }
+
+    @Override
+    public Object invoke2(Backtrace backtrace, Object arg1, Object arg2) {
+      final int kind = getKind(arg1, arg2);
+      if (kind == KIND_OTHER) {
+        return compare(arg1, Collections.singletonList(arg2));
+      }
+      return compareResult(compareValues(kind, arg1, arg2));
+    }
+
+    @Override
+    public Object invoke3(Backtrace backtrace, Object arg1, Object arg2, Object arg3) {
+      final int kind = getKind(arg1, arg2, arg3);
+      if (kind == KIND_OTHER) {
+        return compare(arg1, Arrays.asList(arg2, arg3));
+      }
+      return compareResult(compareValues(kind, arg1, arg2))
+          & compareResult(compareValues(kind, arg2, arg3));
+    }
+
+    private static int compareValues(int kind, Object arg1, Object arg2) {
+      return kind == KIND_DOUBLE
+          ? compareDoubles((Double) arg1, (Double) arg2)
+          : Long.compare(((Number) arg1).longValue(), ((Number) arg2).longValue());
+    }
+
+    protected Object compare(Object first, List<?> rest) {
       boolean result = true;
       Promotion promo = new Promotion();
-      Number prevVal = Utils.asNumber(eargs.get(0, backtrace));
-      List<?> rest = (List<?>) eargs.get(1, backtrace);
+      Number prevVal = Utils.asNumber(first);
       promo.promote(prevVal);
       for (int i = 0; i < rest.size(); i++) {
         Number val = Utils.asNumber(rest.get(i));
@@ -601,15 +942,42 @@ public class Funcs {
       return result;
     }
 
+    /** Return argument value for which compareResult holds against all the other arguments. */
+    protected Number findExtremum(Object first, List<?> rest) {
+      Promotion promo = new Promotion();
+      Number result = Utils.asNumber(first);
+      promo.promote(result);
+      for (int i = 0; i < rest.size(); i++) {
+        Number val = Utils.asNumber(rest.get(i));
+        promo.promote(val);
+        Integer dif = promo.callOP(this, result, val).intValue();
+        result = compareResult(dif) ? result : val;
+      }
+      return result;
+    }
+
+    /** Return one of two argument values for which compareResult holds against the other. */
+    protected Object extremumOf(Object arg1, Object arg2) {
+      final int kind = getKind(arg1, arg2);
+      if (kind == KIND_OTHER) {
+        return findExtremum(arg1, Collections.singletonList(arg2));
+      }
+      return compareResult(compareValues(kind, arg1, arg2)) ? arg1 : arg2;
+    }
+
+    protected static int compareDoubles(double arg1, double arg2) {
+      final double compRes = arg1 - arg2;
+      return compRes < 0.0 ? -1 : (compRes > 0.0 ? 1 : 0);
+    }
+
     @Override
     public Number doIntOp(Number arg1, Number arg2) {
-      return arg1.longValue() - arg2.longValue();
+      return Long.compare(arg1.longValue(), arg2.longValue());
     }
 
     @Override
     public Number doDoubleOp(Number arg1, Number arg2) {
-      final Double compRes = arg1.doubleValue() - arg2.doubleValue();
-      return compRes < 0.0 ? -1 : (compRes > 0.0 ? 1 : 0);
+      return compareDoubles(arg1.doubleValue(), arg2.doubleValue());
     }
 
     @Override
@@ -639,6 +1007,7 @@ public class Funcs {
           "Test numeric equality. Returns True if all arguments are numerically equal. "
               + "Returns True if only one argument is given")
   @Package(name = Package.BASE_LOGIC)
+  @Pure
   public static class NUMEQ extends NUMCOMP {
     @Override
     protected boolean compareResult(int res) {
@@ -652,6 +1021,7 @@ public class Funcs {
           "Greater Than - Numeric comparison. Returns True if all arguments are monotonically "
               + "decreasing order.  Returns True if only one argument is given")
   @Package(name = Package.BASE_LOGIC)
+  @Pure
   public static class NUMGT extends NUMCOMP {
     @Override
     protected boolean compareResult(int res) {
@@ -666,6 +1036,7 @@ public class Funcs {
               + "Returns True if all arguments are monotonically non-increasing order. "
               + "Returns True if only one argument is given")
   @Package(name = Package.BASE_LOGIC)
+  @Pure
   public static class NUMGE extends NUMCOMP {
     @Override
     protected boolean compareResult(int res) {
@@ -680,6 +1051,7 @@ public class Funcs {
           "Less Than - Numeric Comparison. "
               + "Returns True if all arguments are monotonically increasing order.  "
               + "Returns True if only one argument is given")
+  @Pure
   public static class NUMLT extends NUMCOMP {
     @Override
     protected boolean compareResult(int res) {
@@ -694,6 +1066,7 @@ public class Funcs {
           "Less or Equal - Numeric comparison. "
               + "Returns True if all arguments are monotonically non-decreasing order.  "
               + "Returns True if only one argument is given")
+  @Pure
   public static class NUMLE extends NUMCOMP {
     @Override
     protected boolean compareResult(int res) {
@@ -709,6 +1082,7 @@ public class Funcs {
               + " number is negative, zero, or positive. The type of the result is of the same"
               + " numeric type as x")
   @Package(name = Package.BASE_ARITHMENTICS)
+  @Pure
   public static class SIGNUM extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -743,6 +1117,7 @@ public class Funcs {
               + "* An empty collection is false \n"
               + "* Any other object is true.\n")
   @Package(name = Package.BASE_COERCION)
+  @Pure
   public static class BOOL extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -767,6 +1142,7 @@ public class Funcs {
               + " resulting value will be used as described above. Conversion to number may fail.\n"
               + "* Any other object will cause conversion error.\n")
   @Package(name = Package.BASE_COERCION)
+  @Pure
   public static class CHAR extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -782,6 +1158,7 @@ public class Funcs {
               + "String will be parsed as number using same rules as numeric literals. "
               + "The floating point value will be truncated.")
   @Package(name = Package.BASE_COERCION)
+  @Pure
   public static class INT extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -812,6 +1189,7 @@ public class Funcs {
               + "String will be parsed as number using same rules as numeric literals. "
               + "The floating point values will be truncated.")
   @Package(name = Package.BASE_COERCION)
+  @Pure
   public static class LONG extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -827,6 +1205,7 @@ public class Funcs {
               + "String will be parsed as number using same rules as numeric literals. "
               + "The floating point values will be truncated.")
   @Package(name = Package.BASE_COERCION)
+  @Pure
   public static class SHORT extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -842,6 +1221,7 @@ public class Funcs {
               + "String will be parsed as number using same rules as numeric literals. "
               + "The floating point values will be truncated.")
   @Package(name = Package.BASE_COERCION)
+  @Pure
   public static class BYTE extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -857,6 +1237,7 @@ public class Funcs {
               + "String will be parsed as number using same rules as numeric literals. "
               + "The floating point values will be truncated.")
   @Package(name = Package.BASE_COERCION)
+  @Pure
   public static class DOUBLE extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -872,6 +1253,7 @@ public class Funcs {
               + "String will be parsed as number using same rules as numeric literals. "
               + "The floating point values will be truncated.")
   @Package(name = Package.BASE_COERCION)
+  @Pure
   public static class FLOAT extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -915,6 +1297,7 @@ public class Funcs {
   @Arguments(spec = {"x"})
   @Docstring(text = "Computes square root of the argument. Returns double value.")
   @Package(name = Package.BASE_MATH)
+  @Pure
   public static class SQRT extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -931,6 +1314,7 @@ public class Funcs {
               + "If base is not given it computes natural logarithm. Returns a Double"
               + " value.")
   @Package(name = Package.BASE_MATH)
+  @Pure
   public static class LOG extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -959,6 +1343,7 @@ public class Funcs {
           "Perform exponentiation. If base is not given it returns e raised to power x. Returns a"
               + " Double value.")
   @Package(name = Package.BASE_MATH)
+  @Pure
   public static class EXP extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -1014,10 +1399,15 @@ public class Funcs {
           "Return Object Type. Returns type (as class) of the given object. For NIL argument return"
               + " NIL.")
   @Package(name = Package.BASE_TYPES)
-  public static class TYPE_OF extends FuncExp {
+  public static class TYPE_OF extends FuncExp implements Invoke1 {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
-      Object val = eargs.get(0, backtrace);
+      return invoke1(backtrace, eargs.get(0, backtrace));
+    }
+
+
+    @Override
+    public Object invoke1(Backtrace backtrace, Object val) {
       if (null != val) {
         return val.getClass();
       } else {
@@ -1110,6 +1500,18 @@ public class Funcs {
   @Package(name = Package.BASE_FUNCS)
   public static class FUNCALL extends AbstractExpr {
     private List<ICompiled> params = null;
+    // instance prepared for the last called function
+    private volatile CallCache cache = null;
+
+    private static final class CallCache {
+      private final ICode code;
+      private final IExpr instance;
+
+      private CallCache(ICode code, IExpr instance) {
+        this.code = code;
+        this.instance = instance;
+      }
+    }
 
     @Override
     public void setParams(List<ICompiled> params) throws InvalidParametersException {
@@ -1130,8 +1532,12 @@ public class Funcs {
       if (!(functionObj instanceof ICode)) {
         throw new RuntimeException("Expected ICode object, but got " + functionObj);
       }
-      ICode function = (ICode) Utils.asObject(functionObj);
-      IExpr instance = (IExpr) function.getInstance();
+      final ICode function = (ICode) Utils.asObject(functionObj);
+      final CallCache cached = this.cache;
+      if (null != cached && cached.code == function) {
+        return cached.instance.evaluate(backtrace, ctx);
+      }
+      final IExpr instance = (IExpr) function.getInstance();
       if (null != backtrace) {
         final Backtrace.Frame frame = backtrace.last();
         if (null != frame) {
@@ -1148,6 +1554,7 @@ public class Funcs {
                 (null == e.getParseCtx() ? "?" : e.getParseCtx().toString()),
                 e.getMessage()));
       }
+      this.cache = new CallCache(function, instance);
       return instance.evaluate(backtrace, ctx);
     }
   }
@@ -1165,11 +1572,8 @@ public class Funcs {
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
       final Object val = eargs.get(0, backtrace);
       final ICode lambda = (ICode) Utils.asObject(val);
-      final IExpr instance = (IExpr) lambda.getInstance();
       final List<?> funcArgs = (List<?>) eargs.get(1, backtrace);
 
-      final ICtx applyCtx = eargs.getCompiler().newCtx(eargs);
-
       List<?> rest = null;
       int restSize;
       int headSize;
@@ -1181,46 +1585,17 @@ public class Funcs {
         restSize = 0;
         headSize = funcArgs.size();
       }
-      List<ICompiled> callParams = new ArrayList<ICompiled>(restSize + headSize);
+      final Object[] callArgs = new Object[restSize + headSize];
       for (int i = 0; i < headSize; i++) {
-        callParams.add(new ObjectExp(funcArgs.get(i)));
+        callArgs[i] = funcArgs.get(i);
       }
       for (int i = 0; i < restSize; i++) {
-        callParams.add(new ObjectExp(rest.get(i)));
-      }
-      if (null != backtrace) {
-        final Backtrace.Frame frame = backtrace.last();
-        if (null != frame) {
-          instance.setDebugInfo(frame.pctx);
-        }
-      }
-      try {
-        instance.setParams(callParams);
-      } catch (InvalidParametersException e) {
-        throw new RuntimeException(
-            String.format(
-                "%s: called function at %s: does not take provided parameters: %s",
-                this.getName(),
-                (null == e.getParseCtx() ? "?" : e.getParseCtx().toString()),
-                e.getMessage()));
+        callArgs[headSize + i] = rest.get(i);
       }
-      return instance.evaluate(backtrace, applyCtx);
+      return lambda.invoke(backtrace, eargs, callArgs);
     }
   }
 
-  protected static List<ICompiled> setFuncPosParams(IExpr instance, int cnt) {
-    final List<ICompiled> callParams = Utils.newPosArgsList(cnt);
-    try {
-      instance.setParams(callParams);
-    } catch (InvalidParametersException e) {
-      throw new RuntimeException(
-          String.format(
-              "lambda at %s: does not take parameter: %s",
-              (null == e.getParseCtx() ? "?" : e.getParseCtx().toString()), e.getMessage()));
-    }
-    return callParams;
-  }
-
   @Docstring(
       text =
           "Reduce operation.\n func is a function of 2 arguments, "
@@ -1239,7 +1614,6 @@ public class Funcs {
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
       Object val = eargs.get(0, backtrace);
       ICode lambda = (ICode) Utils.asObject(val);
-      IExpr instance = (IExpr) lambda.getInstance();
 
       List<?> list = (List<?>) eargs.get(2, backtrace);
       Object startVal = eargs.get(1, backtrace);
@@ -1250,9 +1624,7 @@ public class Funcs {
         if (haveStartVal) {
           return startVal;
         } else {
-          setFuncPosParams(instance, 0);
-          ICtx newCtx = eargs.getCompiler().newCtx(eargs);
-          return instance.evaluate(backtrace, newCtx);
+          return lambda.invoke(backtrace, eargs, new Object[0]);
         }
       }
       int idx = 0;
@@ -1262,12 +1634,11 @@ public class Funcs {
       } else {
         result = list.get(idx++);
       }
-      setFuncPosParams(instance, 2);
+      final Object[] callArgs = new Object[2];
       for (; idx < list.size(); idx++) {
-        ICtx newCtx = eargs.getCompiler().newCtx(eargs);
-        newCtx.getMappings().put("%1", result);
-        newCtx.getMappings().put("%2", list.get(idx));
-        result = instance.evaluate(backtrace, newCtx);
+        callArgs[0] = result;
+        callArgs[1] = list.get(idx);
+        result = lambda.invoke(backtrace, eargs, callArgs);
       }
       return result;
     }
@@ -1285,24 +1656,12 @@ public class Funcs {
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
       Object val = eargs.get(0, backtrace);
       ICode lambda = (ICode) Utils.asObject(val);
-      IExpr instance = (IExpr) lambda.getInstance();
       List<?> list = (List<?>) eargs.get(1, backtrace);
-      final String argname = "arg#0";
-      final List<ICompiled> callParams = new ArrayList<ICompiled>(1);
-      callParams.add(new VarExp(argname));
-      try {
-        instance.setParams(callParams);
-      } catch (InvalidParametersException e) {
-        throw new RuntimeException(
-            String.format(
-                "FILTER: lambda at %s: does not take parameter: %s",
-                (null == e.getParseCtx() ? "?" : e.getParseCtx().toString()), e.getMessage()));
-      }
+      final Object[] callArgs = new Object[1];
       List<Object> results = new ArrayList<Object>();
       for (int i = 0; i < list.size(); i++) {
-        ICtx loopCtx = eargs.getCompiler().newCtx(eargs);
-        loopCtx.put(argname, list.get(i));
-        final Object result = instance.evaluate(backtrace, loopCtx);
+        callArgs[0] = list.get(i);
+        final Object result = lambda.invoke(backtrace, eargs, callArgs);
         if (Utils.asBoolean(result)) {
           results.add(list.get(i));
         }
@@ -1317,14 +1676,12 @@ public class Funcs {
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
       Object val = eargs.get(0, backtrace);
       ICode lambda = (ICode) Utils.asObject(val);
-      IExpr instance = (IExpr) lambda.getInstance();
 
       List<?> rest = (List<?>) eargs.get(1, backtrace);
       final int numLists = rest.size();
       if (numLists == 0) {
         throw new RuntimeException("At least one sequence must be provided");
       }
-      final List<ICompiled> callParams = new ArrayList<ICompiled>(numLists);
       // evaluated lists that were given as parameters
       Object[] seqs = new Object[numLists];
       for (int i = 0; i < seqs.length; i++) {
@@ -1333,21 +1690,10 @@ public class Funcs {
           seq = Seq.valuesList(seq);
         }
         seqs[i] = null == seq ? new ArrayList<Object>() : seq;
-        callParams.add(new VarExp("arg#" + i));
-      }
-      try {
-        instance.setParams(callParams);
-      } catch (InvalidParametersException e) {
-        throw new RuntimeException(
-            String.format(
-                "%s: lambda at %s: does not take parameter: %s",
-                this.getName(),
-                (null == e.getParseCtx() ? "?" : e.getParseCtx().toString()),
-                e.getMessage()));
       }
 
       List<Object> results = new ArrayList<Object>();
-      callfuncs(backtrace, results, seqs, instance, callParams, eargs);
+      callfuncs(backtrace, results, seqs, lambda, new Object[numLists], eargs);
       return results;
     }
 
@@ -1355,8 +1701,8 @@ public class Funcs {
         Backtrace backtrace,
         List<Object> results,
         Object[] seqs,
-        IExpr instance,
-        List<ICompiled> callParams,
+        ICode lambda,
+        Object[] callArgs,
         ICtx ctx);
 
     protected int callfunc(
@@ -1364,24 +1710,20 @@ public class Funcs {
         List<Object> results,
         Object[] seqs,
         int[] indices,
-        IExpr instance,
-        List<ICompiled> callParams,
+        ICode lambda,
+        Object[] callArgs,
         ICtx ctx) {
-      ICtx loopCtx = ctx.getCompiler().newCtx(ctx);
       for (int seqNo = 0; seqNo < seqs.length; seqNo++) {
         Object seq = seqs[seqNo];
         int seqSize = Seq.getLength(seq, false);
         if (indices[seqNo] < seqSize) {
-          loopCtx.put(
-              ((VarExp) callParams.get(seqNo)).getName(),
-              // seq.get(indices[seqNo])
-              Seq.getElementByIndex(seq, indices[seqNo]));
+          callArgs[seqNo] = Seq.getElementByIndex(seq, indices[seqNo]);
         } else {
           return seqNo;
         }
       }
 
-      final Object result = instance.evaluate(backtrace, loopCtx);
+      final Object result = lambda.invoke(backtrace, ctx, callArgs);
       results.add(result);
       return -1;
     }
@@ -1402,13 +1744,13 @@ public class Funcs {
         Backtrace backtrace,
         List<Object> results,
         Object[] seqs,
-        IExpr instance,
-        List<ICompiled> callParams,
+        ICode lambda,
+        Object[] callArgs,
         ICtx ctx) {
       int[] indices = new int[seqs.length];
       int overflow = -1;
       while (true) {
-        overflow = callfunc(backtrace, results, seqs, indices, instance, callParams, ctx);
+        overflow = callfunc(backtrace, results, seqs, indices, lambda, callArgs, ctx);
         if (overflow >= 0) {
           break;
         }
@@ -1431,13 +1773,13 @@ public class Funcs {
         Backtrace backtrace,
         List<Object> results,
         Object[] seqs,
-        IExpr instance,
-        List<ICompiled> callParams,
+        ICode lambda,
+        Object[] callArgs,
         ICtx ctx) {
       int[] indices = new int[seqs.length];
       int overflow = -1;
       while (true) {
-        overflow = callfunc(backtrace, results, seqs, indices, instance, callParams, ctx);
+        overflow = callfunc(backtrace, results, seqs, indices, lambda, callArgs, ctx);
         if (overflow < 0) {
           indices[0]++;
           continue;
@@ -2306,6 +2648,7 @@ public class Funcs {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
       Object val = eargs.get(0, backtrace);
+      final boolean stackless = eargs.getCompiler().isStacklessThrow();
       ExecutionException ex;
       if (val instanceof ExecutionException) {
         ex = (ExecutionException) val;
@@ -2313,9 +2656,9 @@ public class Funcs {
           ex.setBacktrace(backtrace);
         }
       } else if (val instanceof Throwable) {
-        ex = new ExecutionException(backtrace, (Throwable) val);
+        ex = new ExecutionException(backtrace, null, (Throwable) val, !stackless);
       } else {
-        ex = new ExecutionException(backtrace, Utils.asString(val));
+        ex = new ExecutionException(backtrace, Utils.asString(val), null, !stackless);
       }
       throw ex;
     }
@@ -2331,7 +2674,8 @@ public class Funcs {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
       Object val = eargs.get(0, backtrace);
-      return new ExecutionException(Utils.asStringOrNull(val));
+      return new ExecutionException(
+          null, Utils.asStringOrNull(val), null, !eargs.getCompiler().isStacklessThrow());
     }
   }
 
@@ -2339,12 +2683,22 @@ public class Funcs {
   @Arguments(spec = {"value"})
   @Docstring(text = "Return value from function")
   @Package(name = Package.BASE_CONTROL)
-  public static class RETURN extends FuncExp {
+  public static class RETURN extends FuncExp implements Invoke1 {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
-      Object val = eargs.get(0, backtrace);
+      return invoke1(backtrace, eargs.get(0, backtrace));
+    }
+
+
+    @Override
+    public Object invoke1(Backtrace backtrace, Object val) {
       throw new ReturnException(val);
     }
+
+    /** Return compiled expression of the returned value. */
+    public ICompiled getValueExpr() {
+      return argList.getParams()[0];
+    }
   }
   
   // **** STRING HANDLING
@@ -2354,6 +2708,7 @@ public class Funcs {
           "Compile A Regexp Pattern. On success returns a java.util.regex.Pattern objec. On error"
               + " raises exception.")
   @Package(name = Package.BASE_REGEX)
+  @Pure
   public static class RE_PATTERN extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -2374,6 +2729,7 @@ public class Funcs {
               + "On success returns a java.util.regex.Pattern object. "
               + "On error raises exception.")
   @Package(name = Package.BASE_REGEX)
+  @Pure
   public static class RE_GLOB extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -2752,7 +3108,7 @@ public class Funcs {
               + "Return value from an associative structure struct, \n"
               + " Returns NIL if the key is not present, or the not-found value if supplied.")
   @Package(name = Package.BASE_SEQ)
-  public static class GET extends FuncExp {
+  public static class GET extends FuncExp implements Invoke2, Invoke3 {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
       final int argsnum = eargs.size();
@@ -2763,6 +3119,17 @@ public class Funcs {
       final Object obj = eargs.get(0, backtrace);
       final Object keyObj = eargs.get(1, backtrace);
       final Object notDefined = argsnum > 2 ? eargs.get(2, backtrace) : null;
+      return invoke3(backtrace, obj, keyObj, notDefined);
+    }
+
+
+    @Override
+    public Object invoke2(Backtrace backtrace, Object obj, Object keyObj) {
+      return invoke3(backtrace, obj, keyObj, null);
+    }
+
+    @Override
+    public Object invoke3(Backtrace backtrace, Object obj, Object keyObj, Object notDefined) {
       final Object[] result = new Object[1];
       return Seq.doGet(obj, result, keyObj) ? result[0] : notDefined;
     }
@@ -2771,10 +3138,16 @@ public class Funcs {
   @Arguments(spec = {"seq", "keyidx"})
   @Docstring(text = "Check whether Map or indexed sequence has given key or index.")
   @Package(name = Package.BASE_SEQ)
-  public static class HASKEY extends FuncExp {
+  public static class HASKEY extends FuncExp implements Invoke2 {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
-      return Seq.containsKey(eargs.get(0, backtrace), eargs.get(1, backtrace));
+      return invoke2(backtrace, eargs.get(0, backtrace), eargs.get(1, backtrace));
+    }
+
+
+    @Override
+    public Object invoke2(Backtrace backtrace, Object seq, Object key) {
+      return Seq.containsKey(seq, key);
     }
   }
 
@@ -2855,6 +3228,7 @@ public class Funcs {
       text =
       "Convert character, string or character sequence to upper case.")
   @Package(name = Package.BASE_TEXT)
+  @Pure
   public static class UPPERCASE extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -2880,6 +3254,7 @@ public class Funcs {
       text =
       "Convert character, string or character sequence to lower case.")
   @Package(name = Package.BASE_TEXT)
+  @Pure
   public static class LOWERCASE extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -3018,6 +3393,7 @@ public class Funcs {
           "Concatenate Strings. Returns concatenation "
               + "of string representationx of the function arguments. NIL arguments are ignored.")
   @Package(name = Package.BASE_TEXT)
+  @Pure
   public static class STR extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -3507,11 +3883,16 @@ public class Funcs {
           "Returns the first element of the sequence. Returns NIL when "
               + "sequence is NIL or empty")
   @Package(name = Package.BASE_SEQ)
-  public static class FIRST extends NTH {
+  public static class FIRST extends NTH implements Invoke1 {
     @Override
     // @SuppressWarnings("unchecked")
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
-      Object seq = eargs.get(0, backtrace);
+      return invoke1(backtrace, eargs.get(0, backtrace));
+    }
+
+
+    @Override
+    public Object invoke1(Backtrace backtrace, Object seq) {
       return Seq.getElementByIndex(seq, 0);
     }
   }
@@ -3522,10 +3903,16 @@ public class Funcs {
           "Return length of a sequence. Parameter may be any supported sequence (collection, array,"
               + " character sequence) or NIL (0 will be returned).")
   @Package(name = Package.BASE_SEQ)
-  public static class LENGTH extends FuncExp {
+  public static class LENGTH extends FuncExp implements Invoke1 {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
-      return Seq.getLength(eargs.get(0, backtrace), true);
+      return invoke1(backtrace, eargs.get(0, backtrace));
+    }
+
+
+    @Override
+    public Object invoke1(Backtrace backtrace, Object seq) {
+      return Seq.getLength(seq, true);
     }
   }
 
@@ -3670,10 +4057,16 @@ public class Funcs {
   @Arguments(spec = {"object"})
   @Docstring(text = "Check if a value is a NIL.")
   @Package(name = Package.BASE_LOGIC)
-  public static class NILP extends FuncExp {
+  @Pure
+  public static class NILP extends FuncExp implements Invoke1 {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
-      final Object val = eargs.get(0, backtrace);
+      return invoke1(backtrace, eargs.get(0, backtrace));
+    }
+
+
+    @Override
+    public Object invoke1(Backtrace backtrace, Object val) {
       return val == null;
     }
   }
@@ -3681,10 +4074,16 @@ public class Funcs {
   @Arguments(spec = {"object"})
   @Docstring(text = "Check if a value is not a NIL.")
   @Package(name = Package.BASE_LOGIC)
-  public static class NOTNILP extends FuncExp {
+  @Pure
+  public static class NOTNILP extends FuncExp implements Invoke1 {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
-      final Object val = eargs.get(0, backtrace);
+      return invoke1(backtrace, eargs.get(0, backtrace));
+    }
+
+
+    @Override
+    public Object invoke1(Backtrace backtrace, Object val) {
       return val != null;
     }
   }
@@ -3823,25 +4222,14 @@ public class Funcs {
         final Object seq, final ICode lambda, final Backtrace backtrace, final ICtx ctx) {
       Comparator<Object> comparator = null;
       if (null != lambda) {
-        final ICtx localCtx = ctx.getCompiler().newCtx(ctx);
-        final IExpr compf = (IExpr) lambda.getInstance();
-        try {
-          compf.setParams(Utils.newPosArgsList(2));
-        } catch (InvalidParametersException ex) {
-          throw new RuntimeException(
-              String.format(
-                  "%s: lambda at %s: does not take parameter: %s",
-                  this.getName(),
-                  (null == ex.getParseCtx() ? "?" : ex.getParseCtx().toString()),
-                  ex.getMessage()));
-        }
+        final Object[] callArgs = new Object[2];
         comparator =
             new Comparator<Object>() {
               @Override
               public int compare(Object o1, Object o2) {
-                localCtx.getMappings().put("%1", o1);
-                localCtx.getMappings().put("%2", o2);
-                return (Integer) compf.evaluate(backtrace, localCtx);
+                callArgs[0] = o1;
+                callArgs[1] = o2;
+                return (Integer) lambda.invoke(backtrace, ctx, callArgs);
               }
             };
       }
@@ -3947,23 +4335,45 @@ public class Funcs {
       }
     }
 
+    /** Open reader of the input, files are memory mapped. */
+    protected Reader openReader(Object loadObj, Backtrace bt) {
+      File file = null;
+      if (loadObj instanceof String) {
+        file = new File((String) loadObj);
+      } else if (loadObj instanceof File) {
+        file = (File) loadObj;
+      } else {
+        return new InputStreamReader(openInput(loadObj, bt));
+      }
+      try {
+        return ParserWrapper.openFile(file);
+      } catch (IOException ex) {
+        throw new ExecutionException(bt, "I/O opening stream", ex);
+      }
+    }
+
     protected Boolean load(Backtrace bt, ICtx ctx, Object loadObj) {
       if (loadObj == null) {
         return false;
       }
-      InputStream is = null;
+      Reader reader = null;
       try {
-        is = openInput(loadObj, bt);
-        ASTNList astns = new ParserWrapper(ctx.getCompiler().getParser()).parse(is);
-        for (ASTN astn : astns) {
-          ICompiled expr = ctx.getCompiler().compile(astn);
-          expr.evaluate(bt, ctx);
+        reader = openReader(loadObj, bt);
+        // forms are executed as soon as they are parsed
+        final ParserWrapper.FormReader forms =
+            new ParserWrapper(ctx.getCompiler().getParser())
+                .forms(reader, ParserWrapper.DEFAULT_INPUT_NAME);
+        for (ASTNList astns = forms.next(); !astns.isEmpty(); astns = forms.next()) {
+          for (ASTN astn : astns) {
+            ICompiled expr = ctx.getCompiler().compile(astn);
+            expr.evaluate(bt, ctx);
+          }
         }
         return true;
       } finally {
-        if (null != is) {
+        if (null != reader) {
           try {
-            is.close();
+            reader.close();
           } catch (IOException ex) {
             throw new ExecutionException(bt, "I/O exception at stream close", ex);
           }
@@ -3998,6 +4408,11 @@ public class Funcs {
       }
       return is;
     }
+
+    @Override
+    protected Reader openReader(Object loadObj, Backtrace bt) {
+      return new InputStreamReader(openInput(loadObj, bt));
+    }
   }
 
   @Docstring(
@@ -4108,7 +4523,7 @@ public class Funcs {
   public static class SYMBOL extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
-      return new Symbol(Utils.asString(eargs.get(0, backtrace)));
+      return Symbol.intern(Utils.asString(eargs.get(0, backtrace)));
     }
   }
 
@@ -4612,6 +5027,7 @@ public class Funcs {
   @Arguments(spec = {"spec"})
   @Docstring(text = "Create Version from text specification. ")
   @Package(name = Package.BASE_VERSION)
+  @Pure
   public static class VERSION extends FuncExp {
     @Override
     public Object evalWithArgs(Backtrace backtrace, Eargs eargs) {
@@ -4790,6 +5206,8 @@ public class Funcs {
   
   public static class VarExp extends AbstractExpr implements LValue {
     private final String varname;
+    // binding status of the variable in the compiler of the last evaluation context
+    private volatile Compiler.VarCell cell = null;
 
     public String getName() {
       return varname;
@@ -4805,10 +5223,25 @@ public class Funcs {
       return value;
     }
 
+    /** Check if the variable can be bound only at level 0 of the context chain. */
+    protected boolean isGlobalOnly(ICtx ctx) {
+      if (!(ctx instanceof Compiler.Ctx) || ((Compiler.Ctx) ctx).isOpaque()) {
+        return false;
+      }
+      final Compiler compiler = ((Compiler.Ctx) ctx).getCompiler();
+      Compiler.VarCell varCell = this.cell;
+      if (null == varCell || varCell.getCompiler() != compiler) {
+        varCell = compiler.getVarCell(varname);
+        this.cell = varCell;
+      }
+      return !varCell.isLocal();
+    }
+
     @Override
     protected Object doEvaluate(Backtrace backtrace, ICtx ctx) {
-      final Object obj = ctx.get(varname, backtrace);
-      if (null == obj && !ctx.contains(varname)) {
+      final ICtx lookupCtx = isGlobalOnly(ctx) ? ctx.getLevel0() : ctx;
+      final Object obj = lookupCtx.get(varname, backtrace);
+      if (null == obj && !lookupCtx.contains(varname)) {
         ctx.onMissingVar(varname);
       }
       return obj;
@@ -4821,6 +5254,157 @@ public class Funcs {
     }
   }
 
+  /**
+   * Reference to variable that has been resolved at compile time to a slot of an enclosing
+   * lexical scope.
+   *
+   * <p>Since variables are dynamically scoped the slot is used only when the runtime context
+   * chain matches the compile-time scopes, otherwise the variable is looked up by name.
+   */
+  public static class SlotVarExp extends VarExp {
+    private final Compiler.Scope scope;
+    private final int depth;
+    private final int slot;
+
+    /** Create reference to slot at given depth of scope chain. */
+    public SlotVarExp(String str, Compiler.Scope scope, int depth, int slot) {
+      super(str);
+      this.scope = scope;
+      this.depth = depth;
+      this.slot = slot;
+    }
+
+    Compiler.Scope getScope() {
+      return scope;
+    }
+
+    int getDepth() {
+      return depth;
+    }
+
+    int getSlot() {
+      return slot;
+    }
+
+    @Override
+    protected Object doEvaluate(Backtrace backtrace, ICtx ctx) {
+      ICtx frame = ctx;
+      Compiler.Scope expected = scope;
+      for (int i = 0; ; i++) {
+        final Compiler.ISlotCtx slotCtx =
+            frame instanceof Compiler.Ctx ? ((Compiler.Ctx) frame).getSlotCtx() : null;
+        if (null == slotCtx) {
+          break;
+        }
+        if (slotCtx.getScope() != expected || slotCtx.hasExtraBinding(getName())) {
+          break;
+        }
+        if (i == depth) {
+          final Object val = slotCtx.getSlot(slot, backtrace);
+          if (val != Compiler.UNBOUND) {
+            return val;
+          }
+          break;
+        }
+        frame = frame.getPrev();
+        expected = expected.getParent();
+      }
+      return super.doEvaluate(backtrace, ctx);
+    }
+  }
+
+  /**
+   * Reference to variable that is not bound by any of the enclosing lexical scopes.
+   *
+   * <p>The variable is looked up starting from the context in which the outermost scope level,
+   * for example the arguments of a lambda, has been created. The context level that holds the
+   * binding is cached for that starting context and used while the binding epoch of the variable
+   * does not change, so repeated calls of a lambda from the same place, like calls made by MAP or
+   * SORT, do not walk the context chain. The cache refers to the contexts weakly, so it does not
+   * keep them alive after the call.
+   */
+  public static class FreeVarExp extends VarExp {
+    private final Compiler.Scope scope;
+    private final int depth;
+    private volatile Binding binding = null;
+
+    private static final class Binding {
+      private final WeakReference<ICtx> start;
+      private final Compiler.VarCell cell;
+      private final int epoch;
+      // reachable from start, so it is not cleared while start is in use
+      private final WeakReference<Compiler.Ctx> holder;
+
+      private Binding(ICtx start, Compiler.VarCell cell, int epoch, Compiler.Ctx holder) {
+        this.start = new WeakReference<ICtx>(start);
+        this.cell = cell;
+        this.epoch = epoch;
+        this.holder = new WeakReference<Compiler.Ctx>(holder);
+      }
+    }
+
+    /** Create reference to variable that is free in scope chain of given depth. */
+    public FreeVarExp(String str, Compiler.Scope scope, int depth) {
+      super(str);
+      this.scope = scope;
+      this.depth = depth;
+    }
+
+    @Override
+    protected Object doEvaluate(Backtrace backtrace, ICtx ctx) {
+      if (isGlobalOnly(ctx)) {
+        return super.doEvaluate(backtrace, ctx);
+      }
+      final String name = getName();
+      ICtx frame = ctx;
+      Compiler.Scope expected = scope;
+      for (int i = 0; i <= depth; i++) {
+        final Compiler.ISlotCtx slotCtx =
+            frame instanceof Compiler.Ctx ? ((Compiler.Ctx) frame).getSlotCtx() : null;
+        if (null == slotCtx) {
+          return super.doEvaluate(backtrace, ctx);
+        }
+        if (slotCtx.getScope() != expected || slotCtx.hasExtraBinding(name)) {
+          return super.doEvaluate(backtrace, ctx);
+        }
+        frame = frame.getPrev();
+        expected = expected.getParent();
+      }
+      // skip levels that are created for each call, like positional arguments of MAP
+      while (frame instanceof Compiler.LocalCtx) {
+        final Compiler.LocalCtx localCtx = (Compiler.LocalCtx) frame;
+        if (localCtx.getScope().indexOf(name) >= 0 || localCtx.hasExtraBinding(name)) {
+          return super.doEvaluate(backtrace, ctx);
+        }
+        frame = frame.getPrev();
+      }
+      if (!(frame instanceof Compiler.Ctx)) {
+        return super.doEvaluate(backtrace, ctx);
+      }
+      final Binding cached = this.binding;
+      Compiler.Ctx holder = null;
+      if (null != cached
+          && cached.start.get() == frame
+          && cached.epoch == cached.cell.getEpoch()) {
+        holder = cached.holder.get();
+      }
+      if (null == holder) {
+        final Compiler.VarCell cell = ((Compiler.Ctx) frame).getCompiler().getVarCell(name);
+        final int epoch = cell.watchEpoch();
+        holder = ((Compiler.Ctx) frame).findBindingLevel(name);
+        if (null == holder) {
+          return super.doEvaluate(backtrace, ctx);
+        }
+        this.binding = new Binding(frame, cell, epoch, holder);
+      }
+      final Object obj = holder.get(name, backtrace);
+      if (null == obj && !holder.contains(name)) {
+        ctx.onMissingVar(name);
+      }
+      return obj;
+    }
+  }
+
   // ****** SELF-EVALUATING OBJECTS
   public static class ValueExpr extends AbstractExpr {
     private Object value;
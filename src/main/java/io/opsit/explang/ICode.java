@@ -16,4 +16,13 @@ public interface ICode {
   public String getDefLocation();
 
   public String getPackageName();
+
+  /**
+   * Call function with already evaluated positional arguments.
+   *
+   * @param backtrace backtrace of the caller
+   * @param ctx context of the caller
+   * @param args argument values, the array is not retained by the callee
+   */
+  public Object invoke(Backtrace backtrace, Compiler.ICtx ctx, Object[] args);
 }
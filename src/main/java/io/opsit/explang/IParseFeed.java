@@ -0,0 +1,26 @@
+package io.opsit.explang;
+
+/**
+ * Parser of input that is supplied in parts, like lines of REPL input.
+ *
+ * <p>The parser state is kept between the parts, so each character is parsed once regardless of
+ * how the input is split.
+ */
+public interface IParseFeed {
+  /**
+   * Parse next part of the input.
+   *
+   * @return list of top level expressions that were completed by this part, may be empty
+   */
+  public ASTNList feed(CharSequence input);
+
+  /** Check if the input supplied so far ends inside of an expression. */
+  public boolean hasPending();
+
+  /**
+   * Finish parsing at the end of input.
+   *
+   * @return remaining expressions, incomplete expression is reported as parser problem
+   */
+  public ASTNList finish();
+}
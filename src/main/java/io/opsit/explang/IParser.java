@@ -9,6 +9,46 @@ public interface IParser {
 
   public ASTNList parse(ParseCtx pxt, String input, int maxExprs);
 
+  /**
+   * Make incremental parser of input that is supplied in parts.
+   *
+   * <p>The default implementation collects the input and parses all of it again after each part
+   * until it parses without problems. Parsers that can keep their state between the parts should
+   * override it.
+   */
+  public default IParseFeed newFeed(final ParseCtx pctx) {
+    final IParser parser = this;
+    return new IParseFeed() {
+      private final StringBuilder pending = new StringBuilder();
+      private ParseCtx feedCtx = pctx;
+
+      @Override
+      public ASTNList feed(CharSequence input) {
+        pending.append(input);
+        final ParseCtx attempt = feedCtx.clone();
+        final ASTNList result = parser.parse(attempt, pending.toString(), Integer.MAX_VALUE);
+        if (result.hasProblems()) {
+          return new ASTNList(Utils.list(), feedCtx.clone());
+        }
+        feedCtx = attempt;
+        pending.setLength(0);
+        return result;
+      }
+
+      @Override
+      public boolean hasPending() {
+        return pending.length() > 0;
+      }
+
+      @Override
+      public ASTNList finish() {
+        final ASTNList result = parser.parse(feedCtx, pending.toString(), Integer.MAX_VALUE);
+        pending.setLength(0);
+        return result;
+      }
+    };
+  }
+
   public boolean supportREPLStream();
 
   public String formatArgSpec(ArgSpec spec);
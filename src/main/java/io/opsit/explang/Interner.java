@@ -0,0 +1,63 @@
+package io.opsit.explang;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Weak concurrent table of canonical instances of objects that are identified by name.
+ *
+ * <p>Instances that are not referenced outside of the table are garbage collected, their entries
+ * are removed from the table on subsequent calls.
+ */
+final class Interner<T> {
+  private final ConcurrentHashMap<String, Ref<T>> table = new ConcurrentHashMap<String, Ref<T>>();
+  private final ReferenceQueue<T> queue = new ReferenceQueue<T>();
+  private final Function<String, T> factory;
+
+  Interner(Function<String, T> factory) {
+    this.factory = factory;
+  }
+
+  /** Return canonical instance for given name, create it if it does not exist. */
+  T intern(String name) {
+    expunge();
+    Ref<T> ref = table.get(name);
+    T value = null == ref ? null : ref.get();
+    if (null != value) {
+      return value;
+    }
+    final T newValue = factory.apply(name);
+    final Ref<T> newRef = new Ref<T>(name, newValue, queue);
+    while (true) {
+      ref = table.putIfAbsent(name, newRef);
+      if (null == ref) {
+        return newValue;
+      }
+      value = ref.get();
+      if (null != value) {
+        return value;
+      }
+      if (table.replace(name, ref, newRef)) {
+        return newValue;
+      }
+    }
+  }
+
+  private void expunge() {
+    Object ref;
+    while (null != (ref = queue.poll())) {
+      table.remove(((Ref<?>) ref).name, ref);
+    }
+  }
+
+  private static final class Ref<T> extends WeakReference<T> {
+    private final String name;
+
+    private Ref(String name, T value, ReferenceQueue<T> queue) {
+      super(value, queue);
+      this.name = name;
+    }
+  }
+}
@@ -1,10 +1,20 @@
 package io.opsit.explang;
 
+import java.util.function.Function;
+
 public class Keyword extends Symbol {
+  private static final Interner<Keyword> keywords =
+      new Interner<Keyword>(
+          new Function<String, Keyword>() {
+            @Override
+            public Keyword apply(String name) {
+              return new Keyword(name);
+            }
+          });
 
-  public static Keyword UPCASE = new Keyword(":UPCASE");
-  public static Keyword DOWNCASE = new Keyword(":DOWNCASE");
-  public static Keyword PRESERVE = new Keyword(":PRESERVE");
+  public static Keyword UPCASE = intern(":UPCASE");
+  public static Keyword DOWNCASE = intern(":DOWNCASE");
+  public static Keyword PRESERVE = intern(":PRESERVE");
 
   /**
    * Construct Keyword from its string  representation starting with ':'.
@@ -15,4 +25,12 @@ public class Keyword extends Symbol {
       throw new RuntimeException("Keyword cannot have value " + val);
     }
   }
+
+  /** Return canonical keyword with given string representation. */
+  public static Keyword intern(String val) {
+    if (null == val || val.length() < 2 || (!val.startsWith(":"))) {
+      throw new RuntimeException("Keyword cannot have value " + val);
+    }
+    return keywords.intern(val);
+  }
 }
@@ -2,25 +2,47 @@ package io.opsit.explang;
 
 import io.opsit.explang.Compiler.ICtx;
 
+/**
+ * Lazily evaluated argument.
+ *
+ * <p>Parameter that is declared lazy is compiled into instance of this class. Its evaluation
+ * returns a thunk - new instance bound to the evaluation context. The thunk evaluates the
+ * expression when its value is requested for the first time and returns the same value
+ * afterwards.
+ */
 public class LazyEval implements ICompiled {
-  private ICompiled expr;
-  private ICtx ctx;
+  private final ICompiled expr;
+  private final ICtx ctx;
+  private volatile boolean forced = false;
+  private Object value;
 
   public LazyEval(ICompiled expr) {
+    this(expr, null);
+  }
+
+  private LazyEval(ICompiled expr, ICtx ctx) {
     this.expr = expr;
+    this.ctx = ctx;
   }
 
   @Override
   public Object evaluate(Backtrace backtrace, ICtx extCtx) {
-    ctx = extCtx;
-    return this;
+    return new LazyEval(expr, extCtx);
   }
 
   /**
-   * Evaluate code and get result in stored context.
+   * Evaluate code in stored context on first call and return its result.
    */
   public Object getValue(Backtrace backtrace) {
-    return expr.evaluate(backtrace, ctx);
+    if (!forced) {
+      synchronized (this) {
+        if (!forced) {
+          value = expr.evaluate(backtrace, ctx);
+          forced = true;
+        }
+      }
+    }
+    return value;
   }
 
   @Override
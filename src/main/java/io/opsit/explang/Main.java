@@ -1,7 +1,9 @@
 package io.opsit.explang;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -40,6 +42,7 @@ public class Main {
   protected void runWithArgs(String[] argv) throws Exception {
     boolean verbose = false;
     boolean lineMode = false;
+    boolean bytecodeBackend = false;
     File inFile = null;
     int rc = 0;
     Set<String> packages = Compiler.getAllPackages();
@@ -60,6 +63,10 @@ public class Main {
           lineMode = true;
           continue;
         }
+        if ("-j".equals(val)) {
+          bytecodeBackend = true;
+          continue;
+        }
         if ("-p".equals(val)) {
           packages = parsePackages(argv, ++i);
           continue;
@@ -112,6 +119,7 @@ public class Main {
     Compiler compiler = new Compiler(conv, packages);
     compiler.setParser(parser);
     compiler.setCommandlineArgs(args);
+    compiler.setBytecodeBackend(bytecodeBackend);
     if (null != inFile) {
       rc = runfile(inFile, compiler, verbose);
     } else {
@@ -186,6 +194,7 @@ public class Main {
             +    getFuncConverters().get(0) + ", available converters are:\n"
             + listItems(getFuncConverters())      
             + "  -l            Enable line mode\n"
+            + "  -j            Compile function bodies to JVM classes\n"
             + "  -h            Print help message\n"
             + "  -v            Print software version\n";
     System.err.print(msg);
@@ -206,17 +215,30 @@ public class Main {
     Object result = null;
     Compiler.ICtx ctx = compiler.newCtx();
     int rc = 0;
+    Reader reader = null;
     try {
-      ASTNList asts = new ParserWrapper(compiler.getParser()).parse(file);
-      if (verbose) {
-        System.err.println("AST(" + file.getName() + "):\n" + asts + "\n------\n");
+      try {
+        reader = ParserWrapper.openFile(file);
+      } catch (IOException ex) {
+        throw new ParserException(new ParseCtx(file.getName()), "I/O exception", ex);
       }
-      if (asts.hasProblems()) {
-        // won't hapen
-        System.out.println("Encountered parser errors:");
-        System.out.print(Utils.listParseErrors(asts));
-        rc = 2;
-      } else {
+      // forms are executed one by one as soon as they are parsed
+      final ParserWrapper.FormReader forms =
+          new ParserWrapper(compiler.getParser()).forms(reader, file.getName());
+      while (true) {
+        final ASTNList asts = forms.next();
+        if (verbose) {
+          System.err.println("AST(" + file.getName() + "):\n" + asts + "\n------\n");
+        }
+        if (asts.hasProblems()) {
+          System.out.println("Encountered parser errors:");
+          System.out.print(Utils.listParseErrors(asts));
+          rc = 2;
+          break;
+        }
+        if (asts.isEmpty()) {
+          break;
+        }
         final List<ICompiled> exprs = compiler.compileExpList(asts);
         for (ICompiled expr : exprs) {
           if (verbose) {
@@ -253,6 +275,13 @@ public class Main {
       if (null != err && verbose) {
         err.printStackTrace(System.err);
       }
+      if (null != reader) {
+        try {
+          reader.close();
+        } catch (IOException ex) {
+          System.err.println("ERROR: " + ex);
+        }
+      }
     }
     return rc;
   }
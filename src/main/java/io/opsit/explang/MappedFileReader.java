@@ -0,0 +1,96 @@
+package io.opsit.explang;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader of memory mapped file.
+ *
+ * <p>The file is mapped in windows of limited size, so files of any size can be read without
+ * copying them into the heap. Malformed input is replaced like InputStreamReader does.
+ */
+public class MappedFileReader extends Reader {
+  public static final int WINDOW_SIZE = 64 << 20;
+  private final int windowSize;
+  private final FileChannel channel;
+  private final long size;
+  private final CharsetDecoder decoder;
+  // file offset of the current window
+  private long windowStart = 0;
+  private MappedByteBuffer window;
+  private boolean flushed = false;
+
+  /** Open file for reading with given charset. */
+  public MappedFileReader(File file, Charset charset) throws IOException {
+    this(file, charset, WINDOW_SIZE);
+  }
+
+  /** Open file for reading with given charset and size of mapped window. */
+  public MappedFileReader(File file, Charset charset, int windowSize) throws IOException {
+    this.windowSize = windowSize;
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      this.size = channel.size();
+      this.decoder =
+          charset
+              .newDecoder()
+              .onMalformedInput(CodingErrorAction.REPLACE)
+              .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      this.window = map(0, windowSize);
+    } catch (IOException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  private MappedByteBuffer map(long start, int length) throws IOException {
+    windowStart = start;
+    return channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(length, size - start));
+  }
+
+  @Override
+  public int read(char[] cbuf, int off, int len) throws IOException {
+    if (null == window) {
+      throw new IOException("Stream closed");
+    }
+    if (0 == len) {
+      return 0;
+    }
+    final CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+    while (out.position() == off && !flushed) {
+      final long windowEnd = windowStart + window.limit();
+      final boolean last = windowEnd == size;
+      final CoderResult result = decoder.decode(window, out, last);
+      if (result.isError()) {
+        result.throwException();
+      }
+      if (result.isUnderflow()) {
+        if (last) {
+          flushed = !decoder.flush(out).isOverflow();
+        } else {
+          // remap starting with the bytes that were not decoded yet,
+          // window that is too small for one character is extended
+          final int pos = window.position();
+          window = map(windowStart + pos, 0 == pos ? window.limit() + windowSize : windowSize);
+        }
+      }
+    }
+    final int count = out.position() - off;
+    return count > 0 ? count : -1;
+  }
+
+  @Override
+  public void close() throws IOException {
+    window = null;
+    channel.close();
+  }
+}
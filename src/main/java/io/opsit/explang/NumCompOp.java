@@ -6,7 +6,7 @@ import java.util.Comparator;
 public class NumCompOp implements AbstractOp, Comparator<Number> {
   @Override
   public Number doIntOp(Number arg1, Number arg2) {
-    return arg1.longValue() - arg2.longValue();
+    return Long.compare(arg1.longValue(), arg2.longValue());
   }
 
   @Override
@@ -0,0 +1,248 @@
+package io.opsit.explang;
+
+/**
+ * Scanner of numeric literals.
+ *
+ * <p>Accepts the same syntax as the en-US NumberFormat that was used for parsing numbers before:
+ * optional sign, digits with optional grouping commas in the integral part, optional fraction and
+ * exponent, and optional single character type modifier (l, b, s, i, f or d in any case). The
+ * value is computed in primitives and only the result is boxed, failures are reported by the
+ * return code, not by exceptions.
+ */
+public final class NumberScanner {
+  /** The text is a numeric literal, its value is stored in the holder. */
+  public static final int NUMBER = 0;
+  /** The text is not a numeric literal. */
+  public static final int NOT_NUMBER = 1;
+  /** The text is a malformed numeric literal. */
+  public static final int INVALID = 2;
+
+  // significant digits that are kept in a long
+  private static final int MAX_DIGITS = 19;
+  // significant digits that are represented exactly by a double
+  private static final int MAX_EXACT_DIGITS = 15;
+  // absolute value of exponent beyond which double values are infinite or zero anyway
+  private static final int MAX_EXPONENT = 999999999;
+  private static final long[] LONG_POW10 = new long[MAX_DIGITS];
+  private static final double[] DOUBLE_POW10 = new double[23];
+
+  static {
+    LONG_POW10[0] = 1;
+    for (int i = 1; i < LONG_POW10.length; i++) {
+      LONG_POW10[i] = LONG_POW10[i - 1] * 10;
+    }
+    for (int i = 0; i < DOUBLE_POW10.length; i++) {
+      DOUBLE_POW10[i] = Double.parseDouble("1e" + i);
+    }
+  }
+
+  private NumberScanner() {}
+
+  /** Scan the whole string as numeric literal. */
+  public static int scan(CharSequence str, Object[] holder) {
+    return scan(str, 0, str.length(), holder);
+  }
+
+  /**
+   * Scan numeric literal.
+   *
+   * <p>The number is an Integer or a Double unless the type modifier is given. Text that starts
+   * with a number but is followed by more than one character is not a numeric literal, the single
+   * trailing character is a type modifier.
+   *
+   * @param str text to scan
+   * @param start start index of the literal
+   * @param end end index of the literal (exclusive)
+   * @param holder array, the number is stored into its first element
+   * @return NUMBER, NOT_NUMBER or INVALID
+   */
+  public static int scan(CharSequence str, int start, int end, Object[] holder) {
+    int pos = start;
+    if (pos < end && str.charAt(pos) == '+') {
+      pos++;
+    }
+    final int numStart = pos;
+    boolean negative = false;
+    if (pos < end && str.charAt(pos) == '-') {
+      negative = true;
+      pos++;
+    }
+    // first significant digits as unsigned long
+    long digits = 0;
+    // number of significant digits
+    int count = 0;
+    // number of significant digits without the trailing zeros
+    int nonZeroCount = 0;
+    // the value is 0.DIGITS * 10^decimalAt
+    int decimalAt = 0;
+    int exponent = 0;
+    boolean sawDecimal = false;
+    boolean sawDigit = false;
+    int backup = -1;
+    for (; pos < end; pos++) {
+      final char chr = str.charAt(pos);
+      if (chr >= '0' && chr <= '9') {
+        sawDigit = true;
+        backup = -1;
+        if (chr == '0' && count == 0) {
+          if (sawDecimal) {
+            decimalAt--;
+          }
+          continue;
+        }
+        if (count < MAX_DIGITS) {
+          digits = digits * 10 + (chr - '0');
+        }
+        count++;
+        if (chr != '0') {
+          nonZeroCount = count;
+        }
+      } else if (chr == '.') {
+        if (sawDecimal) {
+          break;
+        }
+        decimalAt = count;
+        sawDecimal = true;
+      } else if (chr == ',') {
+        if (sawDecimal) {
+          break;
+        }
+        backup = pos;
+      } else if (chr == 'e' || chr == 'E') {
+        int expPos = pos + 1;
+        final boolean expNegative = expPos < end && str.charAt(expPos) == '-';
+        if (expNegative) {
+          expPos++;
+        }
+        final int expStart = expPos;
+        // saturated at MAX_EXPONENT, so the value cannot overflow
+        long exp = 0;
+        for (; expPos < end; expPos++) {
+          final char ech = str.charAt(expPos);
+          if (ech < '0' || ech > '9') {
+            break;
+          }
+          exp = Math.min(exp * 10 + (ech - '0'), MAX_EXPONENT);
+        }
+        if (expPos > expStart) {
+          exponent = (int) (expNegative ? -exp : exp);
+          pos = expPos;
+        }
+        break;
+      } else {
+        break;
+      }
+    }
+    if (backup >= 0) {
+      pos = backup;
+    }
+    if (!sawDigit) {
+      pos = numStart;
+    }
+    final int rem = end - pos;
+    if (rem > 1) {
+      return NOT_NUMBER;
+    }
+    if (!sawDigit) {
+      return INVALID;
+    }
+    if (!sawDecimal) {
+      decimalAt = count;
+    }
+    decimalAt += exponent;
+
+    boolean isDouble;
+    long longVal = 0;
+    double doubleVal = 0.0;
+    // leading significant digits without the trailing zeros
+    final long sigDigits =
+        nonZeroCount == 0 || nonZeroCount > MAX_DIGITS
+            ? 0
+            : digits / LONG_POW10[Math.min(count, MAX_DIGITS) - nonZeroCount];
+    if (0 == nonZeroCount) {
+      isDouble = negative;
+      doubleVal = -0.0;
+    } else if (decimalAt < nonZeroCount || decimalAt > MAX_DIGITS) {
+      isDouble = true;
+    } else {
+      final long unsigned = sigDigits * LONG_POW10[decimalAt - nonZeroCount];
+      isDouble =
+          decimalAt == MAX_DIGITS
+              && (Long.compareUnsigned(unsigned, Long.MIN_VALUE) > 0
+                  || (unsigned == Long.MIN_VALUE && !negative));
+      longVal = negative ? -unsigned : unsigned;
+    }
+    if (isDouble && 0 != nonZeroCount) {
+      final int pow = decimalAt - nonZeroCount;
+      if (nonZeroCount <= MAX_EXACT_DIGITS && pow >= 0 && pow < DOUBLE_POW10.length) {
+        doubleVal = sigDigits * DOUBLE_POW10[pow];
+      } else if (nonZeroCount <= MAX_EXACT_DIGITS && pow < 0 && pow > -DOUBLE_POW10.length) {
+        doubleVal = sigDigits / DOUBLE_POW10[-pow];
+      } else {
+        doubleVal = parseDouble(str, numStart, count, decimalAt);
+      }
+      if (negative) {
+        doubleVal = -doubleVal;
+      }
+    }
+    if (sawDecimal && !isDouble) {
+      isDouble = true;
+      doubleVal = longVal;
+    }
+    if (rem == 0) {
+      if (isDouble) {
+        holder[0] = doubleVal;
+      } else {
+        holder[0] = (int) longVal;
+      }
+      return NUMBER;
+    }
+    switch (str.charAt(pos)) {
+      case 'l':
+      case 'L':
+        holder[0] = isDouble ? (long) doubleVal : longVal;
+        break;
+      case 'b':
+      case 'B':
+        holder[0] = isDouble ? (byte) doubleVal : (byte) longVal;
+        break;
+      case 's':
+      case 'S':
+        holder[0] = isDouble ? (short) doubleVal : (short) longVal;
+        break;
+      case 'i':
+      case 'I':
+        holder[0] = isDouble ? (int) doubleVal : (int) longVal;
+        break;
+      case 'f':
+      case 'F':
+        holder[0] = isDouble ? (float) doubleVal : (float) longVal;
+        break;
+      case 'd':
+      case 'D':
+        holder[0] = isDouble ? doubleVal : (double) longVal;
+        break;
+      default:
+        return INVALID;
+    }
+    return NUMBER;
+  }
+
+  private static boolean isDigit(char chr) {
+    return chr >= '0' && chr <= '9';
+  }
+
+  /** Convert digits that do not fit the fast path, the sign is not applied. */
+  private static double parseDouble(CharSequence str, int pos, int count, int decimalAt) {
+    final StringBuilder buf = new StringBuilder(count + 16).append("0.");
+    int num = 0;
+    for (; num < count; pos++) {
+      final char chr = str.charAt(pos);
+      if (isDigit(chr) && (num > 0 || chr != '0')) {
+        buf.append(chr);
+        num++;
+      }
+    }
+    return Double.parseDouble(buf.append('E').append(decimalAt).toString());
+  }
+}
@@ -1,12 +1,12 @@
 package io.opsit.explang;
 
+import io.opsit.explang.parser.lisp.LispReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.charset.Charset;
 
 public class ParserWrapper {
   IParser parser;
@@ -34,17 +34,16 @@ public class ParserWrapper {
    */
   public ASTNList parse(File file, String inputName) throws ParserException {
     ParseCtx pctx = new ParseCtx(inputName);
-    InputStream is = null;
+    Reader reader = null;
     try {
-      is = new FileInputStream(file);
-      InputStreamReader reader = new InputStreamReader(is);
+      reader = openFile(file);
       return parser.parse(pctx, reader, Integer.MAX_VALUE);
-    } catch (FileNotFoundException ex) {
+    } catch (IOException ex) {
       throw new ParserException(pctx, "I/O exception", ex);
     } finally {
-      if (null != is) {
+      if (null != reader) {
         try {
-          is.close();
+          reader.close();
         } catch (IOException ex) {
           throw new ParserException(pctx, "I/O exception at stream close", ex);
         }
@@ -60,4 +59,36 @@ public class ParserWrapper {
     Reader reader = new InputStreamReader(is);
     return  parser.parse(new ParseCtx(inputName), reader, Integer.MAX_VALUE);
   }
+
+  /** Open file for parsing, the file is memory mapped and decoded with default charset. */
+  public static Reader openFile(File file) throws IOException {
+    return new MappedFileReader(file, Charset.defaultCharset());
+  }
+
+  /** Make source of top level forms of the reader. */
+  public FormReader forms(Reader reader, String inputName) {
+    return new FormReader(reader, inputName);
+  }
+
+  /**
+   * Source of top level forms that are parsed one at a time.
+   *
+   * <p>Only the current form is kept in memory, so the forms may be compiled and executed while
+   * the rest of the input is not read yet. The input is buffered by a LispReader which keeps read
+   * ahead characters between the parse calls.
+   */
+  public class FormReader {
+    private final ParseCtx pctx;
+    private final Reader reader;
+
+    protected FormReader(Reader reader, String inputName) {
+      this.pctx = new ParseCtx(inputName);
+      this.reader = reader instanceof LispReader ? reader : new LispReader(reader);
+    }
+
+    /** Parse next form, return empty list at the end of input. */
+    public ASTNList next() {
+      return parser.parse(pctx, reader, 1);
+    }
+  }
 }
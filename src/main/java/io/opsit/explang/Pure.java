@@ -0,0 +1,18 @@
+package io.opsit.explang;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for marking pure builtin functions.
+ *
+ * <p>Pure function has no side effects, does not depend on the execution context and returns
+ * immutable value that depends only on its arguments. Calls of such functions with constant
+ * arguments are evaluated at compile time.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Pure {
+}
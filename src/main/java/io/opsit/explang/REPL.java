@@ -123,18 +123,33 @@ public class REPL implements IREPL {
         ParseCtx pctx = new ParseCtx("INPUT" + (inputNo++));
         ASTNList exprs = null;
         if (lineMode) {
-          StringBuilder buf = new StringBuilder();
+          // each line is fed to the parser once, complete forms are collected
+          // while incomplete input stays pending in the feed
+          final IParseFeed feed = parser.newFeed(pctx);
+          StringBuilder buf = verbose ? new StringBuilder() : null;
           String line = null;
           while (null != (line = ((BufferedReader) reader).readLine())) {
             if (line.length() == 0) {
+              if (null != exprs) {
+                final ASTNList rest = feed.finish();
+                exprs.addAll(rest);
+                if (null != rest.problem) {
+                  exprs.problem = rest.problem;
+                }
+              }
               break;
             }
-            buf.append(line).append("\n");
-            exprs = parser.parse(pctx, buf.toString(), Integer.MAX_VALUE);
+            if (null == exprs) {
+              exprs = new ASTNList(Utils.list(), pctx.clone());
+            }
+            if (verbose) {
+              buf.append(line).append("\n");
+            }
+            exprs.addAll(feed.feed(line + "\n"));
             if (verbose) {
               System.out.println("\nPARSER RETURN: " + exprs);
             }
-            if (exprs.size() > 0 && !exprs.hasProblems()) {
+            if (exprs.size() > 0 && !exprs.hasProblems() && !feed.hasPending()) {
               break;
             }
           }
@@ -145,7 +160,7 @@ public class REPL implements IREPL {
             break;
           }
           if (verbose) {
-            System.out.println("\nINPUT:" + buf.toString() + "\n");
+            System.out.println("\nINPUT:" + buf + "\n");
           }
         } else {
           exprs = parser.parse(pctx, reader, 1);
@@ -1,10 +1,16 @@
 package io.opsit.explang;
 
+/**
+ * Exception that implements return of value from function.
+ *
+ * <p>It is used for control flow only, so it does not capture stack trace.
+ */
 public class ReturnException extends RuntimeException {
   public static final long serialVersionUID = 1;
   protected transient Object payload;
 
   public ReturnException(Object payload) {
+    super(null, null, false, false);
     this.payload = payload;
   }
 
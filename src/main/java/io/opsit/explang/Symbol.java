@@ -1,7 +1,25 @@
 package io.opsit.explang;
 
+import java.util.function.Function;
+
+/**
+ * Symbol.
+ *
+ * <p>Symbols created with intern() are canonical, so in most cases they are compared by
+ * reference. Instances created with constructor are still equal to the canonical ones.
+ */
 public class Symbol {
+  private static final Interner<Symbol> symbols =
+      new Interner<Symbol>(
+          new Function<String, Symbol>() {
+            @Override
+            public Symbol apply(String name) {
+              return new Symbol(name);
+            }
+          });
+
   public final String value;
+  private final int hash;
 
   /**
    * Construct symbol from its string representation.
@@ -11,6 +29,15 @@ public class Symbol {
     if (null == str || str.length() == 0) {
       throw new ExecutionException("Symbol cannot be null or empty string!");
     }
+    hash = str.hashCode();
+  }
+
+  /** Return canonical symbol with given name. */
+  public static Symbol intern(String str) {
+    if (null == str || str.length() == 0) {
+      throw new ExecutionException("Symbol cannot be null or empty string!");
+    }
+    return symbols.intern(str);
   }
 
   public String getName() {
@@ -19,7 +46,12 @@ public class Symbol {
 
   @Override
   public boolean equals(Object other) {
-    return null != other && (other instanceof Symbol) && ((Symbol) other).value.equals(this.value);
+    if (this == other) {
+      return true;
+    }
+    return (other instanceof Symbol)
+        && ((Symbol) other).hash == this.hash
+        && ((Symbol) other).value.equals(this.value);
   }
 
   public String toString() {
@@ -29,6 +61,6 @@ public class Symbol {
 
   @Override
   public int hashCode() {
-    return value.hashCode();
+    return hash;
   }
 }
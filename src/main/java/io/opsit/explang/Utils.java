@@ -9,8 +9,6 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.text.NumberFormat;
-import java.text.ParsePosition;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -18,7 +16,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -81,7 +78,7 @@ public class Utils {
 
   /** Make Symbol with given name. */
   public static Symbol symbol(String name) {
-    return null == name ? null : new Symbol(name);
+    return null == name ? null : Symbol.intern(name);
   }
 
   /** Make Reader from string content. */
@@ -406,71 +403,47 @@ public class Utils {
     }
   }
 
-  protected static final Locale numLocale = Locale.forLanguageTag("en-US");
-  
-  /** Parse string as Number. FIXME: exc. handling is ugly */
+  /**
+   * Parse string as Number.
+   *
+   * @return the number or null if the string starts with a number but has trailing characters
+   * @throws NumberFormatException if the string is not a valid numeric literal
+   */
   public static Number parseNumber(String str) {
-    if (((str.length() > 1) && (str.startsWith("+") || str.startsWith("-") || str.startsWith(".")))
-        || ((str.length() > 0) && (str.charAt(0) >= '0' && str.charAt(0) <= '9'))) {
-      // FIXME: NumberFormat is not therad safe, need make it per thread
-      NumberFormat nf = NumberFormat.getInstance(numLocale);
-      ParsePosition pos = new ParsePosition(str.startsWith("+") ? 1 : 0);
-      try {
-        Number num = (Number) nf.parseObject(str.toUpperCase(), pos);
-        Character typeSpec = null;
-        if (pos.getIndex() + 1 == str.length()) {
-          typeSpec = str.charAt(pos.getIndex());
-        } else if (pos.getIndex() < str.length()) {
-          return null;
-        }
-        if (str.contains(".") && (num instanceof Long)) {
-          num = num.doubleValue();
-        }
-        if (null != typeSpec) {
-          switch (typeSpec.charValue()) {
-            case 'l':
-            case 'L':
-              num = num.longValue();
-              break;
-            case 'b':
-            case 'B':
-              num = num.byteValue();
-              break;
-            case 's':
-            case 'S':
-              num = num.shortValue();
-              break;
-            case 'i':
-            case 'I':
-              num = num.intValue();
-              break;
-            case 'f':
-            case 'F':
-              num = num.floatValue();
-              break;
-            case 'd':
-            case 'D':
-              num = num.doubleValue();
-              break;
-            default:
-              throw new NumberFormatException(
-                  String.format(
-                      "Failed to parse numeric literal '%s': invalid type modifier %s",
-                      str, typeSpec));
-          }
-        } else {
-          num = (num instanceof Double) ? num : num.intValue();
-        }
-        return num;
-      } catch (Exception ex) {
-        throw new NumberFormatException(
-            String.format("Failed to parse numeric literal '%s': %s", str, ex.toString()));
-      }
-    } else {
-      throw new NumberFormatException(String.format("Invalid numeric literal '%s'", str));
+    final Object[] holder = new Object[1];
+    switch (scanNumber(str, 0, str.length(), holder)) {
+      case NumberScanner.NUMBER:
+        return (Number) holder[0];
+      case NumberScanner.NOT_NUMBER:
+        return null;
+      default:
+        throw new NumberFormatException(numberError(str, 0, str.length()));
     }
   }
 
+  private static boolean isNumberStart(CharSequence str, int start, int end) {
+    if (end <= start) {
+      return false;
+    }
+    final char chr = str.charAt(start);
+    return (chr >= '0' && chr <= '9')
+        || ((end - start > 1) && (chr == '+' || chr == '-' || chr == '.'));
+  }
+
+  private static int scanNumber(CharSequence str, int start, int end, Object[] holder) {
+    return isNumberStart(str, start, end)
+        ? NumberScanner.scan(str, start, end, holder)
+        : NumberScanner.INVALID;
+  }
+
+  private static String numberError(CharSequence str, int start, int end) {
+    return String.format(
+        isNumberStart(str, start, end)
+            ? "Failed to parse numeric literal '%s'"
+            : "Invalid numeric literal '%s'",
+        str.subSequence(start, end));
+  }
+
   /**
    * Coerse object to Number.
    *
@@ -484,15 +457,29 @@ public class Utils {
     } else if (val instanceof Boolean) {
       return ((Boolean) val) ? 1 : 0;
     } else if (val instanceof CharSequence) {
-      final String str = (val.toString()).trim();
-      try {
-        Number num = parseNumber(str);
-        return num;
-      } catch (NumberFormatException ex) {
-        if ("NaN".equals(str)) {
-          return Double.NaN;
-        }
-        throw new RuntimeException("String '" + val + "' cannot be coerced to Number", ex);
+      final CharSequence str = (CharSequence) val;
+      // trim without copying the string
+      int start = 0;
+      int end = str.length();
+      while (start < end && str.charAt(start) <= ' ') {
+        start++;
+      }
+      while (end > start && str.charAt(end - 1) <= ' ') {
+        end--;
+      }
+      final Object[] holder = new Object[1];
+      switch (scanNumber(str, start, end, holder)) {
+        case NumberScanner.NUMBER:
+          return (Number) holder[0];
+        case NumberScanner.NOT_NUMBER:
+          return null;
+        default:
+          if (end - start == 3 && "NaN".contentEquals(str.subSequence(start, end))) {
+            return Double.NaN;
+          }
+          throw new RuntimeException(
+              "String '" + val + "' cannot be coerced to Number",
+              new NumberFormatException(numberError(str, start, end)));
       }
     }  else if (val instanceof Character) {
       return (short) ((Character) val).charValue();
@@ -4,4 +4,13 @@ import io.opsit.explang.ParseCtx;
 
 public interface AtomParser {
   public boolean parse(String str, Object[] holder, ParseCtx pctx) throws AtomParseException;
+
+  /**
+   * Check if the parser may accept atom that starts with given character.
+   *
+   * <p>Used by parsers to skip atom parsers that cannot accept the atom without calling them.
+   */
+  public default boolean canStartWith(char chr) {
+    return true;
+  }
 }
@@ -18,4 +18,9 @@ public class BooleanParser implements AtomParser {
       return false;
     }
   }
+
+  @Override
+  public boolean canStartWith(char chr) {
+    return chr == 't' || chr == 'T' || chr == 'f' || chr == 'F';
+  }
 }
@@ -53,4 +53,9 @@ public class EscStringParser implements AtomParser {
     holder[0] = sb.toString();
     return true;
   }
+
+  @Override
+  public boolean canStartWith(char chr) {
+    return chr == '"';
+  }
 }
@@ -9,7 +9,12 @@ public class KeywordParser implements AtomParser {
     if (str.length() < 2 || ':' != str.charAt(0)) {
       return false;
     }
-    holder[0] = new Keyword(str);
+    holder[0] = Keyword.intern(str);
     return true;
   }
+
+  @Override
+  public boolean canStartWith(char chr) {
+    return chr == ':';
+  }
 }
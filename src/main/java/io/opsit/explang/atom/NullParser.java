@@ -12,4 +12,9 @@ public class NullParser implements AtomParser {
       return false;
     }
   }
+
+  @Override
+  public boolean canStartWith(char chr) {
+    return chr == 'n' || chr == 'N';
+  }
 }
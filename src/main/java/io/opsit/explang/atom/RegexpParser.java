@@ -67,4 +67,9 @@ public class RegexpParser implements AtomParser {
     }
     return true;
   }
+
+  @Override
+  public boolean canStartWith(char chr) {
+    return chr == 'r' || chr == 'g';
+  }
 }
@@ -12,4 +12,9 @@ public class StringParser implements AtomParser {
       return false;
     }
   }
+
+  @Override
+  public boolean canStartWith(char chr) {
+    return chr == '"';
+  }
 }
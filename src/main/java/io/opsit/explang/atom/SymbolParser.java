@@ -10,7 +10,7 @@ public class SymbolParser implements AtomParser {
     if (str.length() == 0) {
       throw new AtomParseException(pctx, "Symbol cannot be empty");
     }
-    holder[0] = new Symbol(str);
+    holder[0] = Symbol.intern(str);
     return true;
   }
 }
@@ -24,4 +24,9 @@ public class SymfuncParser implements AtomParser {
     }
     return false;
   }
+
+  @Override
+  public boolean canStartWith(char chr) {
+    return chr == 'f';
+  }
 }
@@ -26,4 +26,9 @@ public  class VersionParser implements AtomParser {
     }
     return false;
   }
+
+  @Override
+  public boolean canStartWith(char chr) {
+    return chr == 'v';
+  }
 }
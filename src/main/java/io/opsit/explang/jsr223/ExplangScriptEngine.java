@@ -12,9 +12,7 @@ import io.opsit.explang.InvalidParametersException;
 import io.opsit.explang.ParseCtx;
 import io.opsit.explang.Utils;
 import io.opsit.explang.parser.lisp.LispParser;
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import io.opsit.explang.parser.lisp.LispReader;
 import java.io.Reader;
 import java.util.Arrays;
 import java.util.List;
@@ -57,9 +55,7 @@ public class ExplangScriptEngine implements ScriptEngine, Invocable {
 
   @Override
   public Object eval(String script, ScriptContext context) throws ScriptException {
-    InputStream is = new ByteArrayInputStream(script.getBytes());
-    Reader reader = new InputStreamReader(is);
-    return eval(reader, context);
+    return eval(new LispReader(script), context);
   }
 
   @Override
@@ -70,8 +66,10 @@ public class ExplangScriptEngine implements ScriptEngine, Invocable {
     Object result = null;
     Compiler.ICtx ctx = makeCtx(context);
     ASTNList astns = null;
+    // expressions are parsed one by one, buffered input must survive between parse calls
+    final Reader in = reader instanceof LispReader ? reader : new LispReader(reader);
     do {
-      astns = parser.parse(pctx, reader, 1);
+      astns = parser.parse(pctx, in, 1);
       if (astns.isEmpty()) {
         break;
       }
@@ -4,6 +4,7 @@ import io.opsit.explang.ASTN;
 import io.opsit.explang.ASTNLeaf;
 import io.opsit.explang.ASTNList;
 import io.opsit.explang.ArgSpec;
+import io.opsit.explang.IParseFeed;
 import io.opsit.explang.IParser;
 import io.opsit.explang.Keyword;
 import io.opsit.explang.OperatorDesc;
@@ -18,13 +19,9 @@ import io.opsit.explang.atom.KeywordParser;
 import io.opsit.explang.atom.NullParser;
 import io.opsit.explang.atom.NumberParser;
 import io.opsit.explang.atom.SymbolParser;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.PushbackInputStream;
-import java.io.PushbackReader;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
@@ -66,26 +63,38 @@ public class LispParser implements IParser {
   public static final Object SHARP_VERTICAL_BAR = null;
   public static final Object SHARP_ILLEGAL = null;
 
-  /** Parse up to maxExprs from the input stream. */
+  /**
+   * Parse up to maxExprs from the input stream.
+   *
+   * <p>When the number of expressions is limited the rest of the input is left in the stream: the
+   * stream is not read ahead unless it is a LispReader, which keeps the buffered input itself.
+   */
   @Override
   public ASTNList parse(ParseCtx pctx, Reader r, int maxExprs) {
-    final PushbackReader pbr = new PushbackReader(r);
+    final LispReader lr;
+    if (r instanceof LispReader) {
+      lr = (LispReader) r;
+    } else {
+      lr = new LispReader(r, Integer.MAX_VALUE == maxExprs ? LispReader.BUF_SIZE : 1);
+    }
+    return parse(pctx, lr, maxExprs);
+  }
+
+  /** Parse up to maxExprs from the input string. */
+  public ASTNList parse(ParseCtx pctx, String str, int maxExprs) {
+    return parse(pctx, new LispReader(str), maxExprs);
+  }
+
+  protected ASTNList parse(ParseCtx pctx, LispReader lr, int maxExprs) {
     final List<ASTN> lst = new ArrayList<ASTN>();
     ASTN parsed;
-    for (int i = 0; (i < maxExprs) && (null != (parsed = parse_expr(pctx, pbr))); i++) {
+    for (int i = 0; (i < maxExprs) && (null != (parsed = parse_expr(pctx, lr))); i++) {
       lst.add(parsed);
     }
     final ASTNList result = new ASTNList(lst, pctx);
     return result;
   }
 
-  /** Parse up to maxExprs from the input string. */
-  public ASTNList parse(ParseCtx pctx, String str, int maxExprs) {
-    final InputStream is = new ByteArrayInputStream(str.getBytes());
-    final Reader r = new InputStreamReader(is);
-    return parse(pctx, r, maxExprs);
-  }
-
   // @Override
   public ASTNList parse(ParseCtx pctx, String input) {
     return parse(pctx, input, Integer.MAX_VALUE);
@@ -95,33 +104,32 @@ public class LispParser implements IParser {
   public final ReadTable rt = new ReadTable();
 
   /** parse one expression from input stream. */
-  protected ASTN parse_expr(ParseCtx pctx, PushbackReader reader) {
-    while (true) {
-      int n = -1;
-      try {
-        n = doReadChar(reader, pctx);
-      } catch (IOException e) {
-        return new ASTNLeaf(null, pctx, e);
-      }
-      if (n < 0) {
-        // EOF before start of any expression is OK
-        // throw new ReaderException(pctx, "Unexpected EOF");
-        return null;
-      }
-      char c = (char) n;
-      if (rt.isWhitespace(c)) {
-        continue;
-      }
+  protected ASTN parse_expr(ParseCtx pctx, LispReader reader) {
+    try {
+      while (true) {
+        final int n = doReadChar(reader, pctx);
+        if (n < 0) {
+          // EOF before start of any expression is OK
+          // throw new ReaderException(pctx, "Unexpected EOF");
+          return null;
+        }
+        char c = (char) n;
+        if (rt.isWhitespace(c)) {
+          continue;
+        }
 
-      ASTN result = processChar(pctx, c, reader, rt);
-      if (result != null && !result.isComment()) {
-        return result;
+        ASTN result = processChar(pctx, c, reader, rt);
+        if (result != null && !result.isComment()) {
+          return result;
+        }
       }
+    } catch (UncheckedIOException e) {
+      return new ASTNLeaf(null, pctx, e.getCause());
     }
   }
 
   /** Process input character. */
-  static final ASTN processChar(ParseCtx pctx, char c, PushbackReader r, ReadTable rt) {
+  static final ASTN processChar(ParseCtx pctx, char c, LispReader r, ReadTable rt) {
 
     final IReaderMacroFunc handler = rt.getReaderMacroFunction(c);
     if (null != handler) {
@@ -151,7 +159,7 @@ public class LispParser implements IParser {
     // return value;
   }
 
-  private static final ASTN readToken(ParseCtx pctx, char c, PushbackReader r, ReadTable rt) {
+  private static final ASTN readToken(ParseCtx pctx, char c, LispReader r, ReadTable rt) {
     StringBuilder sb = new StringBuilder(String.valueOf(c));
     // final LispThread thread = LispThread.currentThread();
     BitSet flags = null;
@@ -196,7 +204,7 @@ public class LispParser implements IParser {
         new KeywordParser(), new SymbolParser()
       };
 
-  private static BitSet doReadToken(ParseCtx pctx, PushbackReader r, StringBuilder sb, ReadTable rt)
+  private static BitSet doReadToken(ParseCtx pctx, LispReader r, StringBuilder sb, ReadTable rt)
       throws ParserException {
     BitSet flags = null;
     final Keyword readtableCase = rt.getReadtableCase();
@@ -205,14 +213,7 @@ public class LispParser implements IParser {
       char c = sb.charAt(0);
       byte syntaxType = rt.getSyntaxType(c);
       if (syntaxType == ReadTable.SYNTAX_TYPE_SINGLE_ESCAPE) {
-        int n = -1;
-        try {
-          n = doReadChar(r, pctx);
-        } catch (IOException e) {
-          // error(new StreamError(this, e));
-          throw new ParserException(pctx, e.getMessage(), e);
-          // return flags;
-        }
+        final int n = doReadChar(r, pctx);
         if (n < 0) {
           // error(new EndOfFile(this));
           return null; // Not reached
@@ -234,63 +235,57 @@ public class LispParser implements IParser {
         sb.setCharAt(0, Character.toLowerCase(c));
       }
     }
-    try {
-      while (true) {
-        int n = doReadChar(r, pctx);
+    while (true) {
+      int n = doReadChar(r, pctx);
+      if (n < 0) {
+        break;
+      }
+      char c = (char) n; // ### BUG: Codepoint conversion
+      if (rt.isWhitespace(c)) {
+        doUnreadChar(r, pctx, n);
+        break;
+      }
+      byte syntaxType = rt.getSyntaxType(c);
+      if (syntaxType == ReadTable.SYNTAX_TYPE_TERMINATING_MACRO) {
+        doUnreadChar(r, pctx, c);
+        break;
+      }
+      rt.checkInvalid(c);
+      if (syntaxType == ReadTable.SYNTAX_TYPE_SINGLE_ESCAPE) {
+        n = doReadChar(r, pctx);
         if (n < 0) {
           break;
         }
-        char c = (char) n; // ### BUG: Codepoint conversion
-        if (rt.isWhitespace(c)) {
-          doUnreadChar(r, pctx, n);
-          break;
-        }
-        byte syntaxType = rt.getSyntaxType(c);
-        if (syntaxType == ReadTable.SYNTAX_TYPE_TERMINATING_MACRO) {
-          doUnreadChar(r, pctx, c);
-          break;
-        }
-        rt.checkInvalid(c);
-        if (syntaxType == ReadTable.SYNTAX_TYPE_SINGLE_ESCAPE) {
-          n = doReadChar(r, pctx);
-          if (n < 0) {
-            break;
-          }
-          sb.append((char) n); // ### BUG: Codepoint conversion
-          if (flags == null) {
-            flags = new BitSet(sb.length());
-          }
-          flags.set(sb.length() - 1);
-          continue;
-        }
-        if (syntaxType == ReadTable.SYNTAX_TYPE_MULTIPLE_ESCAPE) {
-          int begin = sb.length();
-          sb.append(readMultipleEscape(pctx, r, rt));
-          int end = sb.length();
-          if (flags == null) {
-            flags = new BitSet(sb.length());
-          }
-          flags.set(begin, end);
-          continue;
+        sb.append((char) n); // ### BUG: Codepoint conversion
+        if (flags == null) {
+          flags = new BitSet(sb.length());
         }
-        if (readtableCase == Keyword.UPCASE) {
-          c = Character.toUpperCase(c);
-        } else if (readtableCase == Keyword.DOWNCASE) {
-          c = Character.toLowerCase(c);
+        flags.set(sb.length() - 1);
+        continue;
+      }
+      if (syntaxType == ReadTable.SYNTAX_TYPE_MULTIPLE_ESCAPE) {
+        int begin = sb.length();
+        sb.append(readMultipleEscape(pctx, r, rt));
+        int end = sb.length();
+        if (flags == null) {
+          flags = new BitSet(sb.length());
         }
-        sb.append(c);
+        flags.set(begin, end);
+        continue;
       }
-    } catch (IOException e) {
-      throw new ParserException(pctx, e.getMessage(), e);
-      // error(new StreamError(this, e));
-      // return flags;
+      if (readtableCase == Keyword.UPCASE) {
+        c = Character.toUpperCase(c);
+      } else if (readtableCase == Keyword.DOWNCASE) {
+        c = Character.toLowerCase(c);
+      }
+      sb.append(c);
     }
 
     return flags;
   }
 
-  protected static int doReadChar(PushbackReader reader, ParseCtx pctx) throws IOException {
-    final int n = reader.read();
+  protected static int doReadChar(LispReader reader, ParseCtx pctx) {
+    final int n = reader.next();
     if (n < 0) {
       return -1;
     }
@@ -304,8 +299,7 @@ public class LispParser implements IParser {
     return n;
   }
 
-  protected static void doUnreadChar(PushbackReader reader, ParseCtx pctx, int n)
-      throws IOException {
+  protected static void doUnreadChar(LispReader reader, ParseCtx pctx, int n) {
     // if (reader == null) {
     // streamNotCharacterInputStream();
     // }
@@ -321,38 +315,159 @@ public class LispParser implements IParser {
     // pastEnd = false;
   }
 
-  private static String readMultipleEscape(ParseCtx pctx, PushbackReader r, ReadTable rt)
+  private static String readMultipleEscape(ParseCtx pctx, LispReader r, ReadTable rt)
       throws ParserException {
     StringBuilder sb = new StringBuilder();
-    try {
-      while (true) {
-        int n = doReadChar(r, pctx);
+    while (true) {
+      int n = doReadChar(r, pctx);
+      if (n < 0) {
+        // return serror(new EndOfFile(this));
+        throw new ParserEOFException("Unexpected EOF");
+      }
+
+      char c = (char) n; // ### BUG: Codepoint conversion
+      byte syntaxType = rt.getSyntaxType(c);
+      if (syntaxType == ReadTable.SYNTAX_TYPE_SINGLE_ESCAPE) {
+        n = doReadChar(r, pctx);
         if (n < 0) {
-          // return serror(new EndOfFile(this));
           throw new ParserEOFException("Unexpected EOF");
+          // return serror(new EndOfFile(this));
         }
+        sb.append((char) n); // ### BUG: Codepoint conversion
+        continue;
+      }
+      if (syntaxType == ReadTable.SYNTAX_TYPE_MULTIPLE_ESCAPE) {
+        break;
+      }
+      sb.append(c);
+    }
+    return sb.toString();
+  }
 
-        char c = (char) n; // ### BUG: Codepoint conversion
-        byte syntaxType = rt.getSyntaxType(c);
-        if (syntaxType == ReadTable.SYNTAX_TYPE_SINGLE_ESCAPE) {
-          n = doReadChar(r, pctx);
-          if (n < 0) {
-            throw new ParserEOFException("Unexpected EOF");
-            // return serror(new EndOfFile(this));
-          }
-          sb.append((char) n); // ### BUG: Codepoint conversion
-          continue;
+  @Override
+  public IParseFeed newFeed(ParseCtx pctx) {
+    return new Feed(pctx);
+  }
+
+  /**
+   * Incremental parser.
+   *
+   * <p>The reader macros cannot be suspended in the middle of input, so the input is collected
+   * until a simple scanner of parentheses, strings, escapes and comments finds the end of a top
+   * level expression, then the collected text is parsed. The text is kept if it still turns out to
+   * be incomplete.
+   */
+  protected class Feed implements IParseFeed {
+    private ParseCtx pctx;
+    private final StringBuilder pending = new StringBuilder();
+    private int depth = 0;
+    private boolean inString = false;
+    private boolean inMultiEscape = false;
+    private boolean inComment = false;
+    private boolean escape = false;
+    private boolean atBoundary = true;
+
+    protected Feed(ParseCtx pctx) {
+      this.pctx = pctx;
+    }
+
+    @Override
+    public ASTNList feed(CharSequence input) {
+      pending.append(input);
+      for (int i = 0; i < input.length(); i++) {
+        track(input.charAt(i));
+      }
+      // a comment may continue in the next chunk, so it is kept pending until its end
+      if (atBoundary && depth <= 0 && !inString && !inMultiEscape && !inComment && !escape) {
+        final ParseCtx attempt = pctx.clone();
+        final ASTNList result = parse(attempt, pending.toString(), Integer.MAX_VALUE);
+        if (!hasEOFProblem(result)) {
+          pctx = attempt;
+          pending.setLength(0);
+          depth = 0;
+          return result;
         }
-        if (syntaxType == ReadTable.SYNTAX_TYPE_MULTIPLE_ESCAPE) {
-          break;
+      }
+      return new ASTNList(new ArrayList<ASTN>(), pctx.clone());
+    }
+
+    private void track(char chr) {
+      if (escape) {
+        escape = false;
+        atBoundary = false;
+      } else if (inComment) {
+        inComment = chr != '\n';
+      } else if (inString) {
+        if (rt.getSyntaxType(chr) == ReadTable.SYNTAX_TYPE_SINGLE_ESCAPE) {
+          escape = true;
+        } else {
+          inString = chr != '"';
+        }
+      } else if (inMultiEscape) {
+        if (rt.getSyntaxType(chr) == ReadTable.SYNTAX_TYPE_SINGLE_ESCAPE) {
+          escape = true;
+        } else {
+          inMultiEscape = rt.getSyntaxType(chr) != ReadTable.SYNTAX_TYPE_MULTIPLE_ESCAPE;
+        }
+      } else {
+        atBoundary = false;
+        switch (rt.getSyntaxType(chr)) {
+          case ReadTable.SYNTAX_TYPE_WHITESPACE:
+            atBoundary = true;
+            break;
+          case ReadTable.SYNTAX_TYPE_SINGLE_ESCAPE:
+            escape = true;
+            break;
+          case ReadTable.SYNTAX_TYPE_MULTIPLE_ESCAPE:
+            inMultiEscape = true;
+            break;
+          default:
+            if (chr == '"') {
+              inString = true;
+            } else if (chr == ';') {
+              inComment = true;
+              atBoundary = true;
+            } else if (chr == '(') {
+              depth++;
+            } else if (chr == ')') {
+              depth--;
+              atBoundary = depth <= 0;
+            }
         }
-        sb.append(c);
       }
-    } catch (IOException e) {
-      // return serror(new StreamError(this, e));
-      throw new ParserException("IO Error: " + e.getMessage());
     }
-    return sb.toString();
+
+    @Override
+    public boolean hasPending() {
+      return pending.length() > 0;
+    }
+
+    @Override
+    public ASTNList finish() {
+      final ASTNList result = parse(pctx, pending.toString(), Integer.MAX_VALUE);
+      pending.setLength(0);
+      depth = 0;
+      inString = false;
+      inMultiEscape = false;
+      inComment = false;
+      escape = false;
+      atBoundary = true;
+      return result;
+    }
+  }
+
+  private static boolean hasEOFProblem(ASTN astn) {
+    if (astn.getProblem() instanceof ParserEOFException) {
+      return true;
+    }
+    if (astn.isList()) {
+      for (ASTN child : (ASTNList) astn) {
+        if (hasEOFProblem(child)) {
+          return true;
+        }
+      }
+    }
+    return false;
   }
 
   @Override
@@ -0,0 +1,130 @@
+package io.opsit.explang.parser.lisp;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+/**
+ * Buffered character source of the Lisp reader with pushback of any number of characters.
+ *
+ * <p>Characters are served from an internal buffer, the reader macros use {@link #next()} and
+ * {@link #unread(int)} which do not declare IOException: I/O errors of the underlying reader are
+ * rethrown as UncheckedIOException and reported by the parser as a problem of the expression.
+ *
+ * <p>LispReader is itself a Reader, passing it instead of the underlying reader to subsequent
+ * parse calls preserves the buffered and pushed back input between the calls.
+ */
+public class LispReader extends Reader {
+  public static final int BUF_SIZE = 8192;
+  private final Reader in;
+  private char[] buf;
+  private int len;
+  private int idx = 0;
+  private char[] pushback = new char[16];
+  private int pushed = 0;
+
+  /** Make buffered reader of given reader. */
+  public LispReader(Reader in) {
+    this(in, BUF_SIZE);
+  }
+
+  /**
+   * Make reader of given reader with given buffer size.
+   *
+   * <p>Buffer size of 1 does not read ahead, rest of the input stays in the underlying reader.
+   */
+  public LispReader(Reader in, int bufSize) {
+    this.in = in;
+    this.buf = new char[bufSize];
+    this.len = 0;
+  }
+
+  /** Make reader of string. */
+  public LispReader(String str) {
+    this.in = null;
+    this.buf = str.toCharArray();
+    this.len = buf.length;
+  }
+
+  /** Return next character or -1 at the end of input. */
+  public final int next() {
+    if (pushed > 0) {
+      return pushback[--pushed];
+    }
+    if (idx == len && !fill()) {
+      return -1;
+    }
+    return buf[idx++];
+  }
+
+  /** Push back character so that it will be returned by next read. Negative values are ignored. */
+  public final void unread(int chr) {
+    if (chr < 0) {
+      return;
+    }
+    if (0 == pushed && idx > 0 && buf[idx - 1] == chr) {
+      idx--;
+      return;
+    }
+    if (pushed == pushback.length) {
+      final char[] newPushback = new char[pushback.length << 1];
+      System.arraycopy(pushback, 0, newPushback, 0, pushed);
+      pushback = newPushback;
+    }
+    pushback[pushed++] = (char) chr;
+  }
+
+  private boolean fill() {
+    if (null == in) {
+      return false;
+    }
+    try {
+      int num;
+      do {
+        num = in.read(buf, 0, buf.length);
+      } while (0 == num);
+      idx = 0;
+      len = Math.max(num, 0);
+      return num > 0;
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    try {
+      return next();
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  @Override
+  public int read(char[] cbuf, int off, int num) throws IOException {
+    int count = 0;
+    while (count < num) {
+      if (0 == pushed && idx == len && (count > 0 || !fillChecked())) {
+        break;
+      }
+      final int chr = next();
+      cbuf[off + count++] = (char) chr;
+    }
+    return (0 == count && num > 0) ? -1 : count;
+  }
+
+  private boolean fillChecked() throws IOException {
+    try {
+      return fill();
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (null != in) {
+      in.close();
+    }
+  }
+}
@@ -13,8 +13,6 @@ import io.opsit.explang.ParserEOFException;
 import io.opsit.explang.ParserException;
 import io.opsit.explang.Symbol;
 import io.opsit.explang.Utils;
-import java.io.IOException;
-import java.io.PushbackReader;
 import java.util.regex.Pattern;
 
 public class MacroFuncs {
@@ -23,7 +21,7 @@ public class MacroFuncs {
 
   public static class ReadRightParen implements IReaderMacroFunc {
 
-    public ASTN execute(char terminator, PushbackReader is, ReadTable rt, ParseCtx pctx) {
+    public ASTN execute(char terminator, LispReader is, ReadTable rt, ParseCtx pctx) {
       return new ASTNLeaf(
           terminator, pctx, new ParserException(pctx, "Too many right parentheses"));
     }
@@ -33,7 +31,7 @@ public class MacroFuncs {
     /**
      * Read list ( ...  ).
      */
-    public ASTN execute(char terminator, PushbackReader is, ReadTable rt, ParseCtx pctx) {
+    public ASTN execute(char terminator, LispReader is, ReadTable rt, ParseCtx pctx) {
       ASTNList lst = new ASTNList(Utils.list(), pctx.clone());
       while (true) {
         char c;
@@ -69,28 +67,24 @@ public class MacroFuncs {
      *  Read optional dispatch numeric argument and dispatch
      *  subcharacter and execute its function if one is defined.
      */
-    public ASTN execute(char dispChar, PushbackReader is, ReadTable rt, ParseCtx pctx) {
+    public ASTN execute(char dispChar, LispReader is, ReadTable rt, ParseCtx pctx) {
       // read optional numeric parameter
       ASTN result = null;
       int numArg = -1;
       char c;
-      try {
-        while (true) {
-          int n = doReadChar(is, pctx);
-          if (n < 0) {
-            return new ASTNLeaf(null, pctx, new ParserEOFException(pctx, UNEXPECTED_EOF_EXCEPTION));
-          }
-          c = (char) n;
-          if (c < '0' || c > '9') {
-            break;
-          }
-          if (numArg < 0) {
-            numArg = 0;
-          }
-          numArg = numArg * 10 + c - '0';
+      while (true) {
+        int n = doReadChar(is, pctx);
+        if (n < 0) {
+          return new ASTNLeaf(null, pctx, new ParserEOFException(pctx, UNEXPECTED_EOF_EXCEPTION));
+        }
+        c = (char) n;
+        if (c < '0' || c > '9') {
+          break;
         }
-      } catch (IOException e) {
-        return new ASTNLeaf(null, pctx, new ParserException(pctx, UNEXPECTED_IO_EXCEPTION, e));
+        if (numArg < 0) {
+          numArg = 0;
+        }
+        numArg = numArg * 10 + c - '0';
       }
       IDispatchMacroFunc fun;
       try {
@@ -116,9 +110,9 @@ public class MacroFuncs {
     /**
      * Read quoted expression.
      */
-    public ASTN execute(char terminator, PushbackReader is, ReadTable rt, ParseCtx pctx) {
+    public ASTN execute(char terminator, LispReader is, ReadTable rt, ParseCtx pctx) {
       ParseCtx startPCtx = pctx.clone();
-      ASTN q = new ASTNLeaf(new Symbol("QUOTE"), pctx.clone());
+      ASTN q = new ASTNLeaf(Symbol.intern("QUOTE"), pctx.clone());
       char c;
       ASTN node;
       try {
@@ -136,19 +130,14 @@ public class MacroFuncs {
    */
   public static class ReadComment implements IReaderMacroFunc {
     @Override
-    public ASTN execute(char c, PushbackReader is, ReadTable rt, ParseCtx pctx) {
+    public ASTN execute(char c, LispReader is, ReadTable rt, ParseCtx pctx) {
       StringBuilder buf = new StringBuilder(c);
-      try {
-        while (true) {
-          int n = doReadChar(is, pctx);
-          if ((n < 0) || (n == '\n')) {
-            return new ASTNLeaf(buf.toString(), pctx, true);
-          }
-          buf.append((char) n);
+      while (true) {
+        int n = doReadChar(is, pctx);
+        if ((n < 0) || (n == '\n')) {
+          return new ASTNLeaf(buf.toString(), pctx, true);
         }
-      } catch (IOException ioex) {
-        return new ASTNLeaf(
-            buf.toString(), pctx, new ParserException(pctx, UNEXPECTED_IO_EXCEPTION, ioex));
+        buf.append((char) n);
       }
     }
   }
@@ -160,75 +149,66 @@ public class MacroFuncs {
     /**
      * Read string literals.
      */
-    public ASTN execute(char terminator, PushbackReader is, ReadTable rt, ParseCtx pctx) {
+    public ASTN execute(char terminator, LispReader is, ReadTable rt, ParseCtx pctx) {
       StringBuilder sb = new StringBuilder();
-      try {
-        while (true) {
-          int n = doReadChar(is, pctx);
+      while (true) {
+        int n = doReadChar(is, pctx);
+        if (n < 0) {
+          // return error(new EndOfFile(this));
+          return new ASTNLeaf(sb.toString(), pctx, new ParserEOFException(pctx, "unclosed '\"'"));
+        }
+        char c = (char) n;
+        if (rt.getSyntaxType(c) == ReadTable.SYNTAX_TYPE_SINGLE_ESCAPE) {
+          //          // Single escape.
+          n = doReadChar(is, pctx);
           if (n < 0) {
-            // return error(new EndOfFile(this));
-            return new ASTNLeaf(sb.toString(), pctx, new ParserEOFException(pctx, "unclosed '\"'"));
-          }
-          char c = (char) n;
-          if (rt.getSyntaxType(c) == ReadTable.SYNTAX_TYPE_SINGLE_ESCAPE) {
-            //          // Single escape.
-            n = doReadChar(is, pctx);
-            if (n < 0) {
-              return new ASTNLeaf(
-                  sb.toString(), pctx, new ParserEOFException(pctx, "unclosed '\"'"));
-            }
-            // support JAVA escape characters
-            switch (n) {
-              case (int) 'b':
-                c = '\b';
-                break;
-              case (int) 't':
-                c = '\t';
-                break;
-              case (int) 'n':
-                c = '\n';
-                break;
-              case (int) 'f':
-                c = '\f';
-                break;
-              case (int) 'r':
-                c = '\r';
-                break;
-              default:
-                c = (char) n;
-            }
-            sb.append(c);
-            continue;
+            return new ASTNLeaf(
+                sb.toString(), pctx, new ParserEOFException(pctx, "unclosed '\"'"));
           }
-          if (c == terminator) {
-            break;
+          // support JAVA escape characters
+          switch (n) {
+            case (int) 'b':
+              c = '\b';
+              break;
+            case (int) 't':
+              c = '\t';
+              break;
+            case (int) 'n':
+              c = '\n';
+              break;
+            case (int) 'f':
+              c = '\f';
+              break;
+            case (int) 'r':
+              c = '\r';
+              break;
+            default:
+              c = (char) n;
           }
           sb.append(c);
+          continue;
+        }
+        if (c == terminator) {
+          break;
         }
-      } catch (java.io.IOException e) {
-        return new ASTNLeaf(
-            sb.toString(), pctx, new ParserException(pctx, UNEXPECTED_IO_EXCEPTION, e));
+        sb.append(c);
       }
       return new ASTNLeaf(sb.toString(), pctx);
     }
   }
 
-  private static char flushWhitespace(ParseCtx pctx, PushbackReader is, ReadTable rt)
+  private static char flushWhitespace(ParseCtx pctx, LispReader is, ReadTable rt)
       throws ParserException {
-    try {
-      while (true) {
-        int n = doReadChar(is, pctx);
-        if (n < 0) {
-          throw new ParserEOFException(UNEXPECTED_EOF_EXCEPTION);
-        }
+    while (true) {
+      int n = doReadChar(is, pctx);
+      if (n < 0) {
+        throw new ParserEOFException(UNEXPECTED_EOF_EXCEPTION);
+      }
 
-        char c = (char) n; // ### BUG: Codepoint conversion
-        if (!rt.isWhitespace(c)) {
-          return c;
-        }
+      char c = (char) n; // ### BUG: Codepoint conversion
+      if (!rt.isWhitespace(c)) {
+        return c;
       }
-    } catch (IOException e) {
-      throw new ParserException(pctx, "I/O exception", e);
     }
   }
 
@@ -240,43 +220,39 @@ public class MacroFuncs {
      * Read Character literal.
      */
     @Override
-    public ASTN execute(PushbackReader is, ParseCtx pctx, ReadTable rt, char quot, int numArg) {
-      try {
-        int n = doReadChar(is, pctx);
+    public ASTN execute(LispReader is, ParseCtx pctx, ReadTable rt, char quot, int numArg) {
+      int n = doReadChar(is, pctx);
+      if (n < 0) {
+        return new ASTNLeaf(null, pctx, new ParserEOFException(UNEXPECTED_EOF_EXCEPTION));
+      }
+      char c = (char) n;
+      StringBuilder sb = new StringBuilder(String.valueOf(c));
+      while (true) {
+        n = doReadChar(is, pctx);
         if (n < 0) {
-          return new ASTNLeaf(null, pctx, new ParserEOFException(UNEXPECTED_EOF_EXCEPTION));
-        }
-        char c = (char) n;
-        StringBuilder sb = new StringBuilder(String.valueOf(c));
-        while (true) {
-          n = doReadChar(is, pctx);
-          if (n < 0) {
-            break;
-          }
-          c = (char) n;
-          if (rt.isWhitespace(c)) {
-            break;
-          }
-          if (rt.getSyntaxType(c) == ReadTable.SYNTAX_TYPE_TERMINATING_MACRO) {
-            doUnreadChar(is, pctx, c);
-            break;
-          }
-          sb.append(c);
+          break;
         }
-        // if (Symbol.READ_SUPPRESS.symbolValue(thread) != NIL)
-        //    return NIL;
-        if (sb.length() == 1) {
-          return new ASTNLeaf(sb.charAt(0), pctx.clone());
+        c = (char) n;
+        if (rt.isWhitespace(c)) {
+          break;
         }
-        final String token = sb.toString();
-        try {
-          final char chr = Characters.nameToChar(token);
-          return new ASTNLeaf(chr, pctx.clone());
-        } catch (ParserException ex) {
-          return new ASTNLeaf(null, pctx, ex);
+        if (rt.getSyntaxType(c) == ReadTable.SYNTAX_TYPE_TERMINATING_MACRO) {
+          doUnreadChar(is, pctx, c);
+          break;
         }
-      } catch (IOException e) {
-        return new ASTNLeaf(null, pctx, new ParserException(pctx, UNEXPECTED_IO_EXCEPTION, e));
+        sb.append(c);
+      }
+      // if (Symbol.READ_SUPPRESS.symbolValue(thread) != NIL)
+      //    return NIL;
+      if (sb.length() == 1) {
+        return new ASTNLeaf(sb.charAt(0), pctx.clone());
+      }
+      final String token = sb.toString();
+      try {
+        final char chr = Characters.nameToChar(token);
+        return new ASTNLeaf(chr, pctx.clone());
+      } catch (ParserException ex) {
+        return new ASTNLeaf(null, pctx, ex);
       }
     }
   }
@@ -284,9 +260,9 @@ public class MacroFuncs {
 
   public static class ReadSharpQuote implements IDispatchMacroFunc {
     @Override
-    public ASTN execute(PushbackReader is, ParseCtx pctx, ReadTable rt, char quot, int numArg) {
+    public ASTN execute(LispReader is, ParseCtx pctx, ReadTable rt, char quot, int numArg) {
       final ParseCtx newPctx = pctx.clone();
-      ASTN f = new ASTNLeaf(new Symbol("FUNCTION"), newPctx);
+      ASTN f = new ASTNLeaf(Symbol.intern("FUNCTION"), newPctx);
       char c;
       try {
         c = flushWhitespace(pctx, is, rt);
@@ -300,51 +276,47 @@ public class MacroFuncs {
   
   public static class ReadSharpQMark implements IDispatchMacroFunc {
     @Override
-    public ASTN execute(PushbackReader is, ParseCtx pctx, ReadTable rt, char quot, int numArg) {
-      try {
-        int n;
-        StringBuilder sb = new StringBuilder();
-        boolean esc = false;
-        while (true) {
-          n = doReadChar(is, pctx);
-          if (n < 0) {
-            return new ASTNLeaf(null, pctx, new ParserEOFException(UNEXPECTED_EOF_EXCEPTION));
-          }
-          char c = (char) n;
-          if (c == '\\' && !esc) {
-            esc = true;
-            continue;
-          }
-          if (esc) {
-            sb.append('\\');
-            esc = false;
-          } else if (c == '"') {
-            break;
-          }
-          sb.append(c);
+    public ASTN execute(LispReader is, ParseCtx pctx, ReadTable rt, char quot, int numArg) {
+      int n;
+      StringBuilder sb = new StringBuilder();
+      boolean esc = false;
+      while (true) {
+        n = doReadChar(is, pctx);
+        if (n < 0) {
+          return new ASTNLeaf(null, pctx, new ParserEOFException(UNEXPECTED_EOF_EXCEPTION));
         }
-
-        int flags = 0;
-        while (true) {
-          n = doReadChar(is, pctx);
-          char c = (char) n;
-          int f = Utils.parseRegexpFlag(c);
-          if (0 == f) {
-            doUnreadChar(is, pctx, n);
-            break;
-          }
-          flags |= f;
+        char c = (char) n;
+        if (c == '\\' && !esc) {
+          esc = true;
+          continue;
         }
+        if (esc) {
+          sb.append('\\');
+          esc = false;
+        } else if (c == '"') {
+          break;
+        }
+        sb.append(c);
+      }
 
-        final Pattern p = (0 == flags)
-            ? Pattern.compile(sb.toString())
-            : Pattern.compile(sb.toString(), flags);
-        return new ASTNLeaf(p, pctx.clone());
-        // if (Symbol.READ_SUPPRESS.symbolValue(thread) != NIL)
-        //    return NIL;
-      } catch (IOException ioex) {
-        return new ASTNLeaf(null, pctx, new ParserException(pctx, UNEXPECTED_EOF_EXCEPTION, ioex));
+      int flags = 0;
+      while (true) {
+        n = doReadChar(is, pctx);
+        char c = (char) n;
+        int f = Utils.parseRegexpFlag(c);
+        if (0 == f) {
+          doUnreadChar(is, pctx, n);
+          break;
+        }
+        flags |= f;
       }
+
+      final Pattern p = (0 == flags)
+          ? Pattern.compile(sb.toString())
+          : Pattern.compile(sb.toString(), flags);
+      return new ASTNLeaf(p, pctx.clone());
+      // if (Symbol.READ_SUPPRESS.symbolValue(thread) != NIL)
+      //    return NIL;
       // ASTN strASTN = ((IReaderMacroFunc)LispReader.READ_STRING).execute('"',is,rt,pctx);
       // final Pattern p = Pattern.compile((String)strASTN.getObject());
       // return  new ASTN(p, pctx.clone());
@@ -354,63 +326,59 @@ public class MacroFuncs {
 
   public static class ReadSharpG implements IDispatchMacroFunc {
     @Override
-    public ASTN execute(PushbackReader is, ParseCtx pctx, ReadTable rt, char quot, int numArg) {
-      try {
-        int n;
-        StringBuilder sb = new StringBuilder();
-        boolean inq = false;
-        boolean esc = false;
-        while (true) {
-          n = doReadChar(is, pctx);
-          if (n < 0) {
-            return new ASTNLeaf(null, pctx, new ParserEOFException(UNEXPECTED_EOF_EXCEPTION));
-          }
-          char c = (char) n;
-          if (!inq) {
-            if (c == '"') {
-              inq = true;
-              continue;
-            } else {
-              return new ASTNLeaf(null,
-                                  pctx,
-                                  new ParserException(pctx,
-                                                      "Unexpected character at start definition"));
-            }
-          }
-          if (c == '\\' && !esc) {
-            esc = true;
+    public ASTN execute(LispReader is, ParseCtx pctx, ReadTable rt, char quot, int numArg) {
+      int n;
+      StringBuilder sb = new StringBuilder();
+      boolean inq = false;
+      boolean esc = false;
+      while (true) {
+        n = doReadChar(is, pctx);
+        if (n < 0) {
+          return new ASTNLeaf(null, pctx, new ParserEOFException(UNEXPECTED_EOF_EXCEPTION));
+        }
+        char c = (char) n;
+        if (!inq) {
+          if (c == '"') {
+            inq = true;
             continue;
+          } else {
+            return new ASTNLeaf(null,
+                                pctx,
+                                new ParserException(pctx,
+                                                    "Unexpected character at start definition"));
           }
-          if (esc) {
-            sb.append('\\');
-            esc = false;
-          } else if (c == '"') {
-            break;
-          }
-          sb.append(c);
         }
-
-        int flags = 0;
-        while (true) {
-          n = doReadChar(is, pctx);
-          char c = (char) n;
-          int f = Utils.parseRegexpFlag(c);
-          if (0 == f) {
-            doUnreadChar(is, pctx, n);
-            break;
-          }
-          flags |= f;
+        if (c == '\\' && !esc) {
+          esc = true;
+          continue;
+        }
+        if (esc) {
+          sb.append('\\');
+          esc = false;
+        } else if (c == '"') {
+          break;
         }
+        sb.append(c);
+      }
 
-        final Pattern p = (0 == flags)
-            ? GlobPattern.compile(sb.toString())
-            : GlobPattern.compile(sb.toString(), flags);
-        return new ASTNLeaf(p, pctx.clone());
-        // if (Symbol.READ_SUPPRESS.symbolValue(thread) != NIL)
-        //    return NIL;
-      } catch (IOException ioex) {
-        return new ASTNLeaf(null, pctx, new ParserException(pctx, UNEXPECTED_EOF_EXCEPTION, ioex));
+      int flags = 0;
+      while (true) {
+        n = doReadChar(is, pctx);
+        char c = (char) n;
+        int f = Utils.parseRegexpFlag(c);
+        if (0 == f) {
+          doUnreadChar(is, pctx, n);
+          break;
+        }
+        flags |= f;
       }
+
+      final Pattern p = (0 == flags)
+          ? GlobPattern.compile(sb.toString())
+          : GlobPattern.compile(sb.toString(), flags);
+      return new ASTNLeaf(p, pctx.clone());
+      // if (Symbol.READ_SUPPRESS.symbolValue(thread) != NIL)
+      //    return NIL;
       // ASTN strASTN = ((IReaderMacroFunc)LispReader.READ_STRING).execute('"',is,rt,pctx);
       // final Pattern p = Pattern.compile((String)strASTN.getObject());
       // return  new ASTN(p, pctx.clone());
@@ -420,7 +388,7 @@ public class MacroFuncs {
   // //and, therefore, double escapes needed to get a regexp escape
   // public static class ReadSharpQMark implements IDispatchMacroFunc {
   //        @Override
-  //        public ASTN execute(PushbackReader is,
+  //        public ASTN execute(LispReader is,
   //                ParseCtx pctx,
   //                ReadTable rt,
   //                char quot,
@@ -7,20 +7,64 @@ import java.util.HashMap;
 import java.util.Map;
 
 public class ReadTable {
+  /** Characters below this code are looked up in arrays, the rest in maps. */
+  public static final int TABLE_SIZE = 256;
+
+  /** Table of per character values. */
+  protected static class CharTable<T> {
+    private final Object[] table = new Object[TABLE_SIZE];
+    private final Map<Character, T> map = new HashMap<Character, T>();
+
+    public CharTable() {}
+
+    public CharTable(CharTable<T> src) {
+      System.arraycopy(src.table, 0, table, 0, TABLE_SIZE);
+      map.putAll(src.map);
+    }
+
+    /**
+     * Make table with content of given map.
+     *
+     * <p>Keys may be Characters or numeric character codes.
+     */
+    public CharTable(Map<?, ?> src) {
+      for (Map.Entry<?, ?> entry : src.entrySet()) {
+        @SuppressWarnings("unchecked")
+        final T val = (T) entry.getValue();
+        put(toChar(entry.getKey()), val);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    public final T get(char chr) {
+      return chr < TABLE_SIZE ? (T) table[chr] : map.get(chr);
+    }
+
+    /** Set value for a character. */
+    public final void put(char chr, T val) {
+      if (chr < TABLE_SIZE) {
+        table[chr] = val;
+      } else if (null == val) {
+        map.remove(chr);
+      } else {
+        map.put(chr, val);
+      }
+    }
+  }
 
   protected static class DispatchTable {
-    protected final Map<Character, IDispatchMacroFunc> functions;
+    protected final CharTable<IDispatchMacroFunc> functions;
 
-    public DispatchTable(Map<Character, IDispatchMacroFunc> functions) {
-      this.functions = functions;
+    public DispatchTable(Map<?, ?> functions) {
+      this.functions = new CharTable<IDispatchMacroFunc>(functions);
     }
 
     public DispatchTable() {
-      this.functions = new HashMap<Character, IDispatchMacroFunc>();
+      this.functions = new CharTable<IDispatchMacroFunc>();
     }
 
     public DispatchTable(DispatchTable dt) {
-      this.functions = new HashMap<Character, IDispatchMacroFunc>(dt.functions);
+      this.functions = new CharTable<IDispatchMacroFunc>(dt.functions);
     }
   }
 
@@ -32,34 +76,42 @@ public class ReadTable {
   public static final byte SYNTAX_TYPE_MULTIPLE_ESCAPE = 5;
 
   // default must be SYNTAX_TYPE_CONSTITUENT;
-  protected final Map<Character, Byte> syntax =
-      Utils.map(
-          '\t', SYNTAX_TYPE_WHITESPACE,
-          '\n', SYNTAX_TYPE_WHITESPACE, // linefeed
-          '\f', SYNTAX_TYPE_WHITESPACE, // form feed
-          '\r', SYNTAX_TYPE_WHITESPACE, // return
-          ' ', SYNTAX_TYPE_WHITESPACE,
-          '"', SYNTAX_TYPE_TERMINATING_MACRO,
-          '\'', SYNTAX_TYPE_TERMINATING_MACRO,
-          '(', SYNTAX_TYPE_TERMINATING_MACRO,
-          ')', SYNTAX_TYPE_TERMINATING_MACRO,
-          ',', SYNTAX_TYPE_TERMINATING_MACRO,
-          ',', SYNTAX_TYPE_TERMINATING_MACRO,
-          '`', SYNTAX_TYPE_TERMINATING_MACRO,
-          '#', SYNTAX_TYPE_NON_TERMINATING_MACRO,
-          '\\', SYNTAX_TYPE_SINGLE_ESCAPE,
-          '|', SYNTAX_TYPE_MULTIPLE_ESCAPE);
-
-  protected final Map<Character, IReaderMacroFunc> readerMacroFunctions =
-      Utils.map(
-          ';', LispParser.READ_COMMENT,
-          '"', LispParser.READ_STRING,
-          '(', LispParser.READ_LIST,
-          ')', LispParser.READ_RIGHT_PAREN,
-          '\'', LispParser.READ_QUOTE,
-          '#', LispParser.READ_DISPATCH_CHAR,
-          '`', LispParser.BACKQUOTE_MACRO,
-          ',', LispParser.COMMA_MACRO);
+  protected final byte[] syntaxTypes = new byte[TABLE_SIZE];
+  protected final Map<Character, Byte> syntax = new HashMap<Character, Byte>();
+
+  {
+    final Map<Character, Byte> init =
+        Utils.map(
+            '\t', SYNTAX_TYPE_WHITESPACE,
+            '\n', SYNTAX_TYPE_WHITESPACE, // linefeed
+            '\f', SYNTAX_TYPE_WHITESPACE, // form feed
+            '\r', SYNTAX_TYPE_WHITESPACE, // return
+            ' ', SYNTAX_TYPE_WHITESPACE,
+            '"', SYNTAX_TYPE_TERMINATING_MACRO,
+            '\'', SYNTAX_TYPE_TERMINATING_MACRO,
+            '(', SYNTAX_TYPE_TERMINATING_MACRO,
+            ')', SYNTAX_TYPE_TERMINATING_MACRO,
+            ',', SYNTAX_TYPE_TERMINATING_MACRO,
+            '`', SYNTAX_TYPE_TERMINATING_MACRO,
+            '#', SYNTAX_TYPE_NON_TERMINATING_MACRO,
+            '\\', SYNTAX_TYPE_SINGLE_ESCAPE,
+            '|', SYNTAX_TYPE_MULTIPLE_ESCAPE);
+    for (Map.Entry<Character, Byte> entry : init.entrySet()) {
+      setSyntaxType(entry.getKey(), entry.getValue());
+    }
+  }
+
+  protected final CharTable<IReaderMacroFunc> readerMacroFunctions =
+      new CharTable<IReaderMacroFunc>(
+          Utils.map(
+              ';', LispParser.READ_COMMENT,
+              '"', LispParser.READ_STRING,
+              '(', LispParser.READ_LIST,
+              ')', LispParser.READ_RIGHT_PAREN,
+              '\'', LispParser.READ_QUOTE,
+              '#', LispParser.READ_DISPATCH_CHAR,
+              '`', LispParser.BACKQUOTE_MACRO,
+              ',', LispParser.COMMA_MACRO));
 
   // BACKQUOTE-MACRO and COMMA-MACRO are defined in backquote.lisp.
   // readerMacroFunctions['`']  = Symbol.BACKQUOTE_MACRO;
@@ -69,7 +121,11 @@ public class ReadTable {
     return readerMacroFunctions.get(c);
   }
 
-  protected Map<Character, DispatchTable> dispatchTables;
+  public final void setReaderMacroFunction(char c, IReaderMacroFunc func) {
+    readerMacroFunctions.put(c, func);
+  }
+
+  protected CharTable<DispatchTable> dispatchTables;
   protected Keyword readtableCase;
 
   public ReadTable() {
@@ -130,7 +186,7 @@ public class ReadTable {
                 LispParser.SHARP_ILLEGAL, // page
                 13,
                 LispParser.SHARP_ILLEGAL)); // return
-    dispatchTables = Utils.map();
+    dispatchTables = new CharTable<DispatchTable>();
     dispatchTables.put('#', dt);
     //readtableCase = Keyword.UPCASE;
     readtableCase = Keyword.PRESERVE;
@@ -155,10 +211,24 @@ public class ReadTable {
   }
 
   public final byte getSyntaxType(char c) {
+    if (c < TABLE_SIZE) {
+      return syntaxTypes[c];
+    }
     final Byte t = syntax.get(c);
     return null == t ? SYNTAX_TYPE_CONSTITUENT : t;
   }
 
+  /** Set syntax type of a character. */
+  public final void setSyntaxType(char c, byte syntaxType) {
+    if (c < TABLE_SIZE) {
+      syntaxTypes[c] = syntaxType;
+    } else if (SYNTAX_TYPE_CONSTITUENT == syntaxType) {
+      syntax.remove(c);
+    } else {
+      syntax.put(c, syntaxType);
+    }
+  }
+
   /**
    * Return true if character belongs to the invalid character class.
    */
@@ -194,4 +264,8 @@ public class ReadTable {
       throw new ParserException(sb.toString());
     }
   }
+
+  private static char toChar(Object key) {
+    return key instanceof Character ? (Character) key : (char) ((Number) key).intValue();
+  }
 }
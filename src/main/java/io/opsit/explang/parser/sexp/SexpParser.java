@@ -6,6 +6,7 @@ import io.opsit.explang.ASTN;
 import io.opsit.explang.ASTNLeaf;
 import io.opsit.explang.ASTNList;
 import io.opsit.explang.ArgSpec;
+import io.opsit.explang.IParseFeed;
 import io.opsit.explang.IParser;
 import io.opsit.explang.OperatorDesc;
 import io.opsit.explang.ParseCtx;
@@ -20,16 +21,17 @@ import io.opsit.explang.atom.NumberParser;
 import io.opsit.explang.atom.RegexpParser;
 import io.opsit.explang.atom.SymbolParser;
 import io.opsit.explang.atom.VersionParser;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.List;
 
 // @SuppressWarnings({"serial"})
 public class SexpParser implements IParser {
   protected OperatorDesc[] operatorDescs = new OperatorDesc[] {};
+  private volatile Dispatch dispatch = null;
 
   @Override
   public ASTNList parse(ParseCtx pctx, String input) {
@@ -37,8 +39,7 @@ public class SexpParser implements IParser {
   }
 
   public ASTNList parse(ParseCtx pctx, String input, int maxExprs) {
-    final InputStream is = new ByteArrayInputStream(input.getBytes());
-    return parse(pctx, is, maxExprs);
+    return parse(pctx, new Lexer(input.toCharArray()), maxExprs);
   }
 
   public ASTNList parse(ParseCtx pctx, InputStream is, int maxExprs) {
@@ -48,101 +49,222 @@ public class SexpParser implements IParser {
 
   @Override
   public ASTNList parse(ParseCtx pctx, Reader reader, int maxExprs) {
-    final List<ASTN> sexp = list(new ASTNList(list(), pctx.clone()));
-    boolean inStr = false;
-    boolean inComment = false;
-    int depth = 0;
-    StringBuffer buf = new StringBuffer();
-    int lineStart = 0;
-    int code;
-    ParseCtx spctx = null;
-    Exception problem = null;
-    try {
-      for (int i = 0; true; i++) {
-        if (0 == depth && ((ASTNList) sexp.get(0)).size() >= maxExprs) {
-          break;
-        }
-        code = reader.read();
-        if (code < 0) {
-          break;
-        }
-        pctx.setPos(i - lineStart);
-        pctx.setOff(i);
-        char chr = (char) code;
-        if (inComment) {
-          if (chr == '\n') {
-            inComment = false;
+    // when number of expressions is limited the rest of the stream is left
+    // for subsequent calls, so the reader is read one character at a time
+    return parse(pctx, new Lexer(reader, Integer.MAX_VALUE == maxExprs), maxExprs);
+  }
+
+  private ASTNList parse(ParseCtx pctx, Lexer lexer, int maxExprs) {
+    final Scanner scanner = new Scanner(pctx, lexer);
+    scanner.scan(maxExprs);
+    return scanner.finish();
+  }
+
+  @Override
+  public IParseFeed newFeed(ParseCtx pctx) {
+    final Scanner scanner = new Scanner(pctx, new Lexer(new char[0]));
+    return new IParseFeed() {
+      @Override
+      public ASTNList feed(CharSequence input) {
+        scanner.lexer.feed(input);
+        scanner.scan(Integer.MAX_VALUE);
+        return scanner.takeForms();
+      }
+
+      @Override
+      public boolean hasPending() {
+        return scanner.hasPending();
+      }
+
+      @Override
+      public ASTNList finish() {
+        return scanner.finish();
+      }
+    };
+  }
+
+  /**
+   * State of parsing.
+   *
+   * <p>It is kept between the scan calls, so the input may be supplied in parts. Positions start
+   * after the last character recorded in the parse context, so parse calls that read a stream
+   * one expression at a time with the same context report positions from the start of the stream.
+   */
+  private final class Scanner {
+    private final ParseCtx pctx;
+    private final Lexer lexer;
+    private final List<ASTN> sexp;
+    private boolean inStr = false;
+    private boolean inComment = false;
+    private int depth = 0;
+    private int line;
+    private int lineStart;
+    // offset of the next character
+    private int count;
+    // position of the last read character
+    private int pos;
+    private int off;
+    // position of the first character of the current atom
+    private int atomLine = 0;
+    private int atomPos = 0;
+    private int atomOff = 0;
+    private Exception problem = null;
+
+    private Scanner(ParseCtx pctx, Lexer lexer) {
+      this.pctx = pctx;
+      this.lexer = lexer;
+      this.sexp = list(new ASTNList(list(), pctx.clone()));
+      this.line = pctx.getLine();
+      this.pos = pctx.getPos();
+      this.off = pctx.getOff();
+      this.count = off + 1;
+      this.lineStart = off - pos;
+    }
+
+    /** Read input until its end or until maxExprs expressions are parsed. */
+    private void scan(int maxExprs) {
+      int code;
+      try {
+        for (; true; count++) {
+          if (0 == depth && ((ASTNList) sexp.get(0)).size() >= maxExprs) {
+            break;
           }
-        } else {
-          if (chr == '"') {
-            inStr = !inStr;
-            if (buf.length() == 0) {
-              spctx = pctx.clone();
-            }
-            buf.append(chr);
-          } else if ((!inStr) && (chr == '(')) {
-            if (buf.length() > 0) {
-              addParsedAtom(sexp, buf, pctx, spctx);
-            }
-            depth++;
-            sexp.add(new ASTNList(list(), pctx.clone()));
-          } else if ((!inStr) && chr == ')') {
-            depth--;
-            if (depth < 0) {
-              sexp.add(
-                  new ASTNLeaf(
-                      null, pctx, new ParserException(pctx, "Too many right parentheses")));
-            }
-            if (buf.length() > 0) {
-              addParsedAtom(sexp, buf, pctx, spctx);
+          code = lexer.next();
+          if (code < 0) {
+            break;
+          }
+          pos = count - lineStart;
+          off = count;
+          final char chr = (char) code;
+          if (inComment) {
+            if (chr == '\n') {
+              inComment = false;
             }
-            ASTN tmp = sexp.remove(sexp.size() - 1);
-            ((ASTNList) sexp.get(sexp.size() - 1)).add(tmp);
-          } else if ((!inStr) && " \n\r\t".indexOf(chr) > -1) {
-            if (buf.length() > 0) {
-              addParsedAtom(sexp, buf, pctx, spctx);
+          } else if (inStr) {
+            if (chr == '"') {
+              inStr = false;
             }
-          } else if ((!inStr) && ';' == chr) {
-            inComment = true;
+            lexer.append();
           } else {
-            if (buf.length() == 0) {
-              spctx = pctx.clone();
+            switch (chr) {
+              case '(':
+                addAtom(true);
+                depth++;
+                sexp.add(new ASTNList(list(), mkCtx(pctx, line, pos, off)));
+                break;
+              case ')':
+                depth--;
+                if (depth < 0) {
+                  syncCtx(pctx, line, pos, off);
+                  sexp.add(
+                      new ASTNLeaf(
+                          null, pctx, new ParserException(pctx, "Too many right parentheses")));
+                }
+                addAtom(true);
+                final ASTN tmp = sexp.remove(sexp.size() - 1);
+                ((ASTNList) sexp.get(sexp.size() - 1)).add(tmp);
+                break;
+              case ' ':
+              case '\n':
+              case '\r':
+              case '\t':
+                addAtom(true);
+                break;
+              case ';':
+                inComment = true;
+                lexer.suspendAtom();
+                break;
+              default:
+                if (chr == '"') {
+                  inStr = true;
+                }
+                if (!lexer.hasAtom()) {
+                  atomLine = line;
+                  atomPos = pos;
+                  atomOff = off;
+                }
+                lexer.append();
             }
-            buf.append(chr);
+          }
+          if ('\n' == chr) {
+            line++;
+            lineStart = count + 1;
           }
         }
-        if ('\n' == chr) {
-          pctx.setLine(pctx.getLine() + 1);
-          lineStart = i + 1;
-        }
+      } catch (IOException ex) {
+        syncCtx(pctx, line, pos, off);
+        problem = new ParserException(pctx.clone(), "I/O exception", ex);
       }
-    } catch (IOException ex) {
-      problem = new ParserException(pctx.clone(), "I/O exception", ex);
     }
-    if (inStr) {
-      problem = new ParserException(pctx.clone(), "unclosed '\"'");
+
+    private void addAtom(boolean delimited) {
+      if (lexer.hasAtom()) {
+        addParsedAtom(sexp, lexer.takeAtom(delimited),
+                      new ParseCtx(pctx.input, atomLine, atomPos, atomOff, off + 1 - atomOff));
+      }
     }
-    if (depth > 0) {
-      problem = new ParserException(pctx.clone(), "unbalanced '('");
+
+    private boolean hasPending() {
+      return depth > 0 || inStr || lexer.hasAtom();
     }
-    if (buf.length() > 0) {
-      addParsedAtom(sexp, buf, pctx, spctx);
+
+    /** Remove and return the complete top level expressions. */
+    private ASTNList takeForms() {
+      final ASTNList result = (ASTNList) sexp.get(0);
+      sexp.set(0, new ASTNList(list(), pctx.clone()));
+      return result;
     }
-    ASTNList resultList = (ASTNList) sexp.get(0);
-    if (null != problem) {
-      resultList.problem = problem;
+
+    /** Finish parsing at end of input. */
+    private ASTNList finish() {
+      syncCtx(pctx, line, pos, off);
+      if (inStr) {
+        problem = new ParserException(pctx.clone(), "unclosed '\"'");
+      }
+      if (depth > 0) {
+        problem = new ParserException(pctx.clone(), "unbalanced '('");
+      }
+      addAtom(false);
+      ASTNList resultList = (ASTNList) sexp.get(0);
+      if (null != problem) {
+        resultList.problem = problem;
+      }
+      // position of the last character on the current line, -1 after a newline
+      syncCtx(pctx, line, count - 1 - lineStart, count - 1);
+      // the scanner may be fed again after finishing
+      sexp.clear();
+      sexp.add(new ASTNList(list(), pctx.clone()));
+      inStr = false;
+      inComment = false;
+      depth = 0;
+      problem = null;
+      return resultList;
     }
-    return resultList;
   }
 
-  private void addParsedAtom(List<ASTN> sexp, StringBuffer buf, ParseCtx pctx, ParseCtx spctx) {
-    ((ASTNList) sexp.get(sexp.size() - 1)).add(parseAtom(buf.toString(), spctx.clone().upto(pctx)));
-    clearBuf(buf);
+  private static ParseCtx mkCtx(ParseCtx pctx, int line, int pos, int off) {
+    final ParseCtx result = pctx.clone();
+    result.setLine(line);
+    result.setPos(pos);
+    result.setOff(off);
+    return result;
+  }
+
+  private static void syncCtx(ParseCtx pctx, int line, int pos, int off) {
+    pctx.setLine(line);
+    if (off >= 0) {
+      pctx.setPos(pos);
+      pctx.setOff(off);
+    }
+  }
+
+  private void addParsedAtom(List<ASTN> sexp, String atom, ParseCtx atomCtx) {
+    ((ASTNList) sexp.get(sexp.size() - 1)).add(parseAtom(atom, atomCtx));
   }
 
   private ASTN parseAtom(String string, ParseCtx pctx) {
     final Object[] holder = new Object[1];
-    for (AtomParser parser : atomParsers) {
+    for (AtomParser parser : getAtomParsers(string.charAt(0))) {
       try {
         if (parser.parse(string, holder, pctx)) {
           return new ASTNLeaf(holder[0], pctx);
@@ -155,6 +277,148 @@ public class SexpParser implements IParser {
         string, pctx, new ParserException(String.format("Failed to parse atom '%s'", string)));
   }
 
+  /** Return atom parsers that may accept atom starting with given character. */
+  private AtomParser[] getAtomParsers(char chr) {
+    Dispatch dispatch = this.dispatch;
+    if (null == dispatch || dispatch.parsers != atomParsers) {
+      dispatch = new Dispatch(atomParsers);
+      this.dispatch = dispatch;
+    }
+    return chr < Dispatch.SIZE ? dispatch.table[chr] : dispatch.parsers;
+  }
+
+  /** Atom parsers selected by the first character of atom. */
+  private static final class Dispatch {
+    private static final int SIZE = 128;
+    private final AtomParser[] parsers;
+    private final AtomParser[][] table = new AtomParser[SIZE][];
+
+    private Dispatch(AtomParser[] parsers) {
+      this.parsers = parsers;
+      final List<AtomParser> selected = new ArrayList<AtomParser>(parsers.length);
+      for (int chr = 0; chr < SIZE; chr++) {
+        selected.clear();
+        for (AtomParser parser : parsers) {
+          if (parser.canStartWith((char) chr)) {
+            selected.add(parser);
+          }
+        }
+        table[chr] = selected.toArray(new AtomParser[selected.size()]);
+      }
+    }
+  }
+
+  /**
+   * Buffered source of characters.
+   *
+   * <p>Text of the current atom is kept as a range of the buffer, it is copied only when the
+   * buffer is refilled or the atom is interrupted by a comment.
+   */
+  private static final class Lexer {
+    private static final int BUF_SIZE = 8192;
+    private final Reader reader;
+    private char[] buf;
+    private int len;
+    private int idx = 0;
+    private boolean hasAtom = false;
+    // start of the part of current atom that is in the buffer or -1
+    private int atomStart = -1;
+    // parts of current atom that are not in the buffer any more
+    private final StringBuilder spill = new StringBuilder();
+
+    private Lexer(char[] chars) {
+      this.reader = null;
+      this.buf = chars;
+      this.len = chars.length;
+    }
+
+    private Lexer(Reader reader, boolean readAhead) {
+      this.reader = reader;
+      this.buf = new char[readAhead ? BUF_SIZE : 1];
+      this.len = 0;
+    }
+
+    /** Return next character or -1 at the end of input. */
+    private int next() throws IOException {
+      if (idx == len && !fill()) {
+        return -1;
+      }
+      return buf[idx++];
+    }
+
+    /** Replace the consumed input with more characters. */
+    private void feed(CharSequence input) {
+      saveAtom();
+      buf = input.toString().toCharArray();
+      len = buf.length;
+      idx = 0;
+    }
+
+    // keep part of the current atom that is in the buffer before it is replaced
+    private void saveAtom() {
+      if (atomStart >= 0) {
+        spill.append(buf, atomStart, len - atomStart);
+        atomStart = 0;
+      }
+    }
+
+    private boolean fill() throws IOException {
+      if (null == reader) {
+        return false;
+      }
+      saveAtom();
+      int num;
+      do {
+        num = reader.read(buf, 0, buf.length);
+      } while (0 == num);
+      idx = 0;
+      len = Math.max(num, 0);
+      return num > 0;
+    }
+
+    private boolean hasAtom() {
+      return hasAtom;
+    }
+
+    /** Add the last read character to the current atom. */
+    private void append() {
+      if (atomStart < 0) {
+        atomStart = idx - 1;
+      }
+      hasAtom = true;
+    }
+
+    /** Save text of the current atom before characters that do not belong to it. */
+    private void suspendAtom() {
+      if (atomStart >= 0) {
+        spill.append(buf, atomStart, idx - 1 - atomStart);
+        atomStart = -1;
+      }
+    }
+
+    /**
+     * Return text of the current atom and start new one.
+     *
+     * @param delimited true if the last read character is not part of the atom
+     */
+    private String takeAtom(boolean delimited) {
+      final int end = delimited ? idx - 1 : idx;
+      final String result;
+      if (spill.length() == 0) {
+        result = new String(buf, atomStart, end - atomStart);
+      } else {
+        if (atomStart >= 0) {
+          spill.append(buf, atomStart, end - atomStart);
+        }
+        result = spill.toString();
+        spill.setLength(0);
+      }
+      atomStart = -1;
+      hasAtom = false;
+      return result;
+    }
+  }
+
   protected AtomParser[] atomParsers =
       new AtomParser[] {
         new NullParser(),
@@ -0,0 +1,62 @@
+package io.opsit.explang;
+
+import java.util.Iterator;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ArrayMapTest {
+  @Test
+  public void testPutGetRemove() {
+    Map<String, Object> m = new ArrayMap<Object>();
+    Assert.assertEquals(0, m.size());
+    Assert.assertNull(m.put("a", 1));
+    Assert.assertNull(m.put("b", null));
+    Assert.assertEquals(1, m.put("a", 2));
+    Assert.assertEquals(2, m.size());
+    Assert.assertEquals(2, m.get("a"));
+    Assert.assertTrue(m.containsKey("b"));
+    Assert.assertNull(m.get("b"));
+    Assert.assertFalse(m.containsKey("c"));
+    Assert.assertEquals(2, m.remove("a"));
+    Assert.assertFalse(m.containsKey("a"));
+    Assert.assertEquals("{b=null}", m.toString());
+  }
+
+  @Test
+  public void testGrowBeyondFlat() {
+    Map<String, Object> m = new ArrayMap<Object>();
+    for (int i = 0; i < ArrayMap.MAX_FLAT * 2; i++) {
+      m.put("k" + i, i);
+    }
+    Assert.assertEquals(ArrayMap.MAX_FLAT * 2, m.size());
+    for (int i = 0; i < ArrayMap.MAX_FLAT * 2; i++) {
+      Assert.assertEquals(i, m.get("k" + i));
+    }
+    m.clear();
+    Assert.assertEquals(0, m.size());
+    m.put("x", 1);
+    Assert.assertEquals(1, m.get("x"));
+  }
+
+  @Test
+  public void testEntryIterator() {
+    Map<String, Object> m = new ArrayMap<Object>();
+    m.put("a", 1);
+    m.put("b", 2);
+    m.put("c", 3);
+    Iterator<Map.Entry<String, Object>> iter = m.entrySet().iterator();
+    while (iter.hasNext()) {
+      Map.Entry<String, Object> entry = iter.next();
+      if ("b".equals(entry.getKey())) {
+        iter.remove();
+      } else {
+        entry.setValue(10);
+      }
+    }
+    Assert.assertEquals(2, m.size());
+    Assert.assertEquals(10, m.get("a"));
+    Assert.assertEquals(10, m.get("c"));
+    Assert.assertFalse(m.containsKey("b"));
+  }
+}
@@ -0,0 +1,81 @@
+package io.opsit.explang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.opsit.explang.parser.sexp.SexpParser;
+import org.junit.Test;
+
+public class BacktraceTest {
+  @Test
+  public void frames_are_built_from_nodes() throws Exception {
+    final Backtrace bt = new Backtrace();
+    final Funcs.ADDOP add = new Funcs.ADDOP();
+    add.setName("+");
+    final ParseCtx pctx = new ParseCtx("test", 1, 2, 3, 4);
+    add.setDebugInfo(pctx);
+    assertTrue(bt.push(add, null));
+    assertTrue(bt.push(new Funcs.NumberExp(1), null));
+    assertEquals(2, bt.getFrames().size());
+    bt.pop();
+    assertEquals("+", bt.last().frameName);
+    assertEquals(pctx, bt.last().pctx);
+    assertEquals("+", bt.pop().frameName);
+    assertNull(bt.last());
+  }
+
+  @Test
+  public void calls_only_mode_skips_leaves() throws Exception {
+    final Backtrace bt = new Backtrace(true);
+    assertTrue(bt.push(new Funcs.ADDOP(), null));
+    assertFalse(bt.push(new Funcs.NumberExp(1), null));
+    assertFalse(bt.push(new Funcs.VarExp("a"), null));
+    assertEquals(1, bt.getFrames().size());
+  }
+
+  @Test
+  public void copy_keeps_frames_after_pop() throws Exception {
+    final Backtrace bt = new Backtrace();
+    for (int i = 0; i < 200; i++) {
+      bt.push("f" + i, null, null);
+    }
+    final Backtrace copy = bt.copy();
+    for (int i = 0; i < 200; i++) {
+      bt.pop();
+    }
+    assertEquals(0, bt.getFrames().size());
+    assertEquals(200, copy.getFrames().size());
+    assertEquals("f199", copy.last().frameName);
+  }
+
+  @Test
+  public void wrapper_has_no_stack_trace() throws Exception {
+    final Backtrace bt = new Backtrace();
+    bt.push("f", null, null);
+    final Exception cause = new NumberFormatException("bad number");
+    final ExecutionException ex = ExecutionException.wrap(bt, cause);
+    assertEquals(cause.toString(), ex.getMessage());
+    assertEquals(cause, ex.getCause());
+    assertEquals(0, ex.getStackTrace().length);
+    bt.pop();
+    assertEquals("f", ex.getBacktrace().last().frameName);
+  }
+
+  @Test
+  public void stackless_throw() throws Exception {
+    final Compiler compiler = new Compiler();
+    compiler.setStacklessThrow(true);
+    final ASTN expr = new SexpParser().parse(new ParseCtx("test"), "(THROW \"oops\")").get(0);
+    try {
+      compiler.compile(expr).evaluate(compiler.newBacktrace(), compiler.newCtx());
+      fail("exception expected");
+    } catch (ExecutionException ex) {
+      assertEquals("oops", ex.getMessage());
+      assertEquals(0, ex.getStackTrace().length);
+      assertEquals("THROW", ex.getBacktrace().last().frameName);
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package io.opsit.explang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import io.opsit.explang.parser.sexp.SexpParser;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class ClassBackendTest {
+  private static final String DEFS =
+      "(DEFUN bsq (x) (* x x))"
+      + "(DEFUN bsign (x) (COND ((< x 0) -1) ((> x 0) 1) (TRUE 0)))"
+      + "(DEFUN bpoly (x) (LET ((a (* x x)) (b (+ x 1))) (IF (> a b) (- a b) (+ a b))))"
+      + "(DEFUN bwhen (x) (WHEN (> x 2) (SETQ x (* x 10)) (+ x 1)))"
+      + "(DEFUN bsetq (x) (PROGN (SETQ x (+ x 1)) (SETQ x (* x 2)) x))"
+      + "(DEFUN bdyn (x) (+ x bvar))"
+      + "(DEFUN bcalldyn (bvar) (bdyn 1))"
+      + "(DEFUN bfib (n) (IF (< n 2) n (+ (bfib (- n 1)) (bfib (- n 2)))))"
+      + "(DEFUN bopt (x &OPTIONAL (y 5)) (+ x y))"
+      + "(DEFUN bcallopt (x) (bopt (bsq x)))"
+      + "(DEFUN bret (x) (WHEN (> x 0) (RETURN 1)) 2)"
+      + "(DEFUN bloop (n acc) (IF (<= n 0) acc (bloop (- n 1) (+ acc n))))"
+      + "(DEFUN bdiv (x) (bsq (/ 1 x)))"
+      + "(DEFUN bstr (x) \"doc\" (GET (LIST x (bsq x)) 1))";
+
+  private Object eval(Compiler compiler, String code, Compiler.ICtx ctx) {
+    final ASTNList exprs = new SexpParser().parse(new ParseCtx("test"), code, Integer.MAX_VALUE);
+    Object result = null;
+    for (ASTN exprASTN : exprs) {
+      final ICompiled expr = compiler.compile(exprASTN);
+      result = expr.evaluate(compiler.newBacktrace(), ctx);
+    }
+    return result;
+  }
+
+  private Compiler newCompiler(boolean bytecodeBackend) {
+    final Compiler compiler = new Compiler();
+    compiler.setBytecodeBackend(bytecodeBackend);
+    return compiler;
+  }
+
+  private void check(String code) {
+    final Compiler interpreter = newCompiler(false);
+    final Compiler.ICtx interpreterCtx = interpreter.newCtx();
+    eval(interpreter, DEFS, interpreterCtx);
+    final Compiler compiler = newCompiler(true);
+    final Compiler.ICtx ctx = compiler.newCtx();
+    eval(compiler, DEFS, ctx);
+    final Object expected = eval(interpreter, code, interpreterCtx);
+    for (int i = 0; i < 3; i++) {
+      assertEquals(code, expected, eval(compiler, code, ctx));
+    }
+  }
+
+  private List<String> frames(Compiler compiler, String code) {
+    final Compiler.ICtx ctx = compiler.newCtx();
+    eval(compiler, DEFS, ctx);
+    ExecutionException error = null;
+    try {
+      eval(compiler, code, ctx);
+    } catch (ExecutionException ex) {
+      error = ex;
+    }
+    assertNotNull(error);
+    final List<String> result = new ArrayList<String>();
+    for (Backtrace.Frame frame : error.getBacktrace().getFrames()) {
+      result.add(frame.toStringShort());
+    }
+    return result;
+  }
+
+  @Test
+  public void function_body_is_compiled_to_class() throws Exception {
+    final Compiler compiler = newCompiler(true);
+    eval(compiler, DEFS, compiler.newCtx());
+    for (String name : new String[] {"bsq", "bpoly", "bfib", "bstr"}) {
+      final Compiler.LAMBDA form = ((Compiler.LAMBDA.FunctionCode) compiler.getFun(name)).getForm();
+      assertEquals(1, form.body.length);
+      assertTrue(name, form.body[0] instanceof ClassBackend.Body);
+    }
+  }
+
+  @Test
+  public void results_match_interpreter() throws Exception {
+    check("(bsq 7)");
+    check("(LIST (bsign -3) (bsign 0) (bsign 2.5))");
+    check("(LIST (bpoly 0) (bpoly 1) (bpoly 5))");
+    check("(LIST (bwhen 1) (bwhen 3))");
+    check("(bsetq 4)");
+    check("(bcalldyn 41)");
+    check("(bfib 15)");
+    check("(LIST (bcallopt 3) (bopt 1 2))");
+    check("(LIST (bret 1) (bret 0))");
+    check("(bloop 100000 0)");
+    check("(bstr 6)");
+  }
+
+  @Test
+  public void error_backtrace_matches_interpreter() throws Exception {
+    final List<String> expected = frames(newCompiler(false), "(bdiv 0)");
+    assertTrue(expected.size() > 1);
+    assertEquals(expected, frames(newCompiler(true), "(bdiv 0)"));
+  }
+}
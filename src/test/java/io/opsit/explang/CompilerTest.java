@@ -233,6 +233,175 @@ public class CompilerTest extends AbstractTest {
           // object identity
           {"(=== 12345678 12345678)", false, false, null, null, p},
           {"(LET ((A 1) (B A)) (=== A B))", true, true, null, null, p},
+          // lexically addressed variables
+          {"(LET ((a 1)) (LET ((a 2) (b a)) (LIST a b)))", list(2, 2), true, null, null, p},
+          {"(LET ((a 1)) (LIST (LET ((a 2)) a) a))", list(2, 1), true, null, null, p},
+          {"(PROGN (DEFUN docf (x) \"Doc\" 1 x) (docf 5))", 5, true, null, null, p},
+          {"(PROGN (DEFUN docf () \"Doc\") (docf))", "Doc", true, null, null, p},
+          {
+            "(PROGN (DEFUN hotf (x) \"Doc\" (+ x 1))"
+                + " (LET ((s 0)) (FOREACH (i (RANGE 0 300)) (SETV s (hotf s))) s))",
+            300,
+            true,
+            null,
+            null,
+            p
+          },
+          // calls of pure functions with constant arguments
+          {"(* 60 60 24)", 86400, true, null, null, p},
+          {"(+ (* 2 3) (- 10 (/ 8 2)))", 12, true, null, null, p},
+          {"(LET ((x 2)) (+ x (* 3 4)))", 14, true, null, null, p},
+          {"(TRY (/ 1 0) (CATCH java.lang.ArithmeticException ex 1))", 1, true, null, null, p},
+          // arithmetics on variables
+          {"(LET ((a 5) (b 3)) (LIST (+ a b) (- a b) (* a b) (/ a b)))", list(8, 2, 15, 1),
+           true, null, null, p},
+          {"(LET ((a 1.5)) (LIST (- a) (/ a) (+ a 1.0 a)))", list(-1.5, 2.0 / 3.0, 4.0),
+           true, null, null, p},
+          {"(LET ((a 1) (b 2.5)) (+ a b))", 3.5, true, null, null, p},
+          {"(LET ((a 7) (b 2) (c 2.0)) (/ a b c))", 1.5, true, null, null, p},
+          {"(LET ((a -2000000000) (b 2000000000)) (< a b))", true, true, null, null, p},
+          {"(LET ((a 3) (b 2) (c 1)) (LIST (> a b c) (< a b c) (= a a a)))",
+           list(true, false, true), true, null, null, p},
+          {"(LET ((a 3) (b 1)) (LIST (MAX a b) (MIN a b)))", list(3, 1), true, null, null, p},
+          // global variables read from nested contexts
+          {
+            "(PROGN (SETQ gdepth 3) (DEFUN gdeep (n) (IF (<= n 0) gdepth (gdeep (- n 1))))"
+                + " (gdeep 1000))",
+            3,
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(PROGN (SETQ gdl 1) (DEFUN gdr () gdl) (LIST (gdr) (DLET (gdl) (LIST 2) (gdr))))",
+            list(1, 2),
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(PROGN (DEFUN gsv () gsvv) (DEFUN gset () (SETV gsvv 7) (gsv)) (gset))",
+            7,
+            true,
+            null,
+            null,
+            p
+          },
+          // free variables of lambdas
+          {"(LET ((k 10)) (MAP (LAMBDA (x) (+ x k)) (LIST 1 2 3)))", list(11, 12, 13),
+           true, null, null, p},
+          {
+            "(PROGN (LET ((fvh 0)) fvh) (SETQ fvh 1) (DEFUN fvr () fvh)"
+                + " (FUNCALL (LAMBDA () (LIST (fvr) (PROGN (SETL fvh 2) (fvr))))))",
+            list(1, 2),
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(PROGN (SETQ fvp 1) (LET ((a (MAP (LAMBDA (x) fvp) (LIST 1))) (fvp 2))"
+                + " (LIST a (MAP (LAMBDA (x) fvp) (LIST 1)))))",
+            list(list(1), list(2)),
+            true,
+            null,
+            null,
+            p
+          },
+          // calls from tail position
+          {
+            "(PROGN (DEFUN tcnt (n acc) (IF (<= n 0) acc (tcnt (- n 1) (+ acc 1))))"
+                + " (tcnt 100000 0))",
+            100000,
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(PROGN (DEFUN tev (n) (COND ((= n 0) true) (true (tod (- n 1)))))"
+                + " (DEFUN tod (n) (WHEN (> n 0) (LET ((m (- n 1))) (tev m))))"
+                + " (LIST (tev 50001) (tod 50001)))",
+            list(null, true),
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(PROGN (DEFUN tdyn () (+ tlv 1)) (DEFUN tcaller () (LET ((tlv 41)) (tdyn)))"
+                + " (tcaller))",
+            42,
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(PROGN (DEFUN tlet (n) (IF (= n 0) tlv (LET ((tlv n)) (tlet (- n 1)))))"
+                + " (tlet 3))",
+            1,
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(PROGN (DEFUN redf () 1) (DEFUN callf () (redf))"
+                + " (LIST (callf) (PROGN (DEFUN redf () 2) (callf))))",
+            list(1, 2),
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(PROGN (DEFUN fsf () 1) (DEFUN fsc () (fsf))"
+                + " (LIST (fsc) (PROGN (FSET (QUOTE fsf) (LAMBDA () 2)) (fsc))))",
+            list(1, 2),
+            true,
+            null,
+            null,
+            p
+          },
+          {"(LET ((a 1)) (LET ((b 2)) (SETL a 3) (LIST a b)))", list(3, 2), true, null, null, p},
+          {"(LET ((a 1)) (LET ((b 2)) (MAKUNBOUND (QUOTE b)) (BOUNDP (QUOTE b))))",
+           false, false, null, null, p},
+          {"(LET ((a 1)) (FOREACH (a (LIST 2 3)) a) a)", 1, true, null, null, p},
+          {
+            "(LET ((f (LAMBDA (x) (LET ((y (* x 2))) (+ x y))))) (FUNCALL f 2))",
+            6,
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(LET ((f (LAMBDA (x) (+ x y))) (y 1)) (LET ((y 10)) (FUNCALL f 2)))",
+            12,
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(PROGN (DEFUN lexf (x) (LET ((x (+ x 1))) (SETV x (* x 2)) x)) (lexf 1))",
+            4,
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(LET ((x 2)) (AS-> (+ 1 x) x (* 10 x) (LET ((y x)) (+ x y))))",
+            60,
+            true,
+            null,
+            null,
+            p
+          },
           {"(=== NIL  NIL)", true, true, null, null, p},
           // java equal
           {"(EQUAL 1 1)", true, true, null, null, p},
@@ -806,6 +975,16 @@ public class CompilerTest extends AbstractTest {
             null,
             p
           },
+          {
+            "(PROGN "
+                + " (DEFUN TESTRET3 (x) (IF (> x 0) (RETURN (* x 2)) (LET ((y x)) (RETURN y)))) "
+                + " (LIST (TESTRET3 2) (TESTRET3 -1) (FUNCALL (LAMBDA () (RETURN 7)))))",
+            list(4, -1, 7),
+            true,
+            null,
+            null,
+            p
+          },
           {
             "(PROGN "
                  + "(DEFUN TESTRET (x) "
@@ -1884,6 +2063,18 @@ public class CompilerTest extends AbstractTest {
             null,
             p
           },
+          {"(MAX 3)", 3, true, null, null, p},
+          {"(MAX 3 9)", 9, true, null, null, p},
+          {"(MIN 3 9.5 1)", 1, true, null, null, p},
+          {"(MAX 2.5 9.5 1.5)", 9.5, true, null, null, p},
+          {"(MIN 3 (LONG 1))", 1L, true, null, null, p},
+          {"(+ 2 (LONG 3))", 5L, true, null, null, p},
+          {"(* 2 3 4)", 24, true, null, null, p},
+          {"(- 2.5 1.0 0.5)", 1.0, true, null, null, p},
+          {"(- 2 1.5)", 0.5, true, null, null, p},
+          {"(/ 4.0)", 0.25, true, null, null, p},
+          {"(> 3 2.5 1)", true, true, null, null, p},
+          {"(= 2 (LONG 2))", true, true, null, null, p},
 
           // FFI
           // medhod w/o parameters
@@ -2097,6 +2288,34 @@ public class CompilerTest extends AbstractTest {
           {"(APPLY (FUNCTION +) 1 (LIST 2 3 4))", 10, true, null, null, p},
           {"(APPLY (FUNCTION +) (LIST 1 2 3 4))", 10, true, null, null, p},
           {"(APPLY (FUNCTION +) )", 0, false, null, null, p},
+          {
+            "(MAP (LAMBDA (f) (FUNCALL f 2 3)) (LIST (FUNCTION +) (FUNCTION *) (FUNCTION +)))",
+            list(5, 6, 5),
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(REDUCE (FUNCTION +) (MAP (FUNCTION *) (RANGE 0 20) (RANGE 0 20)))",
+            2470,
+            true,
+            null,
+            null,
+            p
+          },
+          {"(FILTER (LAMBDA (x) (> x 2)) (LIST 1 5 2 3))", list(5, 3), true, null, null, p},
+          {"(APPLY (LAMBDA (&OPTIONAL (a 1) b) (LIST a b)) ())", list(1, null), true, null, null, p},
+          {
+            "(PROGN (DEFUN kwf (x &KEY (a 1) (b 2)) (LIST x a b))"
+                + " (LIST (APPLY (FUNCTION kwf) 0 :b 3 ()) (APPLY (FUNCTION kwf) 5 :a 4 :b 6 ())"
+                + " (APPLY (FUNCTION kwf) 7 :b 8 ()) (APPLY (FUNCTION kwf) 9 ())))",
+            list(list(0, 1, 3), list(5, 4, 6), list(7, 1, 8), list(9, 1, 2)),
+            true,
+            null,
+            null,
+            p
+          },
           {"(FUNCALL (SYMBOL-FUNCTION \"+\") 1 2 3)", 6, true, null, null, p},
           {"(APPLY (SYMBOL-FUNCTION \"+\") 1 2 3 4)", 10, true, null, null, p},
           {
@@ -2582,6 +2801,91 @@ public class CompilerTest extends AbstractTest {
             null,
             p
           },
+          {
+            "(PROGN (SETQ wbg 5) (SETQ wbh 6) (DEFUN wbf () (LIST wba wbb wbg wbh))"
+                + " (WITH-BINDINGS (HASHMAP \"wba\" 1 \"wbg\" 0)"
+                + " (WITH-BINDINGS (HASHMAP \"wbb\" 2) (LIST (wbf) (wbf)))))",
+            list(list(1, 2, 0, 6), list(1, 2, 0, 6)),
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(LET ((m (HASHMAP \"wbv\" 1))) (WITH-BINDINGS m (SETV wbv 2) (SETV wbn 3))"
+                + " (LIST (GET m \"wbv\") (GET m \"wbn\")))",
+            list(2, 3),
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(PROGN (SETV wbm (HASHMAP)) (SETV wbx 1)"
+                + " (WITH-BINDINGS wbm (PUT! wbm \"wbx\" 5) wbx))",
+            5,
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(PROGN (SETV wbm (HASHMAP)) (SETV wbx 1) (DEFUN wbr () wbx)"
+                + " (WITH-BINDINGS wbm (LIST (wbr) (PROGN (PUT! wbm \"wbx\" 5) (wbr)))))",
+            list(1, 5),
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(PROGN (SETV wbm (HASHMAP)) (SETV wbx 1)"
+                + " (WITH-BINDINGS wbm"
+                + " (MAP (LAMBDA (i) (LET ((r wbx)) (PUT! wbm \"wbx\" 5) r)) (LIST 0 1 2))))",
+            list(1, 5, 5),
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(PROGN (SETV wbo (HASHMAP)) (SETV wbx 1)"
+                + " (WITH-BINDINGS wbo (WITH-BINDINGS (HASHMAP \"wbi\" 0)"
+                + " (LIST wbx (PROGN (PUT! wbo \"wbx\" 7) wbx)))))",
+            list(1, 7),
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(PROGN (DEFUN wbs (wbq) (WITH-BINDINGS (HASHMAP \"wbz\" 2) (LIST wbq wbz)))"
+                + " (WITH-BINDINGS (HASHMAP \"wbq\" 1 \"wbz\" 0) (LIST wbq (wbs 5) wbz)))",
+            list(1, list(5, 2), 0),
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(PROGN (SETV dlr 0)"
+                + " (DLET (dla) (LIST 1) (LIST dlr (DLET (dlr) (LIST 5) (LIST dla dlr)) dlr)))",
+            list(0, list(1, 5), 0),
+            true,
+            null,
+            null,
+            p
+          },
+          {
+            "(PROGN (DEFUN wbtf () (SETV wbtr wbt)) (SETV wbtr ())"
+                + " (LET ((th (WITH-BINDINGS (HASHMAP \"wbt\" 3) (NEW-THREAD (FUNCTION wbtf)))))"
+                + " (. th \"start()\") (. th \"join()\") wbtr))",
+            3,
+            true,
+            null,
+            null,
+            p
+          },
           {
             "(WITH-BINDINGS (BEAN testbean) (LIST name surName age accepted children))",
             list(
@@ -2711,6 +3015,14 @@ public class CompilerTest extends AbstractTest {
             null,
             p
           },
+          {
+            "(LET ((r 0)) (LIST ((LAMBDA (&LAZY x) (LIST x x)) (SETV r (+ r 1))) r))",
+            list(list(1, 1), 1),
+            true,
+            null,
+            null,
+            p
+          },
           {
             "(PROGN (DEFUN LKA (&LAZY &KEY a b c) (IF a (IF b (IF c c false) false) false))  (LET"
                 + " ((d 0)) (LKA :a (+ 1 d) :b (NOT (= d 0)) :c (/ 1 d))))",
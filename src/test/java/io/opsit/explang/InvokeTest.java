@@ -0,0 +1,59 @@
+package io.opsit.explang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.opsit.explang.parser.sexp.SexpParser;
+import org.junit.Test;
+
+public class InvokeTest {
+  private Object eval(Compiler compiler, String code) {
+    final ASTNList exprs = new SexpParser().parse(new ParseCtx("test"), code, Integer.MAX_VALUE);
+    final Compiler.ICtx ctx = compiler.newCtx();
+    Object result = null;
+    for (ASTN exprASTN : exprs) {
+      result = compiler.compile(exprASTN).evaluate(compiler.newBacktrace(), ctx);
+    }
+    return result;
+  }
+
+  @Test
+  public void error_names_calling_function() throws Exception {
+    try {
+      eval(new Compiler(), "(APPLY (LAMBDA (x) x) 1 2 ())");
+      fail("expected exception");
+    } catch (ExecutionException ex) {
+      final String msg = ex.getCause().getMessage();
+      assertTrue(msg, msg.startsWith("APPLY: called function at test:"));
+      assertTrue(
+          msg,
+          msg.endsWith(
+              ": does not take provided parameters: invalid parameters: Too many arguments given"));
+    }
+  }
+
+  @Test
+  public void keyword_errors_report_values() throws Exception {
+    try {
+      eval(new Compiler(), "(APPLY (LAMBDA (&KEY a) a) 1 2 ())");
+      fail("expected exception");
+    } catch (ExecutionException ex) {
+      final String msg = ex.getCause().getMessage();
+      assertTrue(msg, msg.startsWith("APPLY: called function at test:"));
+      assertTrue(msg, msg.endsWith("Keyword parameter name must start with ':', but got 1"));
+    }
+  }
+
+  @Test
+  public void keyword_calls_of_same_shape_reuse_instance() throws Exception {
+    final Compiler compiler = new Compiler();
+    assertEquals(
+        Utils.list(Utils.list(1, 3), Utils.list(2, 4), Utils.list(5, 0)),
+        eval(
+            compiler,
+            "(DEFUN kws (x &KEY (a 0)) (LIST x a))"
+                + " (MAP (LAMBDA (v w) (APPLY (FUNCTION kws) v :a w ())) (LIST 1 2) (LIST 3 4))"
+                + " (LIST (kws 1 :a 3) (kws 2 :a 4) (kws 5))"));
+  }
+}
@@ -0,0 +1,51 @@
+package io.opsit.explang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.opsit.explang.parser.lisp.LispParser;
+import io.opsit.explang.parser.sexp.SexpParser;
+import org.junit.Test;
+
+public class LoadPosTest {
+  static final String LOAD_FILE = "./src/test/resources/io/opsit/explang/loadpostest.lsp";
+
+  /** Load the file and return parse context of the failed variable reference. */
+  private ParseCtx failedRefPos(IParser parser) {
+    final Compiler compiler = new Compiler(Compiler.getAllPackages());
+    compiler.setParser(parser);
+    final ASTNList exprs =
+        parser.parse(new ParseCtx("test"), "(LOAD \"" + LOAD_FILE + "\")", Integer.MAX_VALUE);
+    try {
+      compiler.compile(exprs.get(0)).evaluate(compiler.newBacktrace(), compiler.newCtx());
+    } catch (ExecutionException ex) {
+      for (Backtrace.Frame frame : ex.getBacktrace().getFrames()) {
+        if ("lpc".equals(frame.frameName)) {
+          return frame.pctx;
+        }
+      }
+      fail("no frame of variable reference in backtrace: " + ex.getBacktrace());
+    }
+    fail("loaded code did not fail");
+    return null;
+  }
+
+  @Test
+  public void sexp_positions_continue_between_forms() throws Exception {
+    final ParseCtx pctx = failedRefPos(new SexpParser());
+    assertEquals(2, pctx.getLine());
+    assertEquals(30, pctx.getPos());
+    assertEquals(97, pctx.getOff());
+  }
+
+  @Test
+  public void lisp_positions_continue_between_forms() throws Exception {
+    final ParseCtx pctx = failedRefPos(new LispParser());
+    assertNotNull(pctx);
+    // positions of the lisp parser nodes refer to the end of the form
+    assertEquals(2, pctx.getLine());
+    assertTrue(pctx.getOff() >= 97);
+  }
+}
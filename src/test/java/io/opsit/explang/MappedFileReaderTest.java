@@ -0,0 +1,51 @@
+package io.opsit.explang;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MappedFileReaderTest {
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private String readAll(Reader reader) throws IOException {
+    final StringBuilder buf = new StringBuilder();
+    final char[] chars = new char[5];
+    int num;
+    while ((num = reader.read(chars, 0, chars.length)) >= 0) {
+      buf.append(chars, 0, num);
+    }
+    reader.close();
+    return buf.toString();
+  }
+
+  private File mkFile(String content) throws IOException {
+    final File file = File.createTempFile("mapped", ".lsp");
+    file.deleteOnExit();
+    final FileOutputStream os = new FileOutputStream(file);
+    try {
+      os.write(content.getBytes(UTF8));
+    } finally {
+      os.close();
+    }
+    return file;
+  }
+
+  @Test
+  public void testReadAcrossWindows() throws IOException {
+    final String content = "(print \"Жé€ 😀\")\n(+ 1 2)\n";
+    final File file = mkFile(content);
+    for (int window = 1; window < 12; window++) {
+      Assert.assertEquals(content, readAll(new MappedFileReader(file, UTF8, window)));
+    }
+    Assert.assertEquals(content, readAll(new MappedFileReader(file, UTF8)));
+  }
+
+  @Test
+  public void testEmptyFile() throws IOException {
+    Assert.assertEquals("", readAll(new MappedFileReader(mkFile(""), UTF8)));
+  }
+}
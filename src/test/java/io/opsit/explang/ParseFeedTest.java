@@ -0,0 +1,105 @@
+package io.opsit.explang;
+
+import io.opsit.explang.parser.lisp.LispParser;
+import io.opsit.explang.parser.sexp.SexpParser;
+import java.io.Reader;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParseFeedTest {
+  /** Parser that uses the default feed implementation. */
+  protected static class ReparsingParser implements IParser {
+    private final SexpParser parser = new SexpParser();
+
+    @Override
+    public ASTNList parse(ParseCtx pctx, Reader reader, int maxExprs) {
+      return parser.parse(pctx, reader, maxExprs);
+    }
+
+    @Override
+    public ASTNList parse(ParseCtx pctx, String input) {
+      return parser.parse(pctx, input);
+    }
+
+    @Override
+    public ASTNList parse(ParseCtx pctx, String input, int maxExprs) {
+      return parser.parse(pctx, input, maxExprs);
+    }
+
+    @Override
+    public boolean supportREPLStream() {
+      return parser.supportREPLStream();
+    }
+
+    @Override
+    public String formatArgSpec(ArgSpec spec) {
+      return parser.formatArgSpec(spec);
+    }
+
+    @Override
+    public OperatorDesc[] getOperatorDescs() {
+      return parser.getOperatorDescs();
+    }
+  }
+
+  protected void checkFeed(IParser parser) {
+    IParseFeed feed = parser.newFeed(new ParseCtx("test"));
+    ASTNList exprs = feed.feed("(foo \"a (\n");
+    Assert.assertTrue(exprs.isEmpty());
+    Assert.assertTrue(feed.hasPending());
+    exprs = feed.feed("b\" (bar\n");
+    Assert.assertTrue(exprs.isEmpty());
+    exprs = feed.feed(" 1)) baz\n");
+    Assert.assertFalse(exprs.hasProblems());
+    Assert.assertEquals(2, exprs.size());
+    Assert.assertEquals(Symbol.intern("foo"), ((ASTNList) exprs.get(0)).get(0).getObject());
+    Assert.assertEquals("a (\nb", ((ASTNList) exprs.get(0)).get(1).getObject());
+    Assert.assertEquals(Symbol.intern("baz"), exprs.get(1).getObject());
+    Assert.assertFalse(feed.hasPending());
+
+    exprs = feed.feed("(qux");
+    Assert.assertTrue(exprs.isEmpty());
+    Assert.assertTrue(feed.hasPending());
+    exprs = feed.finish();
+    Assert.assertTrue(exprs.hasProblems());
+    Assert.assertFalse(feed.hasPending());
+  }
+
+  protected void checkCommentFeed(IParser parser) {
+    IParseFeed feed = parser.newFeed(new ParseCtx("test"));
+    ASTNList exprs = feed.feed(";co");
+    Assert.assertTrue(exprs.isEmpty());
+    exprs = feed.feed("mm (x\n");
+    Assert.assertTrue(exprs.isEmpty());
+    exprs = feed.feed("(a)\n");
+    Assert.assertFalse(exprs.hasProblems());
+    Assert.assertEquals(1, exprs.size());
+    Assert.assertEquals(Symbol.intern("a"), ((ASTNList) exprs.get(0)).get(0).getObject());
+    Assert.assertFalse(feed.hasPending());
+  }
+
+  @Test
+  public void testSexpParserFeed() {
+    checkFeed(new SexpParser());
+  }
+
+  @Test
+  public void testLispParserFeed() {
+    checkFeed(new LispParser());
+  }
+
+  @Test
+  public void testDefaultFeed() {
+    checkFeed(new ReparsingParser());
+  }
+
+  @Test
+  public void testSexpParserCommentFeed() {
+    checkCommentFeed(new SexpParser());
+  }
+
+  @Test
+  public void testLispParserCommentFeed() {
+    checkCommentFeed(new LispParser());
+  }
+}
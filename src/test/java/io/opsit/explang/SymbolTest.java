@@ -0,0 +1,38 @@
+package io.opsit.explang;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SymbolTest {
+  @Test
+  public void testInternedSymbols() {
+    final Symbol sym = Symbol.intern("foo");
+    Assert.assertSame(sym, Symbol.intern("foo"));
+    Assert.assertNotSame(sym, Symbol.intern("bar"));
+    Assert.assertEquals(sym, new Symbol("foo"));
+    Assert.assertEquals(new Symbol("foo"), sym);
+    Assert.assertEquals(sym.hashCode(), new Symbol("foo").hashCode());
+  }
+
+  @Test
+  public void testInternedKeywords() {
+    final Keyword kw = Keyword.intern(":size");
+    Assert.assertSame(kw, Keyword.intern(":size"));
+    Assert.assertEquals(kw, new Keyword(":size"));
+    Assert.assertSame(Keyword.UPCASE, Keyword.intern(":UPCASE"));
+    Assert.assertTrue(Keyword.intern(":foo") instanceof Keyword);
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testInvalidKeyword() {
+    Keyword.intern("size");
+  }
+
+  @Test
+  public void testKeywordArgumentIndex() throws Exception {
+    final ArgSpec spec = new ArgSpec(new String[] {"a", ArgSpec.ARG_KEY, "b", "c"});
+    Assert.assertEquals(2, spec.keywordToIdx(Keyword.intern(":c")));
+    Assert.assertEquals(1, spec.keywordToIdx(new Keyword(":b")));
+    Assert.assertEquals(-1, spec.keywordToIdx(Keyword.intern(":d")));
+  }
+}
@@ -0,0 +1,54 @@
+package io.opsit.explang;
+
+import static org.junit.Assert.assertEquals;
+
+import io.opsit.explang.parser.sexp.SexpParser;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class TailCallTest {
+  private static final String CODE =
+      "(PROGN (DEFUN tcl (n acc) (IF (= n 0) acc (tcl (- n 1) (+ acc 1)))) (tcl 3000000 0))";
+
+  /** Evaluate deep tail recursion, the test runs this in a JVM with small heap. */
+  public static void main(String[] args) {
+    final Compiler compiler = new Compiler();
+    final ASTNList exprs = new SexpParser().parse(new ParseCtx("test"), CODE, Integer.MAX_VALUE);
+    System.out.println(
+        compiler.compile(exprs.get(0)).evaluate(compiler.newBacktrace(), compiler.newCtx()));
+  }
+
+  @Test
+  public void self_tail_recursion_runs_in_constant_space() throws Exception {
+    final String java =
+        System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    final Process proc =
+        new ProcessBuilder(
+                java,
+                "-Xmx32m",
+                "-cp",
+                System.getProperty("java.class.path"),
+                TailCallTest.class.getName())
+            .redirectErrorStream(true)
+            .start();
+    final StringBuilder output = new StringBuilder();
+    final BufferedReader reader =
+        new BufferedReader(new InputStreamReader(proc.getInputStream(), "UTF-8"));
+    try {
+      String line;
+      while (null != (line = reader.readLine())) {
+        output.append(line).append('\n');
+      }
+    } finally {
+      reader.close();
+    }
+    if (!proc.waitFor(60, TimeUnit.SECONDS)) {
+      proc.destroy();
+    }
+    assertEquals(output.toString(), 0, proc.exitValue());
+    assertEquals("3000000\n", output.toString());
+  }
+}
@@ -0,0 +1,100 @@
+package io.opsit.explang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.opsit.explang.parser.sexp.SexpParser;
+import org.junit.Test;
+
+public class TieredTest {
+  private Object eval(Compiler compiler, String code, Compiler.ICtx ctx) {
+    final ASTNList exprs = new SexpParser().parse(new ParseCtx("test"), code, Integer.MAX_VALUE);
+    Object result = null;
+    for (ASTN exprASTN : exprs) {
+      final ICompiled expr = compiler.compile(exprASTN);
+      result = expr.evaluate(compiler.newBacktrace(), ctx);
+    }
+    return result;
+  }
+
+  private boolean isOptimized(Compiler compiler, String name) {
+    return ((Compiler.LAMBDA.FunctionCode) compiler.getFun(name)).isOptimized();
+  }
+
+  @Test
+  public void hot_function_is_promoted() throws Exception {
+    final Compiler compiler = new Compiler();
+    compiler.setOptimizeThreshold(10);
+    final Compiler.ICtx ctx = compiler.newCtx();
+    eval(compiler, "(DEFUN tsq (x) (* x x)) (DEFUN tsum (a b) (+ (tsq a) (tsq b) (tsq 3)))", ctx);
+    for (int i = 0; i < 9; i++) {
+      assertEquals(34, eval(compiler, "(tsum 3 4)", ctx));
+    }
+    assertFalse(isOptimized(compiler, "tsum"));
+    for (int i = 0; i < 10; i++) {
+      assertEquals(34, eval(compiler, "(tsum 3 4)", ctx));
+    }
+    assertTrue(isOptimized(compiler, "tsum"));
+    assertFalse(isOptimized(compiler, "tsq"));
+    assertEquals(13, eval(compiler, "(tsum 2 0)", ctx));
+  }
+
+  @Test
+  public void inlined_body_sees_dynamic_bindings() throws Exception {
+    final Compiler compiler = new Compiler();
+    compiler.setOptimizeThreshold(2);
+    final Compiler.ICtx ctx = compiler.newCtx();
+    eval(compiler, "(DEFUN tdg (x) (+ x tdv)) (DEFUN tdf (x) (LET ((tdv x)) (tdg 1)))", ctx);
+    for (int i = 0; i < 5; i++) {
+      assertEquals(i + 1, eval(compiler, "(tdf " + i + ")", ctx));
+    }
+    assertTrue(isOptimized(compiler, "tdf"));
+  }
+
+  @Test
+  public void redefined_callee_deoptimizes() throws Exception {
+    final Compiler compiler = new Compiler();
+    compiler.setOptimizeThreshold(5);
+    final Compiler.ICtx ctx = compiler.newCtx();
+    eval(compiler, "(DEFUN tinc (x) (+ x 1)) (DEFUN tcall (x) (tinc x))", ctx);
+    for (int i = 0; i < 5; i++) {
+      assertEquals(2, eval(compiler, "(tcall 1)", ctx));
+    }
+    assertTrue(isOptimized(compiler, "tcall"));
+    eval(compiler, "(DEFUN tinc (x) (+ x 100))", ctx);
+    assertEquals(101, eval(compiler, "(tcall 1)", ctx));
+    assertFalse(isOptimized(compiler, "tcall"));
+    for (int i = 0; i < 10; i++) {
+      assertEquals(101, eval(compiler, "(tcall 1)", ctx));
+    }
+    assertTrue(isOptimized(compiler, "tcall"));
+  }
+
+  @Test
+  public void redefined_hot_function_starts_in_base_tier() throws Exception {
+    final Compiler compiler = new Compiler();
+    compiler.setOptimizeThreshold(3);
+    final Compiler.ICtx ctx = compiler.newCtx();
+    eval(compiler, "(DEFUN tone () 1) (DEFUN thot () (tone))", ctx);
+    for (int i = 0; i < 3; i++) {
+      assertEquals(1, eval(compiler, "(thot)", ctx));
+    }
+    assertTrue(isOptimized(compiler, "thot"));
+    eval(compiler, "(DEFUN thot () (+ 1 (tone)))", ctx);
+    assertFalse(isOptimized(compiler, "thot"));
+    assertEquals(2, eval(compiler, "(thot)", ctx));
+  }
+
+  @Test
+  public void zero_threshold_disables_tiering() throws Exception {
+    final Compiler compiler = new Compiler();
+    compiler.setOptimizeThreshold(0);
+    final Compiler.ICtx ctx = compiler.newCtx();
+    eval(compiler, "(DEFUN tzi (x) x) (DEFUN tzc (x) (tzi x))", ctx);
+    for (int i = 0; i < 200; i++) {
+      assertEquals(i, eval(compiler, "(tzc " + i + ")", ctx));
+    }
+    assertFalse(isOptimized(compiler, "tzc"));
+  }
+}
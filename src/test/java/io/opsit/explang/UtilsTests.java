@@ -1,9 +1,13 @@
 package io.opsit.explang;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 import org.junit.Test;
+import static io.opsit.explang.Utils.asNumber;
 import static io.opsit.explang.Utils.isRoundNumber;
+import static io.opsit.explang.Utils.parseNumber;
 
 
 public class UtilsTests {
@@ -40,4 +44,52 @@ public class UtilsTests {
     assertFalse(isRoundNumber((float)2e-20));
     assertFalse(isRoundNumber((float)-2e-20));
   }
+
+  @Test
+  public void testParseNumber() {
+    assertEquals(Integer.valueOf(1), parseNumber("1"));
+    assertEquals(Integer.valueOf(-1), parseNumber("-1"));
+    assertEquals(Integer.valueOf(1), parseNumber("+1"));
+    assertEquals(Integer.valueOf(1000), parseNumber("1,000"));
+    assertEquals(Integer.valueOf(100000), parseNumber("1e5"));
+    assertEquals(Double.valueOf(1.0), parseNumber("1.0"));
+    assertEquals(Double.valueOf(0.5), parseNumber(".5"));
+    assertEquals(Double.valueOf(1500.0), parseNumber("1.5E3"));
+    assertEquals(Double.valueOf(1e-5), parseNumber("1e-5"));
+    assertEquals(Double.valueOf(-0.0), parseNumber("-0"));
+    assertEquals(Double.valueOf(1e20), parseNumber("100000000000000000000"));
+    assertEquals(Double.valueOf(0.30000000000000004), parseNumber("0.30000000000000004"));
+    assertEquals(Long.valueOf(Long.MIN_VALUE), parseNumber("-9223372036854775808L"));
+    assertEquals(Long.valueOf(15), parseNumber("1.5e1l"));
+    assertEquals(Byte.valueOf((byte) 1), parseNumber("1b"));
+    assertEquals(Short.valueOf((short) 1), parseNumber("1S"));
+    assertEquals(Float.valueOf(1.5f), parseNumber("1.5f"));
+    assertEquals(Double.valueOf(2.0), parseNumber("2d"));
+    assertEquals(Double.valueOf(Double.POSITIVE_INFINITY), parseNumber("1e2147483648"));
+    assertEquals(Double.valueOf(0.0), parseNumber("1e-2147483648"));
+    assertEquals(Double.valueOf(Double.NEGATIVE_INFINITY), parseNumber("-1e99999999999999999999"));
+    assertEquals(Double.valueOf(1e-22), parseNumber("1e-22"));
+    assertEquals(Double.valueOf(1e-23), parseNumber("1e-23"));
+    assertNull(parseNumber("1ab"));
+    try {
+      parseNumber("1a");
+      assertTrue(false);
+    } catch (NumberFormatException ex) {
+      assertEquals("Failed to parse numeric literal '1a'", ex.getMessage());
+    }
+  }
+
+  @Test
+  public void testAsNumber() {
+    assertEquals(Integer.valueOf(22), asNumber(" 22 "));
+    assertEquals(Double.valueOf(2.5), asNumber(new StringBuilder("\t2.5\n")));
+    assertTrue(Double.isNaN(asNumber("NaN").doubleValue()));
+    try {
+      asNumber(" QQ");
+      assertTrue(false);
+    } catch (RuntimeException ex) {
+      assertEquals("String ' QQ' cannot be coerced to Number", ex.getMessage());
+      assertEquals("Invalid numeric literal 'QQ'", ex.getCause().getMessage());
+    }
+  }
 }
@@ -0,0 +1,58 @@
+package io.opsit.explang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.opsit.explang.parser.sexp.SexpParser;
+import org.junit.Test;
+
+public class VarCellTest {
+  private Object eval(Compiler compiler, String code, Compiler.ICtx ctx) {
+    final ASTNList exprs = new SexpParser().parse(new ParseCtx("test"), code, Integer.MAX_VALUE);
+    Object result = null;
+    for (ASTN exprASTN : exprs) {
+      final ICompiled expr = compiler.compile(exprASTN);
+      result = expr.evaluate(compiler.newBacktrace(), ctx);
+    }
+    return result;
+  }
+
+  @Test
+  public void cells_are_kept_per_compiler() throws Exception {
+    final Compiler first = new Compiler();
+    final Compiler second = new Compiler();
+    eval(first, "(LET ((vcl 1)) vcl)", first.newCtx());
+    assertTrue(first.getVarCell("vcl").isLocal());
+    assertFalse(second.getVarCell("vcl").isLocal());
+  }
+
+  @Test
+  public void code_is_evaluated_with_cells_of_context_compiler() throws Exception {
+    final Compiler first = new Compiler();
+    final Compiler second = new Compiler();
+    final Compiler.ICtx firstCtx = first.newCtx();
+    eval(first, "(DEFUN vcf () vcg) (SETQ vcg 1)", firstCtx);
+    final Compiler.ICtx secondCtx = second.newCtx();
+    eval(second, "(SETQ vcg 2) (DEFUN vcf () vcg) (DEFUN vcs (vcg) (vcf))", secondCtx);
+    assertEquals(3, eval(second, "(vcs 3)", secondCtx));
+    assertEquals(1, eval(first, "(vcf)", firstCtx));
+    assertTrue(second.getVarCell("vcg").isLocal());
+    assertFalse(first.getVarCell("vcg").isLocal());
+  }
+
+  @Test
+  public void epoch_changes_only_for_cached_names() throws Exception {
+    final Compiler compiler = new Compiler();
+    final Compiler.ICtx ctx = compiler.newCtx();
+    eval(compiler, "(SETQ fv 1) (SETQ ff (LAMBDA (x) (+ x fv))) (LET ((fv 0)) fv)", ctx);
+    assertEquals(Utils.list(2, 3), eval(compiler, "(MAP ff (LIST 1 2))", ctx));
+    final int epoch = compiler.getVarCell("fv").getEpoch();
+    eval(compiler, "(MAP (LAMBDA (x) (SETL other x)) (LIST 1 2))", ctx);
+    assertEquals(epoch, compiler.getVarCell("fv").getEpoch());
+    eval(compiler, "(DEFUN sh () (SETL fv 5) (MAP ff (LIST 1)))", ctx);
+    assertEquals(Utils.list(6), eval(compiler, "(sh)", ctx));
+    assertTrue(compiler.getVarCell("fv").getEpoch() != epoch);
+    assertEquals(Utils.list(2), eval(compiler, "(MAP ff (LIST 1))", ctx));
+  }
+}
@@ -0,0 +1,51 @@
+package io.opsit.explang.parser.lisp;
+
+import io.opsit.explang.ASTNList;
+import io.opsit.explang.ParseCtx;
+import io.opsit.explang.Symbol;
+import java.io.StringReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LispReaderTest {
+  @Test
+  public void testUnread() {
+    LispReader r = new LispReader(new StringReader("abc"), 2);
+    Assert.assertEquals('a', r.next());
+    Assert.assertEquals('b', r.next());
+    Assert.assertEquals('c', r.next());
+    r.unread('c');
+    r.unread('x');
+    r.unread('y');
+    Assert.assertEquals('y', r.next());
+    Assert.assertEquals('x', r.next());
+    Assert.assertEquals('c', r.next());
+    Assert.assertEquals(-1, r.next());
+    r.unread(-1);
+    Assert.assertEquals(-1, r.next());
+  }
+
+  @Test
+  public void testParseByOneKeepsInput() {
+    LispParser parser = new LispParser();
+    ParseCtx pctx = new ParseCtx("test");
+    LispReader r = new LispReader(new StringReader("foo(bar) baz"), 3);
+    ASTNList exprs = parser.parse(pctx, r, 1);
+    Assert.assertEquals(Symbol.intern("foo"), exprs.get(0).getObject());
+    exprs = parser.parse(pctx, r, 1);
+    Assert.assertEquals(Symbol.intern("bar"), ((ASTNList) exprs.get(0)).get(0).getObject());
+    exprs = parser.parse(pctx, r, 1);
+    Assert.assertEquals(Symbol.intern("baz"), exprs.get(0).getObject());
+    Assert.assertTrue(parser.parse(pctx, r, 1).isEmpty());
+  }
+
+  @Test
+  public void testNonAsciiChars() {
+    ReadTable rt = new ReadTable();
+    Assert.assertEquals(ReadTable.SYNTAX_TYPE_CONSTITUENT, rt.getSyntaxType('\u0416'));
+    rt.setSyntaxType('\u3000', ReadTable.SYNTAX_TYPE_WHITESPACE);
+    Assert.assertTrue(rt.isWhitespace('\u3000'));
+    ASTNList exprs = new LispParser().parse(new ParseCtx("test"), "\u0416\u00e9 x", 1);
+    Assert.assertEquals(Symbol.intern("\u0416\u00e9"), exprs.get(0).getObject());
+  }
+}
@@ -90,6 +90,8 @@ public class SexpParserTest extends AbstractTest {
         { "((()))", list(list(list())), null},
                  
         { "(\"a\" a)", list("a",sym("a")), null},
+        { "(fo;comment\no bar)", list(sym("foo"),sym("bar")), null},
+        { "(a ; (b\n c)", list(sym("a"),sym("c")), null},
         //{ "aaaa bbbb", null, "Too many expressions"},
         { "aaaa bbbb", sym("aaaa"), null}
         //                 { "(aaa \"bbb)", null, "unclosed '\"'"}
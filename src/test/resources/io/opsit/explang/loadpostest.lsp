@@ -0,0 +1,3 @@
+;; for test of source positions of forms read by LOAD
+(SETQ lpa 1)
+(PROGN (SETQ lpb 2)    (+ lpa lpc))